@@ -2,7 +2,33 @@ package bnkeditor;
 
 import java.io.File;
 import java.io.FileNotFoundException;
+import java.io.FileOutputStream;
 import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.io.OutputStream;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.channels.WritableByteChannel;
+import java.nio.file.FileSystemException;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.zip.CRC32;
 
 /**
  * A tool for changing the sounds inside an Audiokinetic Wwise SoundBank, witout modifying any of the additional information inside the SoundBank.
@@ -11,15 +37,248 @@ import java.io.IOException;
  * @version 1.0
  */
 public class BNKEditor {
-	private final CustomInputStream input;
-	private final byte[] bkhd;
-	private final int numWEMs;
-	private final byte[][] bufferedWEMs;
-	private final int[] ids, offsets, originalLengths, replacedLengths;
-	private final File[] replacements;
-	private final int offsetAbsolute, dataLength;
+	/**
+	 * How many bytes of WEMs are kept in memory by default, see {@link #getCache()}.
+	 */
+	public static final long DEFAULT_CACHE_BUDGET = 64 * 1024 * 1024;
+	
+	/**
+	 * The biggest value the SoundBank format can store in its 32-bit offsets and lengths.
+	 */
+	public static final long MAX_UNSIGNED_INT = 0xFFFFFFFFL;
+	
+	/**
+	 * How many bytes are copied at most before a {@link ProgressListener} is told about it and asked whether to stop.
+	 */
+	private static final long PROGRESS_STEP = 8 * 1024 * 1024;
+	
+	/**
+	 * How many bytes of this SoundBank {@link #writeVariants(List, boolean, ProgressListener)} reads at once, to write them to every variant.
+	 */
+	private static final int FAN_OUT_WINDOW = 1024 * 1024;
+	
+	/**
+	 * How many buffers {@link #writeBNKPipelined(File, boolean, ProgressListener)} reads ahead into, and how big each of them is.
+	 */
+	private static final int PIPELINE_BUFFERS = 4, PIPELINE_BUFFER_SIZE = 4 * 1024 * 1024;
+	
+	/**
+	 * What the parts of a modified SoundBank in a {@link Pipeline} are, if they're not the replacement of a WEM.
+	 */
+	private static final int PIECE_BANK = -1, PIECE_DIDX = -2, PIECE_DATA_HEADER = -3;
+	
+	private static final int BKHD = 0x424B4844, DIDX = 0x44494458, DATA = 0x44415441;
+	
+	private final File bnk;
+	private final boolean littleEndian;
+	private final WEMCache cache;
+	
+	private CustomInputStream input;
+	private ChunkTable chunks;
+	private int didxChunk, dataChunk, numWEMs;
+	private IDIndex idIndex;
+	private int[] ids;
+	private long[] offsets, originalLengths, replacedLengths;
+	private File[] replacements;
+	private long offsetAbsolute, dataLength;
+	private volatile MetricsListener metricsListener;
+	private HIRCIndex hircIndex;
+	private WEMInfo[] wemInfo;
+	
+	/**
+	 * Adds up what happens during one phase of the work, which may be spread over several turns (see {@link PhaseMetrics}).
+	 * Everything between {@link #start(CustomInputStream, CustomOutputStream)} and {@link #stop(CustomInputStream, CustomOutputStream)} counts,
+	 * as far as the specified streams and the cache are concerned.
+	 */
+	private final class Recorder {
+		private final String phase;
+		private long nanos, bytesRead, readCount, bytesWritten, writeCount, cacheHits, cacheMisses;
+		private long startNanos, startBytesRead, startReadCount, startBytesWritten, startWriteCount, startCacheHits, startCacheMisses;
+		
+		private Recorder(String phase) {
+			this.phase = phase;
+		}
+		
+		private void start(CustomInputStream source, CustomOutputStream output) {
+			startNanos = System.nanoTime();
+			if (source != null) {
+				startBytesRead = source.getBytesRead();
+				startReadCount = source.getReadCount();
+			}
+			if (output != null) {
+				startBytesWritten = output.getBytesWritten();
+				startWriteCount = output.getWriteCount();
+			}
+			startCacheHits = cache.getHits();
+			startCacheMisses = cache.getMisses();
+		}
+		
+		private void stop(CustomInputStream source, CustomOutputStream output) {
+			nanos += System.nanoTime() - startNanos;
+			if (source != null) {
+				bytesRead += source.getBytesRead() - startBytesRead;
+				readCount += source.getReadCount() - startReadCount;
+			}
+			if (output != null) add(output.getBytesWritten() - startBytesWritten, output.getWriteCount() - startWriteCount);
+			cacheHits += cache.getHits() - startCacheHits;
+			cacheMisses += cache.getMisses() - startCacheMisses;
+		}
+		
+		/**
+		 * Counts writes to a file that isn't watched, like the files written by {@link BNKEditor#extractAll(File, ExtractionOptions)}.
+		 * @param bytes how many bytes were written
+		 * @param count how many times the file was written to
+		 */
+		private synchronized void add(long bytes, long count) {
+			bytesWritten += bytes;
+			writeCount += count;
+		}
+		
+		private synchronized void report() {
+			MetricsListener listener = metricsListener;
+			if (listener != null) listener.phaseFinished(new PhaseMetrics(phase, bnk, nanos, bytesRead, readCount, bytesWritten, writeCount, cacheHits, cacheMisses));
+		}
+	}
 	
-	private byte[] rest;
+	/**
+	 * Reads this SoundBank {@value #FAN_OUT_WINDOW} bytes at a time and writes every part to several outputs, for {@link BNKEditor#writeVariants(List, boolean, ProgressListener)}.
+	 * What was read last is kept, so neighboring small WEMs are read together.
+	 */
+	private final class FanOut {
+		private final ProgressListener listener;
+		private final byte[] window = new byte[FAN_OUT_WINDOW];
+		private long windowStart, windowEnd;
+		
+		private FanOut(ProgressListener listener) {
+			this.listener = listener;
+		}
+		
+		/**
+		 * Writes the specified part of this SoundBank to all of the specified outputs.
+		 * @param position where the part starts inside this SoundBank
+		 * @param length the length of the part
+		 * @param targets where to write it; if there are none, nothing is read
+		 * @throws InterruptedIOException if the listener cancelled the operation
+		 * @throws IOException if something else goes wrong
+		 */
+		private void copy(long position, long length, List<CustomOutputStream> targets) throws IOException {
+			if (targets.isEmpty()) return;
+			while (length > 0) {
+				if (position < windowStart || position >= windowEnd) {
+					if (listener != null && listener.isCancelled()) throw new InterruptedIOException("Cancelled!");
+					int read = (int) Math.min(window.length, input.getLength() - position);
+					input.read(position, ByteBuffer.wrap(window, 0, read));
+					windowStart = position;
+					windowEnd = position + read;
+				}
+				int step = (int) Math.min(length, windowEnd - position);
+				for (CustomOutputStream target : targets) target.write(window, (int) (position - windowStart), step);
+				if (listener != null) listener.progress((long) step * targets.size());
+				position += step;
+				length -= step;
+			}
+		}
+	}
+	
+	/**
+	 * The reading half of {@link BNKEditor#writeBNKPipelined(File, boolean, ProgressListener)}, which runs on a thread of its own.
+	 * It reads every part of the modified SoundBank that comes from a file, in order, into the next free buffer, and passes every buffer on once it's full.
+	 * The writing half takes the full buffers in the same order, writes them and gives them back, so there are never more than {@value #PIPELINE_BUFFERS} buffers.
+	 */
+	private final class Pipeline implements Callable<Void> {
+		/**
+		 * Passed on instead of a full buffer when the reading half stops early.
+		 */
+		private final ByteBuffer end = ByteBuffer.allocate(0);
+		private final List<long[]> pieces;
+		private final BlockingQueue<ByteBuffer> free = new LinkedBlockingQueue<>(), full = new LinkedBlockingQueue<>();
+		private final Recorder replaced, waitingForWrites;
+		private volatile boolean stopped;
+		
+		/**
+		 * Prepares the reading half.
+		 * @param pieces every part of the modified SoundBank in order, as <code>{what, position, length}</code>; <code>what</code> is either the position of the replaced WEM or one of the <code>PIECE_</code> constants
+		 * @param replaced what to tell about reading the replacements
+		 * @param waitingForWrites what to tell about waiting for a free buffer
+		 */
+		private Pipeline(List<long[]> pieces, Recorder replaced, Recorder waitingForWrites) {
+			this.pieces = pieces;
+			this.replaced = replaced;
+			this.waitingForWrites = waitingForWrites;
+			for (int i = 0; i < PIPELINE_BUFFERS; i++) free.add(ByteBuffer.allocateDirect(PIPELINE_BUFFER_SIZE));
+		}
+
+		@Override public Void call() throws IOException, InterruptedException {
+			ByteBuffer buffer = null;
+			try {
+				for (long[] piece : pieces) {
+					if (piece[0] < PIECE_BANK) continue; // written by the other half
+					CustomInputStream source = piece[0] == PIECE_BANK ? input : openReplacement((int) piece[0]);
+					if (source != input) replaced.start(source, null);
+					try {
+						for (long done = 0; done < piece[2];) {
+							if (buffer == null) {
+								waitingForWrites.start(null, null);
+								buffer = free.take();
+								waitingForWrites.stop(null, null);
+								if (stopped) return null;
+							}
+							int step = (int) Math.min(piece[2] - done, buffer.remaining());
+							ByteBuffer part = buffer.duplicate();
+							part.limit(part.position() + step);
+							source.read(piece[1] + done, part);
+							buffer.position(buffer.position() + step);
+							done += step;
+							if (!buffer.hasRemaining()) {
+								buffer.flip();
+								full.add(buffer);
+								buffer = null;
+							}
+						}
+					} finally {
+						if (source != input) {
+							replaced.stop(source, null);
+							source.close();
+						}
+					}
+				}
+				if (buffer != null) {
+					buffer.flip();
+					full.add(buffer);
+				}
+				return null;
+			} finally {
+				// if everything was read, the writing half never gets to this
+				full.add(end);
+			}
+		}
+		
+		/**
+		 * Takes the next full buffer, for the writing half.
+		 * @return the next full buffer, or {@link #end} if the reading half stopped
+		 * @throws InterruptedException if the thread was interrupted while waiting
+		 */
+		private ByteBuffer take() throws InterruptedException {
+			return full.take();
+		}
+		
+		/**
+		 * Gives a buffer back after it's been written, for the writing half.
+		 * @param buffer the buffer
+		 */
+		private void recycle(ByteBuffer buffer) {
+			buffer.clear();
+			free.add(buffer);
+		}
+		
+		/**
+		 * Makes the reading half stop as soon as it needs another buffer, for when the writing half failed.
+		 */
+		private void stop() {
+			stopped = true;
+			free.add(ByteBuffer.allocate(0));
+		}
+	}
 	
 	/**
 	 * Constructs a new <code>BNKEditor</code>.
@@ -31,45 +290,117 @@ public class BNKEditor {
 	 * @throws IOException if something else goes wrong
 	 */
 	public BNKEditor(File bnk, boolean littleEndian) throws IOException {
-		if (bnk.length() > Integer.MAX_VALUE) throw new IllegalArgumentException("The file is too big!");
+		this(bnk, littleEndian, DEFAULT_CACHE_BUDGET);
+	}
+	
+	/**
+	 * Constructs a new <code>BNKEditor</code> that keeps at most the specified amount of bytes of WEMs in memory.
+	 * Initializes all the stuff that needs to be initialized, and gets ready for modifying.
+	 * @param bnk the file to modify
+	 * @param littleEndian the endianness of the file to modify
+	 * @param cacheBudget how many bytes of WEMs may be kept in memory at once (<code>0</code> disables caching)
+	 * @throws FileNotFoundException if the file cannot be found
+	 * @throws IllegalArgumentException if the file has an unexpected layout (for example when it's not a SoundBank at all), or if the cache budget is negative
+	 * @throws IOException if something else goes wrong
+	 */
+	public BNKEditor(File bnk, boolean littleEndian, long cacheBudget) throws IOException {
+		this(bnk, littleEndian, cacheBudget, null);
+	}
+	
+	/**
+	 * Constructs a new <code>BNKEditor</code> that keeps at most the specified amount of bytes of WEMs in memory, and tells the specified listener about everything it does.
+	 * Initializes all the stuff that needs to be initialized, and gets ready for modifying.
+	 * @param bnk the file to modify
+	 * @param littleEndian the endianness of the file to modify
+	 * @param cacheBudget how many bytes of WEMs may be kept in memory at once (<code>0</code> disables caching)
+	 * @param metricsListener what to tell about every phase of the work, starting with opening the file (<code>null</code> for nothing)
+	 * @throws FileNotFoundException if the file cannot be found
+	 * @throws IllegalArgumentException if the file has an unexpected layout (for example when it's not a SoundBank at all), or if the cache budget is negative
+	 * @throws IOException if something else goes wrong
+	 */
+	public BNKEditor(File bnk, boolean littleEndian, long cacheBudget, MetricsListener metricsListener) throws IOException {
+		this.bnk = bnk;
+		this.littleEndian = littleEndian;
+		this.metricsListener = metricsListener;
+		cache = new WEMCache(cacheBudget);
+		open();
+	}
+	
+	/**
+	 * Opens the SoundBank and reads everything that's needed for modifying it.
+	 * Called by the constructors, and again after the SoundBank has been changed by {@link #writeBNKInPlace()}.
+	 * @throws FileNotFoundException if the file cannot be found
+	 * @throws IllegalArgumentException if the file has an unexpected layout (for example when it's not a SoundBank at all)
+	 * @throws IOException if something else goes wrong
+	 */
+	private void open() throws IOException {
 		input = new CustomInputStream(bnk, littleEndian);
+		hircIndex = null;
+		wemInfo = null;
 		
-		// read and verify BKHD section
-		if (!"BKHD".equals(input.readMagic())) throw new IllegalArgumentException("The file doesn't have a BKHD section!");
-		int bkhdLength = input.readInt();
-		bkhd = input.read(bkhdLength);
+		// walk over all section headers, and verify BKHD section
+		Recorder recorder = new Recorder("open.chunks");
+		recorder.start(input, null);
+		try {
+			chunks = new ChunkTable(input);
+		} finally {
+			recorder.stop(input, null);
+			recorder.report();
+		}
+		if (chunks.getCount() == 0 || chunks.getMagic(0) != BKHD) throw new IllegalArgumentException("The file doesn't have a BKHD section!");
+		didxChunk = chunks.find(DIDX);
+		dataChunk = chunks.find(DATA);
 		
-		// read and verify DIDX section header
-		if (!"DIDX".equals(input.readMagic())) throw new IllegalArgumentException("The file doesn't have a DIDX section!");
-		int didxLength = input.readInt();
+		recorder = new Recorder("open.didx");
+		recorder.start(input, null);
+		try {
+			readDIDX();
+		} finally {
+			recorder.stop(input, null);
+			recorder.report();
+		}
+	}
+	
+	/**
+	 * Reads the DIDX section and builds the ID index, making sure every WEM is inside the DATA section.
+	 * @throws IllegalArgumentException if the DIDX or DATA section is corrupted
+	 * @throws IOException if something else goes wrong
+	 */
+	private void readDIDX() throws IOException {
+		// verify DIDX section header
+		long didxLength = didxChunk < 0 ? 0 : chunks.getLength(didxChunk);
 		if (didxLength % 12 != 0) throw new IllegalArgumentException("The file has a corrupted DIDX section! (its length is " + didxLength + ", which is not divisible by 12)");
+		if (didxLength > 0 && dataChunk < 0) throw new IllegalArgumentException("The file doesn't have a DATA section!");
 		
-		// read DIDX section data
-		numWEMs = didxLength / 12;
-		bufferedWEMs = new byte[numWEMs][];
+		// read DIDX section data (offsets and lengths are unsigned)
+		numWEMs = (int) (didxLength / 12);
+		dataLength = dataChunk < 0 ? 0 : chunks.getLength(dataChunk);
 		ids = new int[numWEMs];
-		offsets = new int[numWEMs];
-		originalLengths = new int[numWEMs];
-		replacedLengths = new int[numWEMs];
+		offsets = new long[numWEMs];
+		originalLengths = new long[numWEMs];
+		replacedLengths = new long[numWEMs];
 		replacements = new File[numWEMs];
+		if (didxChunk >= 0) input.seek(chunks.getDataOffset(didxChunk));
 		for (int i = 0; i < numWEMs; i++) {
-			int id = input.readInt(), offset = input.readInt(), length_ = input.readInt();
+			int id = input.readInt();
+			long offset = input.readInt() & MAX_UNSIGNED_INT, length_ = input.readInt() & MAX_UNSIGNED_INT;
 			if (i > 0 && offset < offsets[i - 1]) throw new IllegalArgumentException("The file has a corrupted DIDX section! (WEM number " + (i + 1) + " is located at offset " + offset + ", while WEM number " + i + " is located at offset " + offsets[i - 1] + ")");
+			if (offset + length_ > dataLength) throw new IllegalArgumentException("The file has a corrupted DIDX section! (WEM number " + (i + 1) + " ends at offset " + (offset + length_) + ", while the DATA section is only " + dataLength + " bytes long)");
 			ids[i] = id;
 			offsets[i] = offset;
 			originalLengths[i] = length_;
 			replacedLengths[i] = length_;
 		}
 		
-		// read and verify DATA section header
-		if (!"DATA".equals(input.readMagic())) throw new IllegalArgumentException("The file doesn't have a DATA section!");
-		dataLength = input.readInt();
-		int calc = 0;
+		idIndex = new IDIndex(ids);
+		
+		// verify DATA section header
+		long calc = 0;
 		for (int wem = 0; wem < numWEMs; wem++) {
 			calc += originalLengths[wem];
 		}
 		if (dataLength < calc) throw new IllegalArgumentException("The file has a corrupted DATA section! (calculated length: " + calc + ", actual length: " + dataLength + ")");
-		offsetAbsolute = (int) input.getCurrentPosition();
+		offsetAbsolute = dataChunk < 0 ? 0 : chunks.getDataOffset(dataChunk);
 	}
 	
 	/**
@@ -82,6 +413,60 @@ public class BNKEditor {
 		return ids;
 	}
 	
+	/**
+	 * Returns where the WEM in the specified position is stored inside the SoundBank file.
+	 * @param position the position of the WEM inside the SoundBank
+	 * @return the position of the first byte of the WEM inside the SoundBank file
+	 * @throws ArrayIndexOutOfBoundsException if there is no such WEM in this SoundBank
+	 */
+	public long getOffset(int position) {
+		return offsetAbsolute + offsets[getPosition(position, false)];
+	}
+	
+	/**
+	 * Returns the length of the WEM in the specified position, as it is stored inside the SoundBank (not the length of its replacement).
+	 * @param position the position of the WEM inside the SoundBank
+	 * @return the length of the WEM in bytes
+	 * @throws ArrayIndexOutOfBoundsException if there is no such WEM in this SoundBank
+	 */
+	public long getLength(int position) {
+		return originalLengths[getPosition(position, false)];
+	}
+	
+	/**
+	 * Finds the position of the WEM with the specified ID inside this SoundBank.
+	 * This takes the same time no matter how many WEMs there are, so feel free to call it thousands of times.
+	 * @param id the ID of the WEM
+	 * @return the position of the WEM inside this SoundBank, or <code>-1</code> if there is no WEM with that ID
+	 */
+	public int findID(int id) {
+		return idIndex.find(id);
+	}
+	
+	/**
+	 * Returns the specified WEM.
+	 * WEMs are kept in memory after being read, until they get thrown out of the cache to make room for others. After that, they're simply read from the SoundBank again.
+	 * @param index purpose explained below
+	 * @param isID <code>false</code>: <code><b>index</b></code> is the position of the WEM inside the SoundBank
+	 * <br><code>true</code>: <code><b>index</b></code> is the ID of the WEM to return
+	 * @return the WEM (don't modify it, since it may be in the cache)
+	 * @throws ArrayIndexOutOfBoundsException if <code><b>isID</b></code> is true and the ID <code><b>index</b></code> does not exist in this SoundBank
+	 * @throws UnsupportedOperationException if the WEM is longer than <code>Integer.MAX_VALUE</code> bytes (use {@link #writeWEM(int, boolean, File)} for those)
+	 * @throws IOException if something else goes wrong
+	 */
+	public byte[] readWEM(int index, boolean isID) throws IOException {
+		int position = getPosition(index, isID);
+		
+		Recorder recorder = new Recorder("readWEM");
+		recorder.start(input, null);
+		try {
+			return readWEM(position);
+		} finally {
+			recorder.stop(input, null);
+			recorder.report();
+		}
+	}
+	
 	/**
 	 * Writes the specified WEM into a seperate file.
 	 * @param index purpose explained below
@@ -92,30 +477,237 @@ public class BNKEditor {
 	 * @throws IOException if something else goes wrong
 	 */
 	public void writeWEM(int index, boolean isID, File wem) throws IOException {
-		// find out the position in the arrays
-		int position = index;
-		if (isID) {
-			for (int i = 0; i < numWEMs; i++) {
-				if (ids[i] == index) {
-					position = i;
-					break;
-				}
+		int position = getPosition(index, isID);
+		
+		wem.createNewFile();
+		CustomOutputStream output = new CustomOutputStream(wem, true);
+		Recorder recorder = new Recorder("writeWEM");
+		recorder.start(input, output);
+		try {
+			// WEMs that don't fit into the cache anyway are copied straight from the SoundBank
+			if (originalLengths[position] > Math.min(cache.getBudget(), Integer.MAX_VALUE)) output.transferFrom(input, offsetAbsolute + offsets[position], originalLengths[position]);
+			else output.write(readWEM(position));
+		} finally {
+			try {
+				output.flushAndClose();
+			} finally {
+				recorder.stop(input, output);
+				recorder.report();
 			}
 		}
+	}
+	
+	/**
+	 * Writes all WEMs into seperate files inside the specified directory, several at the same time.
+	 * The WEMs are copied straight from the SoundBank into the files, so none of them has to pass through memory, and the cache is left alone.
+	 * If the options contain a {@link Deduplicator}, WEMs whose content has already been written are not written again.
+	 * @param directory the directory to write the WEMs to (created if it doesn't exist yet)
+	 * @param options how many threads to use, how to name the files and whether to skip duplicates
+	 * @return which files were written, and how long that took
+	 * @throws InterruptedIOException if the options contain a {@link ProgressListener} that cancelled the extraction, in which case the files that were finished are kept
+	 * @throws IOException if something goes wrong, in which case some of the files may already have been written
+	 */
+	public ExtractionSummary extractAll(final File directory, final ExtractionOptions options) throws IOException {
+		if (!directory.isDirectory() && !directory.mkdirs()) throw new IOException("Couldn't create the directory " + directory + "!");
+		final Deduplicator deduplicator = options.getDeduplicator();
+		final ProgressListener listener = options.getProgressListener();
+		final File[] files = new File[numWEMs], originals = new File[numWEMs];
+		final long[] lengths = new long[numWEMs], nanos = new long[numWEMs];
+		final AtomicInteger next = new AtomicInteger();
+		final Recorder recorder = new Recorder("extractAll");
+		recorder.start(input, null);
+		long start = System.nanoTime();
+		if (listener != null) {
+			long total = 0;
+			for (long length : originalLengths) total += length;
+			listener.start(total);
+		}
 		
-		// read all WEMs before the one you have to write
-		for (int i = 0; i <= position; i++) {
-			if (input.getCurrentPosition() <= offsets[i] + offsetAbsolute) {
-				input.skipUntil(offsets[i] + offsetAbsolute);
-				bufferedWEMs[i] = input.read(originalLengths[i]);
+		// every thread keeps taking the next WEM nobody has taken yet, until there are none left
+		int threads = Math.max(Math.min(options.getParallelism(), numWEMs), 1);
+		ExecutorService executor = Executors.newFixedThreadPool(threads);
+		try {
+			List<Future<Void>> workers = new ArrayList<>();
+			for (int i = 0; i < threads; i++) {
+				workers.add(executor.submit(new Callable<Void>() {
+					@Override public Void call() throws IOException {
+						try {
+							ByteBuffer buffer = deduplicator == null ? null : ByteBuffer.allocate(CustomInputStream.BUFFER_SIZE);
+							for (int position = next.getAndIncrement(); position < numWEMs; position = next.getAndIncrement()) {
+								long fileStart = System.nanoTime();
+								files[position] = new File(directory, options.getFileName(position, ids[position]));
+								Deduplicator.Group group = null;
+								if (deduplicator != null) {
+									group = deduplicator.claim(hash(position, buffer), originalLengths[position]);
+									File original = group.awaitOriginal(files[position]);
+									if (original != null) {
+										if (linkDuplicate(files[position], original, deduplicator.getMode())) {
+											deduplicator.addDuplicate(group, files[position]);
+											originals[position] = original;
+											nanos[position] = System.nanoTime() - fileStart;
+											if (listener != null) listener.progress(originalLengths[position]);
+											continue;
+										}
+										group = null; // no hard links here, so it's written in full after all
+									}
+								}
+								boolean success = false;
+								try {
+									CustomOutputStream output = new CustomOutputStream(files[position], true);
+									try {
+										transfer(output, input, offsetAbsolute + offsets[position], originalLengths[position], listener);
+									} finally {
+										output.flushAndClose();
+										recorder.add(output.getBytesWritten(), output.getWriteCount());
+									}
+									success = true;
+								} catch (InterruptedIOException iioe) {
+									// cancelled, so don't leave half a WEM behind
+									files[position].delete();
+									throw iioe;
+								} finally {
+									if (group != null) group.finish(success);
+								}
+								lengths[position] = originalLengths[position];
+								nanos[position] = System.nanoTime() - fileStart;
+							}
+							return null;
+						} catch (IOException | RuntimeException e) {
+							// make the other threads stop as well
+							next.set(numWEMs);
+							throw e;
+						}
+					}
+				}));
 			}
+			for (Future<Void> worker : workers) worker.get();
+		} catch (InterruptedException ie) {
+			next.set(numWEMs);
+			Thread.currentThread().interrupt();
+			throw new InterruptedIOException("Interrupted while extracting the WEMs!");
+		} catch (ExecutionException ee) {
+			if (ee.getCause() instanceof IOException) throw (IOException) ee.getCause();
+			if (ee.getCause() instanceof RuntimeException) throw (RuntimeException) ee.getCause();
+			throw new IOException(ee.getCause());
+		} finally {
+			executor.shutdown();
+			recorder.stop(input, null);
+			recorder.report();
 		}
-		
-		// actually write
-		wem.createNewFile();
-		CustomOutputStream output = new CustomOutputStream(wem, true);
-		output.write(bufferedWEMs[position]);
-		output.flushAndClose();
+		return new ExtractionSummary(files, originals, lengths, nanos, System.nanoTime() - start);
+	}
+	
+	/**
+	 * Writes all WEMs into one uncompressed archive file, see {@link #extractAll(WritableByteChannel, WEMArchive.Format, ExtractionOptions)}.
+	 * @param archive the file to write the archive to
+	 * @param format the kind of archive
+	 * @param options how to name the entries and what to tell about the progress
+	 * @return the names of the entries, and how long it took to write them
+	 * @throws IllegalArgumentException if an entry name can't be stored in the archive
+	 * @throws InterruptedIOException if the options contain a {@link ProgressListener} that cancelled the extraction, in which case the unfinished archive is deleted
+	 * @throws IOException if something else goes wrong, in which case the unfinished archive is deleted as well
+	 */
+	public ExtractionSummary extractAll(File archive, WEMArchive.Format format, ExtractionOptions options) throws IOException {
+		archive.createNewFile();
+		boolean success = false;
+		FileOutputStream output = new FileOutputStream(archive);
+		try {
+			ExtractionSummary summary = extractAll(output.getChannel(), format, options);
+			success = true;
+			return summary;
+		} finally {
+			output.close();
+			if (!success) archive.delete();
+		}
+	}
+	
+	/**
+	 * Writes all WEMs into one uncompressed archive, streamed into the specified <code>OutputStream</code>, see {@link #extractAll(WritableByteChannel, WEMArchive.Format, ExtractionOptions)}.
+	 * @param target where to write the archive; it's neither flushed nor closed afterwards
+	 * @param format the kind of archive
+	 * @param options how to name the entries and what to tell about the progress
+	 * @return the names of the entries, and how long it took to write them
+	 * @throws IllegalArgumentException if an entry name can't be stored in the archive
+	 * @throws InterruptedIOException if the options contain a {@link ProgressListener} that cancelled the extraction, in which case the archive is left unfinished
+	 * @throws IOException if something else goes wrong
+	 */
+	public ExtractionSummary extractAll(OutputStream target, WEMArchive.Format format, ExtractionOptions options) throws IOException {
+		return extractAll(Channels.newChannel(target), format, options);
+	}
+	
+	/**
+	 * Writes all WEMs into one uncompressed archive, streamed into the specified channel from start to finish, so the target can just as well be a pipe or a socket.
+	 * No WEM becomes a file of its own, which saves creating tens of thousands of small files when all of them are needed somewhere else anyway.
+	 * The WEMs are written one after another in the order of the DIDX section. Small ones are collected in a buffer together with their headers,
+	 * bigger ones are copied straight from the SoundBank (without passing through memory if the target is a file).
+	 * Since the archive is written in one piece, the number of threads and the {@link Deduplicator} of the options are ignored.
+	 * @param target where to write the archive; it's not closed afterwards
+	 * @param format the kind of archive
+	 * @param options how to name the entries and what to tell about the progress
+	 * @return the names of the entries, and how long it took to write them
+	 * @throws IllegalArgumentException if an entry name can't be stored in the archive
+	 * @throws InterruptedIOException if the options contain a {@link ProgressListener} that cancelled the extraction, in which case the archive is left unfinished
+	 * @throws IOException if something else goes wrong
+	 */
+	public ExtractionSummary extractAll(WritableByteChannel target, WEMArchive.Format format, ExtractionOptions options) throws IOException {
+		ProgressListener listener = options.getProgressListener();
+		String[] names = new String[numWEMs];
+		long[] lengths = new long[numWEMs], nanos = new long[numWEMs];
+		WEMArchive archive = new WEMArchive(target, format);
+		byte[] buffer = new byte[WEMArchive.BUFFER_SIZE];
+		Recorder recorder = new Recorder("extractAll.archive");
+		recorder.start(input, null);
+		long start = System.nanoTime();
+		try {
+			if (listener != null) {
+				long total = 0;
+				for (long length : originalLengths) total += length;
+				listener.start(total);
+			}
+			for (int i = 0; i < numWEMs; i++) {
+				if (listener != null && listener.isCancelled()) throw new InterruptedIOException("Cancelled!");
+				long wemStart = System.nanoTime(), position = offsetAbsolute + offsets[i], length = originalLengths[i];
+				names[i] = options.getFileName(i, ids[i]);
+				if (length <= buffer.length) {
+					// small enough to be read once, for the CRC and for the archive
+					input.read(position, ByteBuffer.wrap(buffer, 0, (int) length));
+					CRC32 crc = new CRC32();
+					crc.update(buffer, 0, (int) length);
+					archive.startEntry(names[i], length, crc.getValue());
+					archive.write(buffer, 0, (int) length);
+					if (listener != null) listener.progress(length);
+				} else {
+					long crc = 0;
+					if (format == WEMArchive.Format.ZIP) {
+						CRC32 checksum = new CRC32();
+						for (long done = 0; done < length;) {
+							int step = (int) Math.min(length - done, buffer.length);
+							input.read(position + done, ByteBuffer.wrap(buffer, 0, step));
+							checksum.update(buffer, 0, step);
+							done += step;
+						}
+						crc = checksum.getValue();
+					}
+					archive.startEntry(names[i], length, crc);
+					for (long done = 0; done < length;) {
+						if (listener != null && listener.isCancelled()) throw new InterruptedIOException("Cancelled!");
+						long step = Math.min(length - done, PROGRESS_STEP);
+						archive.transferFrom(input, position + done, step);
+						if (listener != null) listener.progress(step);
+						done += step;
+					}
+				}
+				archive.finishEntry();
+				lengths[i] = length;
+				nanos[i] = System.nanoTime() - wemStart;
+			}
+			archive.finish();
+		} finally {
+			recorder.stop(input, null);
+			recorder.add(archive.getBytesWritten(), archive.getWriteCount());
+			recorder.report();
+		}
+		return new ExtractionSummary(names, lengths, nanos, System.nanoTime() - start);
 	}
 	
 	/**
@@ -126,24 +718,15 @@ public class BNKEditor {
 	 * <br><code>true</code>: <code><b>index</b></code> is the ID of the WEM to replace
 	 * @param replacement the file to replace the specified WEM with
 	 * @throws ArrayIndexOutOfBoundsException if <code><b>isID</b></code> is true and the ID <code><b>index</b></code> does not exist in this SoundBank
-	 * @throws IllegalArgumentException if the specified file is longer than <code>Integer.MAX_VALUE</code> bytes
+	 * @throws IllegalArgumentException if the specified file is longer than {@link #MAX_UNSIGNED_INT} bytes (4 GiB), the most a SoundBank can store
 	 */
 	public void replace(int index, boolean isID, File replacement) {
-		if (replacement.length() > Integer.MAX_VALUE) throw new IllegalArgumentException("The WEM is too large!");
+		if (replacement.length() > MAX_UNSIGNED_INT) throw new IllegalArgumentException("The WEM is too large! (a SoundBank can't store WEMs bigger than 4 GiB)");
 		
-		// find out the position in the arrays
-		int position = index;
-		if (isID) {
-			for (int i = 0; i < numWEMs; i++) {
-				if (ids[i] == index) {
-					position = i;
-					break;
-				}
-			}
-		}
+		int position = getPosition(index, isID);
 		
 		replacements[position] = replacement;
-		replacedLengths[position] = (int) replacement.length();
+		replacedLengths[position] = replacement.length();
 	}
 	
 	/**
@@ -155,16 +738,7 @@ public class BNKEditor {
 	 * @throws ArrayIndexOutOfBoundsException if <code><b>isID</b></code> is true and the ID <code><b>index</b></code> does not exist in this SoundBank
 	 */
 	public void cancelReplacement(int index, boolean isID) {
-		// find out the position in the arrays
-		int position = index;
-		if (isID) {
-			for (int i = 0; i < numWEMs; i++) {
-				if (ids[i] == index) {
-					position = i;
-					break;
-				}
-			}
-		}
+		int position = getPosition(index, isID);
 		
 		replacements[position] = null;
 		replacedLengths[position] = originalLengths[position];
@@ -183,63 +757,988 @@ public class BNKEditor {
 	/**
 	 * Writes the modified SoundBank to the specified file.
 	 * Note that all replacements are accessed upon calling this method.
-	 * If they've been deleted between calling {@link #replace(int, boolean, File)} and now, you're gonna run into some problems.
+	 * They're copied straight into the new SoundBank, so none of them has to fit into memory.
 	 * @param bnk the file to write the modified SoundBank to
 	 * @param littleEndian the endianness of the SoundBank
-	 * @throws IOException if something goes wrong
+	 * @throws UnsupportedOperationException if the replacements make the DATA section bigger than 4 GiB, which the SoundBank format can't store
+	 * @throws IOException if a replacement has been deleted or changed its length since {@link #replace(int, boolean, File)} was called, or if something else goes wrong
 	 */
 	public void writeBNK(File bnk, boolean littleEndian) throws IOException {
+		writeBNK(bnk, littleEndian, null);
+	}
+	
+	/**
+	 * Writes the modified SoundBank to the specified file, telling the specified listener how far it has come.
+	 * If the listener cancels the operation, the unfinished file is deleted.
+	 * @param bnk the file to write the modified SoundBank to
+	 * @param littleEndian the endianness of the SoundBank
+	 * @param listener what to tell about the progress, or <code>null</code>
+	 * @throws UnsupportedOperationException if the replacements make the DATA section bigger than 4 GiB, which the SoundBank format can't store
+	 * @throws InterruptedIOException if the listener cancelled the operation
+	 * @throws IOException if a replacement has been deleted or changed its length since {@link #replace(int, boolean, File)} was called, or if something else goes wrong
+	 * @see #writeBNK(File, boolean)
+	 */
+	public void writeBNK(File bnk, boolean littleEndian, ProgressListener listener) throws IOException {
+		long replacedDataLength = getReplacedDataLength();
+		checkReplacements();
+		if (listener != null) listener.start(input.getLength() + (didxChunk < 0 ? 0 : replacedDataLength - dataLength));
 		bnk.createNewFile();
-		CustomOutputStream output = new CustomOutputStream(bnk, littleEndian);
-		
-		// write BKHD section
-		output.writeString("BKHD");
-		output.writeInt(bkhd.length);
-		output.write(bkhd);
+		Recorder sections = new Recorder("writeBNK.sections"), wems = new Recorder("writeBNK.wems"), replaced = new Recorder("writeBNK.replacements"), flush = new Recorder("writeBNK.flush");
+		try {
+			WEMInfo.forget(bnk);
+			CustomOutputStream output = new CustomOutputStream(bnk, littleEndian);
+			try {
+				// go through all sections in their original order, copying everything but DIDX and DATA as it is
+				sections.start(input, output);
+				long copyStart = 0, copyEnd = 0;
+				for (int chunk = 0; chunk < chunks.getCount(); chunk++) {
+					if (chunk != didxChunk && (chunk != dataChunk || didxChunk < 0)) {
+						copyEnd = chunks.getDataOffset(chunk) + chunks.getLength(chunk);
+						continue;
+					}
+					transfer(output, input, copyStart, copyEnd - copyStart, listener);
+					copyStart = copyEnd = chunks.getDataOffset(chunk) + chunks.getLength(chunk);
+					if (chunk == didxChunk) writeDIDX(output, listener);
+					else {
+						sections.stop(input, output);
+						writeDATA(output, listener, wems, replaced);
+						sections.start(input, output);
+					}
+				}
+				
+				// copy rest of file
+				transfer(output, input, copyStart, input.getLength() - copyStart, listener);
+				sections.stop(input, output);
+			} finally {
+				flush.start(null, output);
+				try {
+					output.flushAndClose();
+				} finally {
+					flush.stop(null, output);
+				}
+			}
+		} catch (InterruptedIOException iioe) {
+			bnk.delete();
+			throw iioe;
+		} finally {
+			sections.report();
+			wems.report();
+			replaced.report();
+			flush.report();
+		}
+	}
+	
+	/**
+	 * Writes the modified SoundBank to the specified file like {@link #writeBNK(File, boolean, ProgressListener)}, but reads and writes at the same time.
+	 * <code>writeBNK</code> copies with <code>transferTo</code>, so the operating system does the copying, but it reads and writes by turns.
+	 * Where both take a while (like on a network drive), each side waits for the other, and the whole thing takes as long as reading plus writing.
+	 * Here a second thread reads ahead into {@value #PIPELINE_BUFFERS} direct buffers of {@value #PIPELINE_BUFFER_SIZE} bytes, this SoundBank and the replacements alike,
+	 * while this thread writes out the buffers that are full. So it takes about as long as whichever of the two is slower.
+	 * On a local disk, <code>writeBNK</code> is usually just as fast or faster, since nothing has to pass through Java there.
+	 * The metrics phases <code>writeBNKPipelined.waitingForReads</code> and <code>writeBNKPipelined.waitingForWrites</code> tell which side held up the other.
+	 * If the listener cancels the operation or anything else goes wrong, the unfinished file is deleted.
+	 * @param bnk the file to write the modified SoundBank to
+	 * @param littleEndian the endianness of the SoundBank
+	 * @param listener what to tell about the progress, or <code>null</code>
+	 * @throws UnsupportedOperationException if the replacements make the DATA section bigger than 4 GiB, which the SoundBank format can't store
+	 * @throws InterruptedIOException if the listener cancelled the operation
+	 * @throws IOException if a replacement has been deleted or changed its length since {@link #replace(int, boolean, File)} was called, or if something else goes wrong
+	 */
+	public void writeBNKPipelined(File bnk, boolean littleEndian, ProgressListener listener) throws IOException {
+		final long replacedDataLength = getReplacedDataLength();
+		checkReplacements();
+		if (listener != null) listener.start(input.getLength() + (didxChunk < 0 ? 0 : replacedDataLength - dataLength));
 		
-		// write DIDX section header
-		output.writeString("DIDX");
-		output.writeInt(numWEMs * 12);
+		// the same order as writeBNK, with neighboring parts of this SoundBank merged
+		List<long[]> pieces = new ArrayList<>();
+		long copyStart = 0, copyEnd = 0;
+		for (int chunk = 0; chunk < chunks.getCount(); chunk++) {
+			if (chunk != didxChunk && (chunk != dataChunk || didxChunk < 0)) {
+				copyEnd = chunks.getDataOffset(chunk) + chunks.getLength(chunk);
+				continue;
+			}
+			addPiece(pieces, PIECE_BANK, copyStart, copyEnd - copyStart);
+			copyStart = copyEnd = chunks.getDataOffset(chunk) + chunks.getLength(chunk);
+			if (chunk == didxChunk) {
+				pieces.add(new long[] {PIECE_DIDX, 0, 0});
+				continue;
+			}
+			pieces.add(new long[] {PIECE_DATA_HEADER, 0, 0});
+			for (int i = 0; i < numWEMs; i++) {
+				if (replacements[i] == null) addPiece(pieces, PIECE_BANK, offsetAbsolute + offsets[i], originalLengths[i]);
+				else addPiece(pieces, i, 0, replacedLengths[i]);
+			}
+		}
+		addPiece(pieces, PIECE_BANK, copyStart, input.getLength() - copyStart);
 		
-		// write DIDX section data
-		output.writeInt(ids[0]);
-		output.writeInt(0);
-		output.writeInt(replacedLengths[0]);
-		int currentAddress = replacedLengths[0];
-		for (int i = 1; i < numWEMs; i++) {
-			output.writeInt(ids[i]);
-			output.writeInt(currentAddress);
-			output.writeInt(replacedLengths[i]);
-			currentAddress += replacedLengths[i];
+		bnk.createNewFile();
+		Recorder recorder = new Recorder("writeBNKPipelined"), replaced = new Recorder("writeBNKPipelined.replacements");
+		Recorder waitingForReads = new Recorder("writeBNKPipelined.waitingForReads"), waitingForWrites = new Recorder("writeBNKPipelined.waitingForWrites");
+		Pipeline pipeline = new Pipeline(pieces, replaced, waitingForWrites);
+		ExecutorService executor = Executors.newSingleThreadExecutor();
+		Future<Void> reader = null;
+		boolean success = false;
+		try {
+			WEMInfo.forget(bnk);
+			CustomOutputStream output = new CustomOutputStream(bnk, littleEndian);
+			recorder.start(input, output);
+			try {
+				reader = executor.submit(pipeline);
+				ByteBuffer buffer = null;
+				for (long[] piece : pieces) {
+					if (piece[0] == PIECE_DIDX) {
+						writeDIDX(output, listener);
+						continue;
+					}
+					if (piece[0] == PIECE_DATA_HEADER) {
+						output.writeMagic(DATA);
+						output.writeInt((int) replacedDataLength);
+						if (listener != null) listener.progress(8);
+						continue;
+					}
+					for (long done = 0; done < piece[2];) {
+						if (buffer == null || !buffer.hasRemaining()) {
+							if (buffer != null) pipeline.recycle(buffer);
+							if (listener != null && listener.isCancelled()) throw new InterruptedIOException("Cancelled!");
+							waitingForReads.start(null, null);
+							buffer = pipeline.take();
+							waitingForReads.stop(null, null);
+							if (buffer == pipeline.end) {
+								// the reading half failed, so this throws what it failed with
+								getResult(reader);
+								throw new IOException("Reading stopped before everything was read!");
+							}
+						}
+						int step = (int) Math.min(piece[2] - done, buffer.remaining());
+						ByteBuffer part = buffer.duplicate();
+						part.limit(part.position() + step);
+						output.write(part);
+						buffer.position(buffer.position() + step);
+						if (listener != null) listener.progress(step);
+						done += step;
+					}
+				}
+				getResult(reader);
+			} finally {
+				try {
+					output.flushAndClose();
+				} finally {
+					recorder.stop(input, output);
+				}
+			}
+			success = true;
+		} catch (InterruptedException ie) {
+			Thread.currentThread().interrupt();
+			throw new InterruptedIOException("Interrupted while writing the SoundBank!");
+		} finally {
+			// the reading half mustn't touch this SoundBank anymore once this returns
+			pipeline.stop();
+			executor.shutdown();
+			if (reader != null) {
+				try {
+					reader.get();
+				} catch (InterruptedException | ExecutionException e) {
+					// it has already been dealt with, or doesn't matter anymore
+				}
+			}
+			if (!success) bnk.delete();
+			recorder.report();
+			replaced.report();
+			waitingForReads.report();
+			waitingForWrites.report();
 		}
+	}
+	
+	/**
+	 * Writes a delta that turns this SoundBank into the modified SoundBank {@link #writeBNK(File, boolean)} would write, see {@link BankDelta}.
+	 * The delta only contains the new DIDX section and the replacements, everything else is copied from this SoundBank when it's applied.
+	 * To check that it's applied to the right SoundBank, every part of this SoundBank that's copied is read to calculate its SHA-256 hash.
+	 * @param delta the file to write the delta to
+	 * @param littleEndian the endianness of the modified SoundBank
+	 * @throws UnsupportedOperationException if the replacements make the DATA section bigger than 4 GiB, which the SoundBank format can't store
+	 * @throws IOException if a replacement has been deleted or changed its length since {@link #replace(int, boolean, File)} was called, or if something else goes wrong
+	 */
+	public void writeDelta(File delta, boolean littleEndian) throws IOException {
+		long replacedDataLength = getReplacedDataLength();
+		checkReplacements();
+		delta.createNewFile();
+		BankDelta.Writer writer = new BankDelta.Writer(delta, littleEndian, input, input.getLength() + (didxChunk < 0 ? 0 : replacedDataLength - dataLength));
+		Recorder recorder = new Recorder("writeDelta");
+		recorder.start(input, null);
+		boolean success = false;
+		try {
+			// the same as writeBNK, except that everything that comes from this SoundBank is only referred to
+			long copyStart = 0, copyEnd = 0;
+			for (int chunk = 0; chunk < chunks.getCount(); chunk++) {
+				if (chunk != didxChunk && (chunk != dataChunk || didxChunk < 0)) {
+					copyEnd = chunks.getDataOffset(chunk) + chunks.getLength(chunk);
+					continue;
+				}
+				writer.copy(copyStart, copyEnd - copyStart);
+				copyStart = copyEnd = chunks.getDataOffset(chunk) + chunks.getLength(chunk);
+				if (chunk == didxChunk) {
+					writeDIDX(writer.literal(8 + 12L * numWEMs), null);
+					continue;
+				}
+				CustomOutputStream header = writer.literal(8);
+				header.writeMagic(DATA);
+				header.writeInt((int) replacedDataLength);
+				for (int i = 0; i < numWEMs; i++) {
+					if (replacements[i] == null) {
+						writer.copy(offsetAbsolute + offsets[i], originalLengths[i]);
+						continue;
+					}
+					CustomOutputStream output = writer.literal(replacedLengths[i]);
+					CustomInputStream replacement = openReplacement(i);
+					try {
+						output.transferFrom(replacement, 0, replacedLengths[i]);
+					} finally {
+						replacement.close();
+					}
+				}
+			}
+			writer.copy(copyStart, input.getLength() - copyStart);
+			writer.finish();
+			success = true;
+		} finally {
+			if (!success) {
+				writer.abort();
+				delta.delete();
+			}
+			recorder.stop(input, null);
+			recorder.add(delta.length(), 0);
+			recorder.report();
+		}
+	}
+	
+	/**
+	 * Writes several modified versions of this SoundBank at once, each with its own replacements.
+	 * Calls {@link #writeVariants(List, boolean, ProgressListener)} without a listener.
+	 * @param variants the versions to write
+	 * @param littleEndian the endianness of the SoundBanks
+	 * @throws ArrayIndexOutOfBoundsException if a variant replaces a WEM that doesn't exist in this SoundBank
+	 * @throws IllegalArgumentException if a replacement is bigger than 4 GiB
+	 * @throws UnsupportedOperationException if the replacements of a variant make its DATA section bigger than 4 GiB
+	 * @throws IOException if a replacement doesn't exist or changes its length while it's copied, or if something else goes wrong
+	 */
+	public void writeVariants(List<BankVariant> variants, boolean littleEndian) throws IOException {
+		writeVariants(variants, littleEndian, null);
+	}
+	
+	/**
+	 * Writes several modified versions of this SoundBank at once, each with its own replacements, telling the specified listener how far it has come.
+	 * The result is the same as writing every variant with {@link #writeBNK(File, boolean)} from its own <code>BNKEditor</code>,
+	 * but this SoundBank is only read once: every part of it is read into memory a piece at a time, and written to all variants that need it.
+	 * Only the replacements are read for one variant each.
+	 * The replacements chosen with {@link #replace(int, boolean, File)} don't matter here, only the ones of the variants do.
+	 * All variants are checked before anything is written. If the listener cancels the operation, all unfinished files are deleted.
+	 * @param variants the versions to write
+	 * @param littleEndian the endianness of the SoundBanks
+	 * @param listener what to tell about the progress, or <code>null</code>; the bytes written to all variants are added up
+	 * @throws ArrayIndexOutOfBoundsException if a variant replaces a WEM that doesn't exist in this SoundBank
+	 * @throws IllegalArgumentException if a replacement is bigger than 4 GiB
+	 * @throws UnsupportedOperationException if the replacements of a variant make its DATA section bigger than 4 GiB
+	 * @throws InterruptedIOException if the listener cancelled the operation
+	 * @throws IOException if a replacement doesn't exist or changes its length while it's copied, or if something else goes wrong
+	 */
+	public void writeVariants(List<BankVariant> variants, boolean littleEndian, ProgressListener listener) throws IOException {
+		// find out what every variant replaces, before anything is written
+		int count = variants.size();
+		File[][] files = new File[count][numWEMs];
+		long[][] lengths = new long[count][];
+		long[] dataLengths = new long[count];
+		long total = 0;
+		for (int v = 0; v < count; v++) {
+			lengths[v] = originalLengths.clone();
+			resolve(variants.get(v), files[v], lengths[v]);
+			dataLengths[v] = getDataLength(lengths[v]);
+			total += input.getLength() + (didxChunk < 0 ? 0 : dataLengths[v] - dataLength);
+		}
+		if (listener != null) listener.start(total);
 		
-		// write DATA section header
-		output.writeString("DATA");
-		int calc = 0;
+		CustomOutputStream[] outputs = new CustomOutputStream[count];
+		Recorder recorder = new Recorder("writeVariants"), replaced = new Recorder("writeVariants.replacements");
+		recorder.start(input, null);
+		try {
+			try {
+				for (int v = 0; v < count; v++) {
+					variants.get(v).getOutput().createNewFile();
+					WEMInfo.forget(variants.get(v).getOutput());
+					outputs[v] = new CustomOutputStream(variants.get(v).getOutput(), littleEndian);
+				}
+				FanOut fanOut = new FanOut(listener);
+				List<CustomOutputStream> all = Arrays.asList(outputs);
+				
+				// go through all sections in their original order, copying everything but DIDX and DATA to every variant
+				long copyStart = 0, copyEnd = 0;
+				for (int chunk = 0; chunk < chunks.getCount(); chunk++) {
+					if (chunk != didxChunk && (chunk != dataChunk || didxChunk < 0)) {
+						copyEnd = chunks.getDataOffset(chunk) + chunks.getLength(chunk);
+						continue;
+					}
+					fanOut.copy(copyStart, copyEnd - copyStart, all);
+					copyStart = copyEnd = chunks.getDataOffset(chunk) + chunks.getLength(chunk);
+					if (chunk == didxChunk) {
+						for (int v = 0; v < count; v++) writeDIDX(outputs[v], lengths[v], listener);
+						continue;
+					}
+					
+					// every WEM is read once for all variants that keep it, then each replacement is copied into its own variant
+					for (int v = 0; v < count; v++) {
+						outputs[v].writeMagic(DATA);
+						outputs[v].writeInt((int) dataLengths[v]);
+						if (listener != null) listener.progress(8);
+					}
+					List<CustomOutputStream> keeping = new ArrayList<>(count);
+					for (int i = 0; i < numWEMs; i++) {
+						keeping.clear();
+						for (int v = 0; v < count; v++) {
+							if (files[v][i] == null) keeping.add(outputs[v]);
+						}
+						fanOut.copy(offsetAbsolute + offsets[i], originalLengths[i], keeping);
+						for (int v = 0; v < count; v++) {
+							if (files[v][i] == null) continue;
+							CustomInputStream replacement = openReplacement(files[v][i], lengths[v][i]);
+							replaced.start(replacement, null);
+							try {
+								transfer(outputs[v], replacement, 0, lengths[v][i], listener);
+							} finally {
+								replaced.stop(replacement, null);
+								replacement.close();
+							}
+						}
+					}
+				}
+				
+				// copy rest of file
+				fanOut.copy(copyStart, input.getLength() - copyStart, all);
+			} finally {
+				IOException failure = null;
+				for (CustomOutputStream output : outputs) {
+					if (output == null) continue;
+					try {
+						output.flushAndClose();
+					} catch (IOException ioe) {
+						if (failure == null) failure = ioe;
+					}
+					recorder.add(output.getBytesWritten(), output.getWriteCount());
+				}
+				if (failure != null) throw failure;
+			}
+		} catch (InterruptedIOException iioe) {
+			for (BankVariant variant : variants) variant.getOutput().delete();
+			throw iioe;
+		} finally {
+			recorder.stop(input, null);
+			recorder.report();
+			replaced.report();
+		}
+	}
+	
+	/**
+	 * Checks whether the specified SoundBank is what {@link #writeBNK(File, boolean)} would write right now.
+	 * That means the same sections in the same order, a DIDX section with the same IDs and the lengths of the replacements, WEMs right after each other that fill the DATA section,
+	 * and the same content (by CRC-32) as this SoundBank, or as the replacements where WEMs are replaced.
+	 * A SoundBank that has been changed with {@link #writeBNKInPlace()} usually doesn't pass, since that leaves gaps between the WEMs.
+	 * The CRCs are calculated by one thread per processor, each reading into buffers of its own.
+	 * @param written the SoundBank to check
+	 * @param littleEndian the endianness of the SoundBank to check
+	 * @return a description of everything that's wrong (at most 100 things); empty if everything is right
+	 * @throws IOException if something goes wrong while reading
+	 */
+	public List<String> verify(File written, boolean littleEndian) throws IOException {
+		return verify(written, littleEndian, replacements.clone(), replacedLengths.clone());
+	}
+	
+	/**
+	 * Checks whether the output of the specified variant is what {@link #writeVariants(List, boolean)} would write for it right now, the same way {@link #verify(File, boolean)} does.
+	 * @param variant the variant whose output to check
+	 * @param littleEndian the endianness of the SoundBank to check
+	 * @return a description of everything that's wrong (at most 100 things); empty if everything is right
+	 * @throws ArrayIndexOutOfBoundsException if the variant replaces a WEM that doesn't exist in this SoundBank
+	 * @throws IOException if a replacement doesn't exist anymore, or if something goes wrong while reading
+	 */
+	public List<String> verify(BankVariant variant, boolean littleEndian) throws IOException {
+		File[] files = new File[numWEMs];
+		long[] lengths = originalLengths.clone();
+		resolve(variant, files, lengths);
+		return verify(variant.getOutput(), littleEndian, files, lengths);
+	}
+	
+	/**
+	 * Writes all replacements into this SoundBank itself, instead of writing a modified copy of it.
+	 * If every replacement fits into the space of the WEM it replaces (including the padding before the next WEM), nothing else has to move.
+	 * In that case only the replaced WEMs and their DIDX entries are overwritten, and the rest of the file isn't touched at all.
+	 * Otherwise, the whole modified SoundBank is written to a temporary file next to it with {@link #writeBNK(File, boolean)}, which then replaces the SoundBank in one atomic move,
+	 * so the SoundBank is either the old or the new one, even if this fails halfway through.
+	 * Afterwards the replacements become the new original WEMs, so there are no replacements left.
+	 * If everything fit, the SoundBank doesn't have to be read again afterwards either, so this can be called over and over again cheaply.
+	 * Note that if everything fits, the SoundBank is changed directly, so if this fails halfway through (or the computer crashes), some WEMs may be broken.
+	 * @return <code>true</code> if all replacements fit into their space, <code>false</code> if the SoundBank had to be rewritten
+	 * @throws UnsupportedOperationException if the replacements make the DATA section bigger than 4 GiB, which the SoundBank format can't store
+	 * @throws IOException if a replacement has been deleted or changed its length since {@link #replace(int, boolean, File)} was called (checked before anything is changed),
+	 * if the file system can't replace the SoundBank atomically, or if something else goes wrong
+	 */
+	public boolean writeBNKInPlace() throws IOException {
+		// find out whether every replacement fits into its space
+		int firstReplaced = -1;
+		boolean fits = true;
 		for (int i = 0; i < numWEMs; i++) {
-			calc += replacedLengths[i];
+			if (replacements[i] == null) continue;
+			if (firstReplaced < 0) firstReplaced = i;
+			long space = (i + 1 < numWEMs ? offsets[i + 1] : dataLength) - offsets[i];
+			if (replacedLengths[i] > space) fits = false;
+		}
+		if (firstReplaced < 0) return true;
+		checkReplacements();
+		
+		if (!fits) {
+			// write a whole new SoundBank next to this one, then swap it in
+			File temp = File.createTempFile("bnkeditor", ".tmp", bnk.getAbsoluteFile().getParentFile());
+			try {
+				writeBNK(temp, littleEndian);
+				input.close();
+				WEMInfo.forget(bnk);
+				try {
+					Files.move(temp.toPath(), bnk.toPath(), StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+				} catch (IOException ioe) {
+					// the SoundBank is still the old one, so everything read from it is still right
+					input = new CustomInputStream(bnk, littleEndian);
+					throw ioe;
+				}
+			} finally {
+				temp.delete();
+			}
+			
+			// start over with the new SoundBank
+			cache.clear();
+			open();
+			return false;
 		}
-		output.writeInt(calc);
 		
-		// write DATA section data
+		Recorder recorder = new Recorder("writeBNKInPlace");
+		recorder.start(input, null);
+		WEMInfo.forget(bnk);
+		RandomAccessFile file = new RandomAccessFile(bnk, "rw");
+		try {
+			// overwrite the replaced WEMs, clear what's left of their space, and fix their lengths in the DIDX section
+			FileChannel channel = file.getChannel();
+			for (int i = firstReplaced; i < numWEMs; i++) {
+				if (replacements[i] == null) continue;
+				channel.position(offsetAbsolute + offsets[i]);
+				copyReplacement(i, channel);
+				writeZeros(channel, originalLengths[i] - replacedLengths[i]);
+				writeInt(channel, chunks.getDataOffset(didxChunk) + 12 * i + 8, replacedLengths[i]);
+			}
+		} finally {
+			file.close();
+			recorder.stop(input, null);
+			recorder.report();
+		}
+		
+		// nothing moved, so everything that was read when opening the SoundBank is still right, except for the lengths of the replaced WEMs
+		for (int i = firstReplaced; i < numWEMs; i++) {
+			if (replacements[i] == null) continue;
+			originalLengths[i] = replacedLengths[i];
+			replacements[i] = null;
+			cache.remove(i);
+		}
+		synchronized (this) {
+			wemInfo = null;
+		}
+		return true;
+	}
+	
+	/**
+	 * Sets what to tell about every phase of the work from now on.
+	 * To also hear about opening the SoundBank, pass the listener to {@link #BNKEditor(File, boolean, long, MetricsListener)} instead.
+	 * @param metricsListener what to tell about every phase of the work, or <code>null</code> for nothing
+	 */
+	public void setMetricsListener(MetricsListener metricsListener) {
+		this.metricsListener = metricsListener;
+	}
+	
+	/**
+	 * Returns what is told about every phase of the work.
+	 * @return what is told about every phase of the work, or <code>null</code>
+	 */
+	public MetricsListener getMetricsListener() {
+		return metricsListener;
+	}
+	
+	/**
+	 * Returns the table of all sections inside this SoundBank, in the order they appear in the file.
+	 * Use {@link #readSection(int)} to get the data of a section.
+	 * @return the table of all sections inside this SoundBank
+	 */
+	public ChunkTable getChunks() {
+		return chunks;
+	}
+	
+	/**
+	 * Returns an index of the objects inside the HIRC section, for example to find out which Sounds play a WEM before replacing it.
+	 * The HIRC section isn't read when constructing a <code>BNKEditor</code>, only the first time this is called.
+	 * If {@link #writeBNKInPlace()} has to move parts of the file, it's read again.
+	 * @return the index of the HIRC section (which is empty if there is no HIRC section)
+	 * @throws IllegalArgumentException if the HIRC section is corrupted
+	 * @throws IOException if something else goes wrong
+	 */
+	public synchronized HIRCIndex getHIRCIndex() throws IOException {
+		if (hircIndex == null) {
+			Recorder recorder = new Recorder("open.hirc");
+			recorder.start(input, null);
+			try {
+				hircIndex = new HIRCIndex(input, chunks, littleEndian);
+			} finally {
+				recorder.stop(input, null);
+				recorder.report();
+			}
+		}
+		return hircIndex;
+	}
+	
+	/**
+	 * Returns what the header of every WEM says about it, like its codec, its number of channels and its sample rate.
+	 * Only the first few hundred bytes of every WEM are read for this, and only the first time this is called.
+	 * The results are also stored in the cache directory of the current user, and remembered for as long as the SoundBank keeps its size and modification time (see {@link WEMInfo}),
+	 * so opening the same SoundBank again, even after a restart, doesn't read any of its WEMs.
+	 * Replacements aren't looked at: this always describes the WEMs inside the SoundBank.
+	 * @return the header of every WEM, in the order of the SoundBank, with <code>null</code> for WEMs that don't have a RIFF header
+	 * @throws IOException if something goes wrong while reading
+	 */
+	public synchronized WEMInfo[] getWEMInfo() throws IOException {
+		if (wemInfo == null) {
+			WEMInfo[] cached = WEMInfo.getCached(bnk);
+			if (cached != null && cached.length == numWEMs) wemInfo = cached;
+			else {
+				long length = bnk.length(), modified = bnk.lastModified();
+				Recorder recorder = new Recorder("probe");
+				recorder.start(input, null);
+				try {
+					WEMInfo[] infos = new WEMInfo[numWEMs];
+					ByteBuffer buffer = ByteBuffer.allocate(WEMInfo.PROBE_SIZE);
+					for (int i = 0; i < numWEMs; i++) infos[i] = WEMInfo.probe(input, offsetAbsolute + offsets[i], originalLengths[i], buffer);
+					wemInfo = infos;
+				} finally {
+					recorder.stop(input, null);
+					recorder.report();
+				}
+				WEMInfo.putCached(bnk, length, modified, wemInfo);
+			}
+		}
+		return wemInfo.clone();
+	}
+	
+	/**
+	 * Reads the data of the specified section, not including its header.
+	 * Only the DIDX section is read when constructing a <code>BNKEditor</code>, all the others are only read when they're asked for.
+	 * @param index the index of the section inside {@link #getChunks()}
+	 * @return the data of the section
+	 * @throws ArrayIndexOutOfBoundsException if there is no such section
+	 * @throws UnsupportedOperationException if the section is longer than <code>Integer.MAX_VALUE</code> bytes
+	 * @throws IOException if something else goes wrong
+	 */
+	public byte[] readSection(int index) throws IOException {
+		if (chunks.getLength(index) > Integer.MAX_VALUE) throw new UnsupportedOperationException("Can't store that many bytes at once!");
+		return input.read(chunks.getDataOffset(index), (int) chunks.getLength(index));
+	}
+	
+	/**
+	 * Closes the SoundBank.
+	 * Since WEMs are read from the SoundBank whenever they're needed, it's kept open until this is called.
+	 * After this, neither {@link #writeWEM(int, boolean, File)} nor {@link #writeBNK(File, boolean)} can be called anymore.
+	 * @throws IOException if something goes wrong
+	 */
+	public void close() throws IOException {
+		cache.clear();
+		input.close();
+	}
+	
+	/**
+	 * Returns the cache that keeps recently read WEMs in memory.
+	 * Use it to change its budget, or to find out how well it's doing.
+	 * @return the cache that keeps recently read WEMs in memory
+	 */
+	public WEMCache getCache() {
+		return cache;
+	}
+	
+	/**
+	 * Writes the DIDX section of the modified SoundBank, including its header.
+	 * The WEMs are placed right after each other, in their original order.
+	 * @param output where to write the section
+	 * @param listener what to tell about the progress, or <code>null</code>
+	 * @throws IOException if something goes wrong
+	 */
+	private void writeDIDX(CustomOutputStream output, ProgressListener listener) throws IOException {
+		writeDIDX(output, replacedLengths, listener);
+	}
+	
+	/**
+	 * Writes a DIDX section with the specified WEM lengths, including its header.
+	 * The WEMs are placed right after each other, in their original order.
+	 * @param output where to write the section
+	 * @param lengths the length of every WEM
+	 * @param listener what to tell about the progress, or <code>null</code>
+	 * @throws IOException if something goes wrong
+	 */
+	private void writeDIDX(CustomOutputStream output, long[] lengths, ProgressListener listener) throws IOException {
+		output.writeMagic(DIDX);
+		output.writeInt(numWEMs * 12);
+		long currentAddress = 0;
 		for (int i = 0; i < numWEMs; i++) {
-			if (replacements[i] != null) {
-				CustomInputStream replacement = new CustomInputStream(replacements[i], littleEndian);
-				output.write(replacement.readRest());
+			output.writeInt(ids[i]);
+			output.writeInt((int) currentAddress);
+			output.writeInt((int) lengths[i]);
+			currentAddress += lengths[i];
+		}
+		if (listener != null) listener.progress(8 + numWEMs * 12);
+	}
+	
+	/**
+	 * Writes the DATA section of the modified SoundBank, including its header.
+	 * @param output where to write the section
+	 * @param listener what to tell about the progress, or <code>null</code>
+	 * @param wems what to tell about the WEMs that are copied from this SoundBank
+	 * @param replaced what to tell about the replacements that are copied
+	 * @throws IOException if something goes wrong
+	 */
+	private void writeDATA(CustomOutputStream output, ProgressListener listener, Recorder wems, Recorder replaced) throws IOException {
+		output.writeMagic(DATA);
+		output.writeInt((int) getReplacedDataLength());
+		if (listener != null) listener.progress(8);
+		writeWEMs(output, listener, wems, replaced);
+	}
+	
+	/**
+	 * Writes the WEMs of the modified SoundBank right after each other.
+	 * Unchanged WEMs are copied straight from this SoundBank, replaced ones straight from their replacements.
+	 * @param output where to write the WEMs
+	 * @param listener what to tell about the progress, or <code>null</code>
+	 * @param wems what to tell about the WEMs that are copied from this SoundBank
+	 * @param replaced what to tell about the replacements that are copied
+	 * @throws IOException if something goes wrong
+	 */
+	private void writeWEMs(CustomOutputStream output, ProgressListener listener, Recorder wems, Recorder replaced) throws IOException {
+		// merge neighboring unchanged WEMs into one transfer
+		wems.start(input, output);
+		long runStart = 0, runEnd = 0;
+		for (int i = 0; i < numWEMs; i++) {
+			if (replacements[i] == null) {
+				long start = offsetAbsolute + offsets[i];
+				if (start != runEnd) {
+					transfer(output, input, runStart, runEnd - runStart, listener);
+					runStart = start;
+				}
+				runEnd = start + originalLengths[i];
 				continue;
 			}
-			for (int j = 0; j <= i; j++) {
-				if (input.getCurrentPosition() <= offsets[j] + offsetAbsolute) {
-					input.skipUntil(offsets[j] + offsetAbsolute);
-					bufferedWEMs[j] = input.read(originalLengths[j]);
-				}
+			transfer(output, input, runStart, runEnd - runStart, listener);
+			runStart = runEnd = 0;
+			wems.stop(input, output);
+			CustomInputStream replacement = openReplacement(i);
+			replaced.start(replacement, output);
+			try {
+				transfer(output, replacement, 0, replacedLengths[i], listener);
+			} finally {
+				replaced.stop(replacement, output);
+				replacement.close();
 			}
-			output.write(bufferedWEMs[i]);
+			wems.start(input, output);
 		}
-		
-		// write rest of file
-		if (input.getRemaining() > 0) rest = input.readRest();
-		output.write(rest);
-		output.flushAndClose();
+		transfer(output, input, runStart, runEnd - runStart, listener);
+		wems.stop(input, output);
+	}
+	
+	/**
+	 * Adds a part to the list of parts of a modified SoundBank, for {@link #writeBNKPipelined(File, boolean, ProgressListener)}.
+	 * Empty parts are left out, and a part of this SoundBank that starts where the last one ended is merged into it.
+	 * @param pieces the parts so far
+	 * @param what the position of the replaced WEM, or {@link #PIECE_BANK}
+	 * @param position where the part starts
+	 * @param length the length of the part
+	 */
+	private static void addPiece(List<long[]> pieces, int what, long position, long length) {
+		if (length == 0) return;
+		long[] last = pieces.isEmpty() ? null : pieces.get(pieces.size() - 1);
+		if (what == PIECE_BANK && last != null && last[0] == PIECE_BANK && last[1] + last[2] == position) last[2] += length;
+		else pieces.add(new long[] {what, position, length});
+	}
+	
+	/**
+	 * Waits for the specified task to finish, and throws whatever it threw.
+	 * @param task the task
+	 * @throws InterruptedException if the thread was interrupted while waiting
+	 * @throws IOException if the task threw one
+	 */
+	private static void getResult(Future<?> task) throws IOException, InterruptedException {
+		try {
+			task.get();
+		} catch (ExecutionException ee) {
+			if (ee.getCause() instanceof IOException) throw (IOException) ee.getCause();
+			if (ee.getCause() instanceof RuntimeException) throw (RuntimeException) ee.getCause();
+			if (ee.getCause() instanceof InterruptedException) throw (InterruptedException) ee.getCause();
+			throw new IOException(ee.getCause());
+		}
+	}
+	
+	/**
+	 * Finds out which WEMs the specified variant replaces with which files.
+	 * @param variant the variant
+	 * @param files where to put the replacement of every WEM it replaces
+	 * @param lengths where to put the length of every WEM it replaces
+	 * @throws ArrayIndexOutOfBoundsException if the variant replaces a WEM that doesn't exist in this SoundBank
+	 * @throws IllegalArgumentException if a replacement is bigger than 4 GiB
+	 * @throws IOException if a replacement doesn't exist
+	 */
+	private void resolve(BankVariant variant, File[] files, long[] lengths) throws IOException {
+		for (int r = 0; r < variant.getReplacementCount(); r++) {
+			File replacement = variant.getReplacement(r);
+			if (!replacement.isFile()) throw new IOException("The replacement " + replacement + " doesn't exist!");
+			if (replacement.length() > MAX_UNSIGNED_INT) throw new IllegalArgumentException("The WEM " + replacement + " is too large! (a SoundBank can't store WEMs bigger than 4 GiB)");
+			int position = getPosition(variant.getIndex(r), variant.isID(r));
+			files[position] = replacement;
+			lengths[position] = replacement.length();
+		}
+	}
+	
+	/**
+	 * Checks the specified SoundBank against this SoundBank with the specified replacements, see {@link BankVerifier}.
+	 * @param written the SoundBank to check
+	 * @param littleEndian the endianness of the SoundBank to check
+	 * @param files the replacement of every WEM, or <code>null</code> where it isn't replaced
+	 * @param lengths the length every WEM should have
+	 * @return a description of everything that's wrong
+	 * @throws IOException if something goes wrong while reading
+	 */
+	private List<String> verify(File written, boolean littleEndian, File[] files, long[] lengths) throws IOException {
+		long[] sourceOffsets = new long[numWEMs];
+		for (int i = 0; i < numWEMs; i++) sourceOffsets[i] = offsetAbsolute + offsets[i];
+		Recorder recorder = new Recorder("verify");
+		recorder.start(null, null);
+		try {
+			return new BankVerifier(bnk, chunks, ids, sourceOffsets, originalLengths, files, lengths).verify(written, littleEndian);
+		} finally {
+			recorder.stop(null, null);
+			recorder.report();
+		}
+	}
+	
+	/**
+	 * Copies straight from the specified file into the specified output, telling the specified listener about every {@value #PROGRESS_STEP} bytes.
+	 * @param output where to copy to
+	 * @param source the file to copy from
+	 * @param position where to start copying in the source file
+	 * @param length the amount of bytes to copy
+	 * @param listener what to tell about the progress, or <code>null</code> to copy everything at once
+	 * @throws InterruptedIOException if the listener cancelled the operation
+	 * @throws IOException if something else goes wrong
+	 */
+	private static void transfer(CustomOutputStream output, CustomInputStream source, long position, long length, ProgressListener listener) throws IOException {
+		if (listener == null) {
+			output.transferFrom(source, position, length);
+			return;
+		}
+		while (length > 0) {
+			if (listener.isCancelled()) throw new InterruptedIOException("Cancelled!");
+			long step = Math.min(length, PROGRESS_STEP);
+			output.transferFrom(source, position, step);
+			listener.progress(step);
+			position += step;
+			length -= step;
+		}
+	}
+	
+	/**
+	 * Copies the replacement of the WEM in the specified position into the specified channel, at its current position.
+	 * @param position the position of the WEM inside the SoundBank
+	 * @param channel where to copy the replacement
+	 * @throws IOException if something goes wrong
+	 */
+	private void copyReplacement(int position, WritableByteChannel channel) throws IOException {
+		CustomInputStream replacement = openReplacement(position);
+		try {
+			replacement.transferTo(0, replacedLengths[position], channel);
+		} finally {
+			replacement.close();
+		}
+	}
+	
+	/**
+	 * Opens the replacement of the WEM in the specified position, making sure it still has the length the DIDX section is going to say it has.
+	 * @param position the position of the WEM inside the SoundBank
+	 * @return the opened replacement, which has to be closed by the caller
+	 * @throws IOException if the replacement has been deleted or changed its length since it was chosen, or if something else goes wrong
+	 */
+	private CustomInputStream openReplacement(int position) throws IOException {
+		return openReplacement(replacements[position], replacedLengths[position]);
+	}
+	
+	/**
+	 * Opens the specified replacement, making sure it still has the length the DIDX section is going to say it has.
+	 * @param file the replacement
+	 * @param expectedLength the length it had when it was chosen
+	 * @return the opened replacement, which has to be closed by the caller
+	 * @throws IOException if the replacement has been deleted or changed its length since it was chosen, or if something else goes wrong
+	 */
+	private CustomInputStream openReplacement(File file, long expectedLength) throws IOException {
+		CustomInputStream replacement;
+		try {
+			replacement = new CustomInputStream(file, littleEndian);
+		} catch (FileNotFoundException fnfe) {
+			throw new IOException("The replacement " + file + " doesn't exist anymore!", fnfe);
+		}
+		if (replacement.getLength() != expectedLength) {
+			long length = replacement.getLength();
+			replacement.close();
+			throw new IOException("The replacement " + file + " changed since it was chosen! (it was " + expectedLength + " bytes long, now it's " + length + ")");
+		}
+		return replacement;
+	}
+	
+	/**
+	 * Makes sure every replacement still exists and still has the length it had when it was chosen, before anything is written.
+	 * They're checked again while they're copied, since they could still change in the meantime.
+	 * @throws IOException if a replacement has been deleted or changed its length
+	 */
+	private void checkReplacements() throws IOException {
+		for (int i = 0; i < numWEMs; i++) {
+			if (replacements[i] == null) continue;
+			if (!replacements[i].isFile()) throw new IOException("The replacement " + replacements[i] + " doesn't exist anymore!");
+			if (replacements[i].length() != replacedLengths[i]) throw new IOException("The replacement " + replacements[i] + " changed since it was chosen! (it was " + replacedLengths[i] + " bytes long, now it's " + replacements[i].length() + ")");
+		}
+	}
+	
+	/**
+	 * Calculates the SHA-256 hash of the WEM in the specified position, reading it piece by piece through the specified buffer.
+	 * @param position the position of the WEM inside the SoundBank
+	 * @param buffer the buffer to read through
+	 * @return the hash, in hexadecimal
+	 * @throws IOException if something goes wrong
+	 */
+	private String hash(int position, ByteBuffer buffer) throws IOException {
+		MessageDigest digest;
+		try {
+			digest = MessageDigest.getInstance("SHA-256");
+		} catch (NoSuchAlgorithmException nsae) {
+			throw new IllegalStateException("Every Java platform has to support SHA-256!", nsae);
+		}
+		long start = offsetAbsolute + offsets[position], remaining = originalLengths[position];
+		while (remaining > 0) {
+			buffer.clear();
+			buffer.limit((int) Math.min(remaining, buffer.capacity()));
+			input.read(start + originalLengths[position] - remaining, buffer);
+			buffer.flip();
+			remaining -= buffer.remaining();
+			digest.update(buffer);
+		}
+		StringBuilder hex = new StringBuilder(64);
+		for (byte b : digest.digest()) hex.append(String.format("%02x", b));
+		return hex.toString();
+	}
+	
+	/**
+	 * Takes care of a WEM whose content has already been written to another file.
+	 * @param file where the WEM would be written
+	 * @param original the file the content has been written to
+	 * @param mode what to do with the WEM
+	 * @return <code>true</code> if the WEM has been taken care of, <code>false</code> if it has to be written in full because the file system doesn't support hard links
+	 * @throws IOException if something goes wrong
+	 */
+	private static boolean linkDuplicate(File file, File original, Deduplicator.Mode mode) throws IOException {
+		if (mode == Deduplicator.Mode.MANIFEST) return true;
+		try {
+			Files.deleteIfExists(file.toPath());
+			Files.createLink(file.toPath(), original.toPath());
+			return true;
+		} catch (UnsupportedOperationException | FileSystemException e) {
+			return false;
+		}
+	}
+	
+	/**
+	 * Writes the specified amount of zeros into the specified channel, at its current position.
+	 * @param channel where to write the zeros
+	 * @param amount how many zeros to write (nothing happens if this isn't positive)
+	 * @throws IOException if something goes wrong
+	 */
+	private static void writeZeros(WritableByteChannel channel, long amount) throws IOException {
+		ByteBuffer zeros = ByteBuffer.allocate((int) Math.min(Math.max(amount, 0), CustomOutputStream.BUFFER_SIZE));
+		while (amount > 0) {
+			zeros.clear();
+			zeros.limit((int) Math.min(amount, zeros.capacity()));
+			amount -= channel.write(zeros);
+		}
+	}
+	
+	/**
+	 * Overwrites a single 32-bit integer inside the specified file, in the endianness of this SoundBank.
+	 * @param channel the file to write to
+	 * @param position where to write the integer
+	 * @param value the integer to write (only its lower 32 bits are written)
+	 * @throws IOException if something goes wrong
+	 */
+	private void writeInt(FileChannel channel, long position, long value) throws IOException {
+		ByteBuffer buffer = ByteBuffer.allocate(4).order(littleEndian ? ByteOrder.LITTLE_ENDIAN : ByteOrder.BIG_ENDIAN);
+		buffer.putInt(0, (int) value);
+		while (buffer.hasRemaining()) channel.write(buffer, position + buffer.position());
+	}
+	
+	/**
+	 * Calculates how long the DATA section of the modified SoundBank will be.
+	 * @return the length of the DATA section of the modified SoundBank
+	 * @throws UnsupportedOperationException if it's bigger than 4 GiB, which the SoundBank format can't store
+	 */
+	private long getReplacedDataLength() {
+		return getDataLength(replacedLengths);
+	}
+	
+	/**
+	 * Calculates how long a DATA section with the specified WEM lengths will be.
+	 * @param lengths the length of every WEM
+	 * @return the length of the DATA section
+	 * @throws UnsupportedOperationException if it's bigger than 4 GiB, which the SoundBank format can't store
+	 */
+	private long getDataLength(long[] lengths) {
+		long calc = 0;
+		for (int i = 0; i < numWEMs; i++) {
+			calc += lengths[i];
+		}
+		if (calc > MAX_UNSIGNED_INT) throw new UnsupportedOperationException("Can't store that many bytes in a SoundBank! (the DATA section would be " + calc + " bytes long, but it can't be longer than " + MAX_UNSIGNED_INT + ")");
+		return calc;
+	}
+	
+	/**
+	 * Finds out the position of the specified WEM in the arrays.
+	 * @param index purpose explained below
+	 * @param isID <code>false</code>: <code><b>index</b></code> is the position of the WEM inside the SoundBank
+	 * <br><code>true</code>: <code><b>index</b></code> is the ID of the WEM
+	 * @return the position of the WEM inside the SoundBank
+	 * @throws ArrayIndexOutOfBoundsException if there is no such WEM in this SoundBank
+	 */
+	private int getPosition(int index, boolean isID) {
+		if (!isID) {
+			if (index < 0 || index >= numWEMs) throw new ArrayIndexOutOfBoundsException("There is no WEM number " + (index + 1) + " in this SoundBank! (it only has " + numWEMs + ")");
+			return index;
+		}
+		int position = idIndex.find(index);
+		if (position < 0) throw new ArrayIndexOutOfBoundsException("There is no WEM with the ID " + Integer.toUnsignedString(index) + " in this SoundBank!");
+		return position;
+	}
+	
+	/**
+	 * Reads the WEM in the specified position inside the SoundBank, directly from where it's stored, unless it's still in the cache.
+	 * @param position the position of the WEM inside the SoundBank
+	 * @return the WEM
+	 * @throws IOException if something goes wrong
+	 */
+	private byte[] readWEM(int position) throws IOException {
+		if (originalLengths[position] > Integer.MAX_VALUE) throw new UnsupportedOperationException("Can't store that many bytes at once!");
+		byte[] wem = cache.get(position);
+		if (wem == null) {
+			wem = input.read(offsetAbsolute + offsets[position], (int) originalLengths[position]);
+			cache.put(position, wem);
+		}
+		return wem;
 	}
 }
\ No newline at end of file
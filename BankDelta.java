@@ -0,0 +1,244 @@
+package bnkeditor;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+
+/**
+ * A patch that turns an original SoundBank into a modified one, without containing all of the modified SoundBank.
+ * Written by {@link BNKEditor#writeDelta(File, boolean)}, and applied with {@link #apply(File, File, File)}.
+ * <p>
+ * A delta is a list of instructions for writing the modified SoundBank from start to finish. Everything that's the same as in the original SoundBank
+ * (all the other sections, and every WEM that wasn't replaced) is an instruction to copy a range of the original SoundBank, along with the SHA-256 hash of that range.
+ * Everything else (the new DIDX section, the header of the DATA section and the replacements) is stored in the delta itself.
+ * So the size of a delta depends on what has been replaced, not on the size of the SoundBank.
+ * Applying it reads the original SoundBank once from start to finish, and fails if any of the copied ranges has a different hash than it should,
+ * so a delta applied to the wrong (or a tampered) original SoundBank never produces a SoundBank.
+ * <p>
+ * The format: the magic <code>BNKD</code>, one byte that's 1 if all following numbers are Little Endian, the version (a 32-bit integer), the length of the original SoundBank and the length of the modified SoundBank (64-bit integers each).
+ * Then the instructions, each starting with one byte:
+ * <br><code>1</code>: copy from the original SoundBank, followed by the position (64 bits), the length (64 bits) and the SHA-256 hash ({@value #HASH_LENGTH} bytes)
+ * <br><code>2</code>: copy from the delta, followed by the length (64 bits) and that many bytes
+ * <br><code>0</code>: the end
+ * <p>
+ * Version 1 had a CRC-32 instead of the SHA-256 hash, and isn't supported anymore.
+ * @author marieismywaifu
+ */
+public class BankDelta {
+	private static final int MAGIC = 0x424E4B44, VERSION = 2; // BNKD
+	private static final int HASH_LENGTH = 32;
+	private static final int END = 0, COPY = 1, LITERAL = 2;
+	private static final int BUFFER_SIZE = 1024 * 1024;
+	
+	/**
+	 * Writes a delta, merging neighboring copies into one instruction.
+	 */
+	static class Writer {
+		private final CustomOutputStream output;
+		private final CustomInputStream source;
+		private final ByteBuffer buffer = ByteBuffer.allocate(BUFFER_SIZE);
+		private long copyStart, copyEnd;
+		
+		/**
+		 * Starts writing a delta.
+		 * @param delta where to write the delta
+		 * @param littleEndian the endianness of the delta and the modified SoundBank
+		 * @param source the original SoundBank
+		 * @param targetLength the length of the modified SoundBank
+		 * @throws IOException if something goes wrong
+		 */
+		Writer(File delta, boolean littleEndian, CustomInputStream source, long targetLength) throws IOException {
+			this.source = source;
+			output = new CustomOutputStream(delta, littleEndian);
+			output.writeMagic(MAGIC);
+			output.write(littleEndian ? 1 : 0);
+			output.writeInt(VERSION);
+			output.writeLong(source.getLength());
+			output.writeLong(targetLength);
+		}
+		
+		/**
+		 * Adds an instruction to copy the specified range of the original SoundBank.
+		 * If it starts where the last one ended, they become one instruction.
+		 * @param position where the range starts
+		 * @param length the length of the range
+		 * @throws IOException if something goes wrong
+		 */
+		void copy(long position, long length) throws IOException {
+			if (length == 0) return;
+			if (position != copyEnd) {
+				flushCopy();
+				copyStart = position;
+			}
+			copyEnd = position + length;
+		}
+		
+		/**
+		 * Adds an instruction to copy bytes from the delta itself.
+		 * The bytes have to be written to the returned stream right away, and there have to be exactly as many as specified.
+		 * @param length how many bytes will follow
+		 * @return where to write the bytes
+		 * @throws IOException if something goes wrong
+		 */
+		CustomOutputStream literal(long length) throws IOException {
+			flushCopy();
+			output.write(LITERAL);
+			output.writeLong(length);
+			return output;
+		}
+		
+		/**
+		 * Ends the delta and closes it.
+		 * @throws IOException if something goes wrong
+		 */
+		void finish() throws IOException {
+			try {
+				flushCopy();
+				output.write(END);
+			} finally {
+				output.flushAndClose();
+			}
+		}
+		
+		/**
+		 * Closes the delta without ending it, after something went wrong.
+		 */
+		void abort() {
+			try {
+				output.flushAndClose();
+			} catch (IOException ioe) {
+				// it's going to be deleted anyway
+			}
+		}
+		
+		/**
+		 * Writes the copy instruction that has been collected so far, reading its range to calculate its hash.
+		 */
+		private void flushCopy() throws IOException {
+			if (copyEnd == copyStart) return;
+			output.write(COPY);
+			output.writeLong(copyStart);
+			output.writeLong(copyEnd - copyStart);
+			output.write(hash(source, copyStart, copyEnd - copyStart, buffer, null));
+			copyStart = copyEnd = 0;
+		}
+	}
+	
+	/**
+	 * Writes the modified SoundBank described by the specified delta, reading the original SoundBank once from start to finish.
+	 * It's written into a temporary file next to the target first, which only replaces the target once everything matches,
+	 * so the target can even be the original SoundBank itself, and nothing at the target is touched if anything goes wrong.
+	 * @param original the original SoundBank
+	 * @param delta the delta
+	 * @param target where to write the modified SoundBank (can be the same file as <code><b>original</b></code>)
+	 * @throws IllegalArgumentException if the delta isn't a delta, has a version that isn't supported, or belongs to a different SoundBank (judging by its length)
+	 * @throws IOException if a range of the original SoundBank doesn't have the hash it should, or if something else goes wrong
+	 */
+	public static void apply(File original, File delta, File target) throws IOException {
+		// the endianness is the byte after the magic, which doesn't depend on the endianness itself
+		CustomInputStream input = new CustomInputStream(delta, true);
+		boolean littleEndian;
+		try {
+			if (input.getLength() < 5 || input.readMagic() != MAGIC) throw new IllegalArgumentException("The file isn't a SoundBank delta!");
+			littleEndian = input.read() != 0;
+		} finally {
+			input.close();
+		}
+		
+		input = new CustomInputStream(delta, littleEndian);
+		CustomInputStream source = null;
+		File temp = null;
+		try {
+			input.seek(5);
+			int version = input.readInt();
+			if (version != VERSION) throw new IllegalArgumentException("The delta has version " + version + ", but only version " + VERSION + " is supported!");
+			long sourceLength = input.readLong(), targetLength = input.readLong();
+			source = new CustomInputStream(original, littleEndian);
+			if (source.getLength() != sourceLength) throw new IllegalArgumentException("The delta doesn't belong to " + original + "! (it's for a SoundBank of " + sourceLength + " bytes, but that one is " + source.getLength() + " bytes long)");
+			
+			temp = File.createTempFile("bnkeditor", ".tmp", target.getAbsoluteFile().getParentFile());
+			CustomOutputStream output = new CustomOutputStream(temp, littleEndian);
+			try {
+				ByteBuffer buffer = ByteBuffer.allocate(BUFFER_SIZE);
+				while (true) {
+					if (input.getRemaining() == 0) throw new IllegalArgumentException("The delta is corrupted! (it ends too early)");
+					int instruction = input.read();
+					if (instruction == END) break;
+					if (instruction == COPY) {
+						long position = input.readLong(), length = input.readLong();
+						byte[] expected = input.read(HASH_LENGTH);
+						if (position < 0 || length < 0 || position + length > sourceLength) throw new IllegalArgumentException("The delta is corrupted! (it copies " + length + " bytes from position " + position + ")");
+						if (!MessageDigest.isEqual(hash(source, position, length, buffer, output), expected)) throw new IOException("The original SoundBank doesn't match the delta! (the " + length + " bytes at position " + position + " have changed)");
+					} else if (instruction == LITERAL) {
+						long length = input.readLong();
+						if (length < 0 || length > input.getRemaining()) throw new IllegalArgumentException("The delta is corrupted! (it contains " + length + " bytes, but there are only " + input.getRemaining() + " left)");
+						output.transferFrom(input, input.getCurrentPosition(), length);
+						input.skip(length);
+					} else throw new IllegalArgumentException("The delta is corrupted! (unknown instruction " + instruction + ")");
+				}
+			} finally {
+				output.flushAndClose();
+			}
+			if (temp.length() != targetLength) throw new IOException("The modified SoundBank should be " + targetLength + " bytes long, but it's " + temp.length() + " bytes long!");
+			
+			// the original SoundBank has to be closed before it can be replaced
+			source.close();
+			source = null;
+			WEMInfo.forget(target);
+			Files.move(temp.toPath(), target.toPath(), StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+		} finally {
+			input.close();
+			if (source != null) source.close();
+			if (temp != null) temp.delete();
+		}
+	}
+	
+	/**
+	 * Calculates the SHA-256 hash of the specified range of a file, reading it piece by piece through the specified buffer.
+	 * @param source the file
+	 * @param position where the range starts
+	 * @param length the length of the range
+	 * @param buffer the buffer to read through
+	 * @param output where to write the range while it's read, or <code>null</code>
+	 * @return the hash
+	 * @throws IOException if something goes wrong
+	 */
+	private static byte[] hash(CustomInputStream source, long position, long length, ByteBuffer buffer, CustomOutputStream output) throws IOException {
+		MessageDigest digest;
+		try {
+			digest = MessageDigest.getInstance("SHA-256");
+		} catch (NoSuchAlgorithmException nsae) {
+			throw new IllegalStateException("Every Java platform has to support SHA-256!", nsae);
+		}
+		while (length > 0) {
+			buffer.clear();
+			buffer.limit((int) Math.min(length, buffer.capacity()));
+			source.read(position, buffer);
+			digest.update(buffer.array(), 0, buffer.limit());
+			if (output != null) output.write(buffer.array(), 0, buffer.limit());
+			position += buffer.limit();
+			length -= buffer.limit();
+		}
+		return digest.digest();
+	}
+	
+	public static void main(String[] args) {
+		if (args.length != 3) {
+			System.err.println("usage: java bnkeditor.BankDelta <original soundbank> <delta> <modified soundbank>");
+			System.exit(2);
+			return;
+		}
+		try {
+			long start = System.nanoTime();
+			apply(new File(args[0]), new File(args[1]), new File(args[2]));
+			System.out.println(String.format("%s written in %.2f s", args[2], (System.nanoTime() - start) / 1e9));
+		} catch (IOException | IllegalArgumentException e) {
+			System.err.println(e.getMessage());
+			System.exit(1);
+		}
+	}
+}
\ No newline at end of file
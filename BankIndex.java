@@ -0,0 +1,424 @@
+package bnkeditor;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.FileVisitResult;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.SimpleFileVisitor;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * An index of all WEMs inside all SoundBanks of a directory (and its subdirectories), to find out which SoundBank contains a certain WEM without opening all of them.
+ * The index is stored in a file, and only SoundBanks whose size or modification time changed since then are read again when it's updated.
+ * Even for those, only the section headers and the DIDX section are read.
+ * All WEMs are kept sorted by their ID in plain arrays, so finding one is a binary search.
+ * Unless told otherwise, the index is stored in the cache directory of the current user (see {@link #getDefaultIndexFile(File)}), never in the directory that's indexed.
+ * @author marieismywaifu
+ */
+public class BankIndex {
+	private static final int MAGIC = 0x424E4B49, VERSION = 1; // BNKI
+	
+	private final File root;
+	private final boolean littleEndian;
+	private final String[] banks;
+	private final long[] bankLengths, bankModified;
+	private final int[] ids, bankNumbers, lengths;
+	private final long[] offsets;
+	private final int reread;
+	
+	/**
+	 * Builds the index from the specified arrays, sorting the WEMs by their ID.
+	 */
+	private BankIndex(File root, boolean littleEndian, String[] banks, long[] bankLengths, long[] bankModified, int[] ids, int[] bankNumbers, long[] offsets, int[] lengths, int reread) {
+		this.root = root;
+		this.littleEndian = littleEndian;
+		this.banks = banks;
+		this.bankLengths = bankLengths;
+		this.bankModified = bankModified;
+		this.reread = reread;
+		
+		// sort by ID, keeping the order of the SoundBanks for equal IDs
+		long[] order = new long[ids.length];
+		for (int i = 0; i < ids.length; i++) order[i] = (long) ids[i] << 32 | i;
+		Arrays.sort(order);
+		this.ids = new int[ids.length];
+		this.bankNumbers = new int[ids.length];
+		this.offsets = new long[ids.length];
+		this.lengths = new int[ids.length];
+		for (int i = 0; i < order.length; i++) {
+			int from = (int) order[i];
+			this.ids[i] = ids[from];
+			this.bankNumbers[i] = bankNumbers[from];
+			this.offsets[i] = offsets[from];
+			this.lengths[i] = lengths[from];
+		}
+	}
+	
+	/**
+	 * Brings the index of the specified directory up to date and stores it in {@link #getDefaultIndexFile(File)}.
+	 * @param root the directory containing the SoundBanks
+	 * @param littleEndian the endianness of the SoundBanks
+	 * @return the updated index
+	 * @throws IOException if the directory can't be walked or the index can't be written
+	 * @see #update(File, File, boolean)
+	 */
+	public static BankIndex update(File root, boolean littleEndian) throws IOException {
+		return update(root, getDefaultIndexFile(root), littleEndian);
+	}
+	
+	/**
+	 * Brings the index of the specified directory up to date and stores it.
+	 * If the index file exists and belongs to the same directory, every SoundBank whose size and modification time are still the same is taken from it without being read.
+	 * Files that aren't SoundBanks (or broken ones) are remembered as SoundBanks without WEMs, so they aren't read again either until they change.
+	 * Files that can't be read right now (because they're locked, for example) are remembered without WEMs too, but they're read again by the next update.
+	 * @param root the directory containing the SoundBanks
+	 * @param indexFile where the index is stored
+	 * @param littleEndian the endianness of the SoundBanks
+	 * @return the updated index
+	 * @throws IOException if the directory can't be walked or the index can't be written
+	 */
+	public static BankIndex update(File root, File indexFile, boolean littleEndian) throws IOException {
+		// find all SoundBanks, along with their size and modification time
+		final List<String> paths = new ArrayList<>();
+		final List<long[]> attributes = new ArrayList<>();
+		final Path rootPath = root.getAbsoluteFile().toPath();
+		Files.walkFileTree(rootPath, new SimpleFileVisitor<Path>() {
+			@Override public FileVisitResult visitFile(Path file, BasicFileAttributes attrs) {
+				String name = file.getFileName().toString();
+				if (attrs.isRegularFile() && name.toLowerCase().endsWith(".bnk")) {
+					paths.add(rootPath.relativize(file).toString().replace(File.separatorChar, '/'));
+					attributes.add(new long[] {attrs.size(), attrs.lastModifiedTime().toMillis()});
+				}
+				return FileVisitResult.CONTINUE;
+			}
+			
+			@Override public FileVisitResult visitFileFailed(Path file, IOException exc) {
+				return FileVisitResult.CONTINUE;
+			}
+		});
+		
+		// take over what's still valid from the old index
+		BankIndex old = null;
+		if (indexFile.isFile()) {
+			try {
+				old = read(indexFile);
+				if (!old.root.equals(root.getAbsoluteFile()) || old.littleEndian != littleEndian) old = null;
+			} catch (IOException | RuntimeException e) {
+				old = null; // just build it from scratch
+			}
+		}
+		Map<String, Integer> oldBanks = new HashMap<>();
+		if (old != null) {
+			for (int i = 0; i < old.banks.length; i++) oldBanks.put(old.banks[i], i);
+		}
+		
+		String[] banks = paths.toArray(new String[paths.size()]);
+		long[] bankLengths = new long[banks.length], bankModified = new long[banks.length];
+		int[] oldToNew = new int[old == null ? 0 : old.banks.length];
+		Arrays.fill(oldToNew, -1);
+		List<Integer> toRead = new ArrayList<>();
+		for (int i = 0; i < banks.length; i++) {
+			bankLengths[i] = attributes.get(i)[0];
+			bankModified[i] = attributes.get(i)[1];
+			Integer o = oldBanks.get(banks[i]);
+			if (o != null && old.bankLengths[o] == bankLengths[i] && old.bankModified[o] == bankModified[i]) oldToNew[o] = i;
+			else toRead.add(i);
+		}
+		IntList ids = new IntList(), bankNumbers = new IntList(), lengths = new IntList();
+		LongList offsets = new LongList();
+		if (old != null) {
+			for (int i = 0; i < old.ids.length; i++) {
+				int bank = oldToNew[old.bankNumbers[i]];
+				if (bank < 0) continue;
+				ids.add(old.ids[i]);
+				bankNumbers.add(bank);
+				offsets.add(old.offsets[i]);
+				lengths.add(old.lengths[i]);
+			}
+		}
+		
+		// read the SoundBanks that are new or changed
+		for (int bank : toRead) {
+			try {
+				BNKEditor editor = new BNKEditor(new File(root, banks[bank]), littleEndian, 0);
+				try {
+					int[] bankIDs = editor.getIDs();
+					for (int i = 0; i < bankIDs.length; i++) {
+						ids.add(bankIDs[i]);
+						bankNumbers.add(bank);
+						offsets.add(editor.getOffset(i));
+						lengths.add((int) editor.getLength(i));
+					}
+				} finally {
+					editor.close();
+				}
+			} catch (IllegalArgumentException | UnsupportedOperationException e) {
+				// not a SoundBank, or a broken one: remember it as empty
+			} catch (IOException ioe) {
+				// maybe it just can't be read right now: remember it as empty, but with a modification time that never matches, so it's read again next time
+				bankModified[bank] = Long.MIN_VALUE;
+			}
+		}
+		
+		BankIndex index = new BankIndex(root.getAbsoluteFile(), littleEndian, banks, bankLengths, bankModified, ids.toArray(), bankNumbers.toArray(), offsets.toArray(), lengths.toArray(), toRead.size());
+		index.write(indexFile);
+		return index;
+	}
+	
+	/**
+	 * Reads a stored index, without checking whether it's still up to date.
+	 * @param indexFile where the index is stored
+	 * @return the stored index
+	 * @throws IllegalArgumentException if the file isn't an index
+	 * @throws IOException if something else goes wrong
+	 */
+	public static BankIndex read(File indexFile) throws IOException {
+		CustomInputStream input = new CustomInputStream(indexFile, true);
+		try {
+			if (input.readInt() != MAGIC || input.readInt() != VERSION) throw new IllegalArgumentException("The file isn't a SoundBank index!");
+			boolean littleEndian = input.read() != 0;
+			File root = new File(readString(input));
+			String[] banks = new String[input.readInt()];
+			long[] bankLengths = new long[banks.length], bankModified = new long[banks.length];
+			for (int i = 0; i < banks.length; i++) {
+				banks[i] = readString(input);
+				bankLengths[i] = input.readLong();
+				bankModified[i] = input.readLong();
+			}
+			int[] ids = new int[input.readInt()], bankNumbers = new int[ids.length], lengths = new int[ids.length];
+			long[] offsets = new long[ids.length];
+			for (int i = 0; i < ids.length; i++) ids[i] = input.readInt();
+			for (int i = 0; i < ids.length; i++) bankNumbers[i] = input.readInt();
+			for (int i = 0; i < ids.length; i++) offsets[i] = input.readLong();
+			for (int i = 0; i < ids.length; i++) lengths[i] = input.readInt();
+			return new BankIndex(root, littleEndian, banks, bankLengths, bankModified, ids, bankNumbers, offsets, lengths, 0);
+		} finally {
+			input.close();
+		}
+	}
+	
+	/**
+	 * Returns where the index of the specified directory is stored by default: a file in the cache directory of the current user, named after the directory's absolute path
+	 * (see {@link CacheDirectory}).
+	 * @param root the directory containing the SoundBanks
+	 * @return the index file, which may not exist yet
+	 */
+	public static File getDefaultIndexFile(File root) {
+		return CacheDirectory.getFile(root, ".bnkindex");
+	}
+	
+	/**
+	 * Stores this index, replacing the specified file only once the new one has been written completely.
+	 * The directory it's in is created if it doesn't exist yet.
+	 * @param indexFile where to store the index
+	 * @throws IOException if something goes wrong
+	 */
+	public void write(File indexFile) throws IOException {
+		File directory = indexFile.getAbsoluteFile().getParentFile();
+		if (!directory.isDirectory() && !directory.mkdirs()) throw new IOException("Can't create the directory " + directory + "!");
+		File temp = File.createTempFile("bnkindex", ".tmp", directory);
+		try {
+			write(new CustomOutputStream(temp, true));
+			Files.move(temp.toPath(), indexFile.toPath(), StandardCopyOption.REPLACE_EXISTING);
+		} finally {
+			temp.delete();
+		}
+	}
+	
+	/**
+	 * Writes this index into the specified stream, and closes it.
+	 */
+	private void write(CustomOutputStream output) throws IOException {
+		try {
+			output.writeInt(MAGIC);
+			output.writeInt(VERSION);
+			output.write(littleEndian ? 1 : 0);
+			writeString(output, root.getPath());
+			output.writeInt(banks.length);
+			for (int i = 0; i < banks.length; i++) {
+				writeString(output, banks[i]);
+				output.writeLong(bankLengths[i]);
+				output.writeLong(bankModified[i]);
+			}
+			output.writeInt(ids.length);
+			for (int id : ids) output.writeInt(id);
+			for (int bank : bankNumbers) output.writeInt(bank);
+			for (long offset : offsets) output.writeLong(offset);
+			for (int length : lengths) output.writeInt(length);
+		} finally {
+			output.flushAndClose();
+		}
+	}
+	
+	/**
+	 * Finds all WEMs with the specified ID.
+	 * Usually there is only one, but the same WEM can be inside several SoundBanks.
+	 * @param id the ID of the WEM
+	 * @return the numbers of all WEMs with that ID inside this index, to be passed to {@link #getBank(int)}, {@link #getOffset(int)} and {@link #getLength(int)}
+	 */
+	public int[] find(int id) {
+		int low = 0, high = ids.length;
+		while (low < high) {
+			int middle = (low + high) >>> 1;
+			if (ids[middle] < id) low = middle + 1;
+			else high = middle;
+		}
+		int end = low;
+		while (end < ids.length && ids[end] == id) end++;
+		int[] found = new int[end - low];
+		for (int i = 0; i < found.length; i++) found[i] = low + i;
+		return found;
+	}
+	
+	/**
+	 * Returns how many WEMs are in this index.
+	 * @return how many WEMs are in this index
+	 */
+	public int getWEMCount() {
+		return ids.length;
+	}
+	
+	/**
+	 * Returns how many SoundBanks are in this index.
+	 * @return how many SoundBanks are in this index
+	 */
+	public int getBankCount() {
+		return banks.length;
+	}
+	
+	/**
+	 * Returns how many SoundBanks had to be read when this index was last updated, because they were new or had changed.
+	 * @return how many SoundBanks had to be read
+	 */
+	public int getRereadCount() {
+		return reread;
+	}
+	
+	/**
+	 * Returns the ID of the specified WEM.
+	 * @param wem the number of the WEM inside this index
+	 * @return the ID of the WEM
+	 */
+	public int getID(int wem) {
+		return ids[wem];
+	}
+	
+	/**
+	 * Returns the SoundBank containing the specified WEM.
+	 * @param wem the number of the WEM inside this index
+	 * @return the SoundBank containing the WEM
+	 */
+	public File getBank(int wem) {
+		return new File(root, banks[bankNumbers[wem]]);
+	}
+	
+	/**
+	 * Returns where the specified WEM is stored inside its SoundBank.
+	 * @param wem the number of the WEM inside this index
+	 * @return the position of the first byte of the WEM inside the SoundBank file
+	 */
+	public long getOffset(int wem) {
+		return offsets[wem];
+	}
+	
+	/**
+	 * Returns the length of the specified WEM.
+	 * @param wem the number of the WEM inside this index
+	 * @return the length of the WEM in bytes
+	 */
+	public long getLength(int wem) {
+		return lengths[wem] & BNKEditor.MAX_UNSIGNED_INT;
+	}
+	
+	public static void main(String[] args) {
+		File root = null, indexFile = null;
+		boolean littleEndian = true;
+		List<Integer> lookups = new ArrayList<>();
+		try {
+			for (int i = 0; i < args.length; i++) {
+				if ("-index".equals(args[i]) && i + 1 < args.length) indexFile = new File(args[++i]);
+				else if ("-bigendian".equals(args[i])) littleEndian = false;
+				else if (root == null) root = new File(args[i]);
+				else lookups.add(Integer.parseUnsignedInt(args[i]));
+			}
+			if (root == null || !root.isDirectory()) throw new IllegalArgumentException("No directory to index!");
+		} catch (IllegalArgumentException iae) {
+			System.err.println(iae.getMessage());
+			System.err.println("usage: java bnkeditor.BankIndex <directory> [-index <file>] [-bigendian] [<id> ...]");
+			System.exit(2);
+			return;
+		}
+		if (indexFile == null) indexFile = getDefaultIndexFile(root);
+		try {
+			long start = System.nanoTime();
+			BankIndex index = update(root, indexFile, littleEndian);
+			System.out.println(String.format("%d SoundBanks (%d read again) with %d WEMs indexed in %.1f ms", index.getBankCount(), index.getRereadCount(), index.getWEMCount(), (System.nanoTime() - start) / 1e6));
+			for (int id : lookups) {
+				int[] found = index.find(id);
+				if (found.length == 0) System.out.println(Integer.toUnsignedString(id) + ": not found");
+				for (int wem : found) System.out.println(Integer.toUnsignedString(id) + ": " + index.getBank(wem) + " at " + index.getOffset(wem) + " (" + index.getLength(wem) + " bytes)");
+			}
+		} catch (IOException ioe) {
+			System.err.println(ioe.getMessage());
+			System.exit(1);
+		}
+	}
+	
+	/**
+	 * Writes a string as its length in bytes, followed by its UTF-8 bytes.
+	 */
+	static void writeString(CustomOutputStream output, String string) throws IOException {
+		byte[] bytes = string.getBytes(StandardCharsets.UTF_8);
+		output.writeInt(bytes.length);
+		output.write(bytes);
+	}
+	
+	/**
+	 * Reads a string written by {@link #writeString(CustomOutputStream, String)}.
+	 */
+	static String readString(CustomInputStream input) throws IOException {
+		return new String(input.read(input.readInt()), StandardCharsets.UTF_8);
+	}
+	
+	/**
+	 * A growing array of <code>int</code>s, so they don't have to be boxed.
+	 */
+	private static class IntList {
+		private int[] values = new int[1024];
+		private int size;
+		
+		private void add(int value) {
+			if (size == values.length) values = Arrays.copyOf(values, size * 2);
+			values[size++] = value;
+		}
+		
+		private int[] toArray() {
+			return Arrays.copyOf(values, size);
+		}
+	}
+	
+	/**
+	 * A growing array of <code>long</code>s, so they don't have to be boxed.
+	 */
+	private static class LongList {
+		private long[] values = new long[1024];
+		private int size;
+		
+		private void add(long value) {
+			if (size == values.length) values = Arrays.copyOf(values, size * 2);
+			values[size++] = value;
+		}
+		
+		private long[] toArray() {
+			return Arrays.copyOf(values, size);
+		}
+	}
+}
\ No newline at end of file
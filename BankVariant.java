@@ -0,0 +1,83 @@
+package bnkeditor;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * One variant of a SoundBank: a set of replacements, and the file to write the modified SoundBank to.
+ * Several variants of the same SoundBank can be written at once with {@link BNKEditor#writeVariants(List, boolean)}, which reads the SoundBank only once for all of them.
+ * Unlike {@link BNKEditor#replace(int, boolean, File)}, nothing is checked until the variants are written.
+ * @author marieismywaifu
+ */
+public class BankVariant {
+	private final File output;
+	private final List<Integer> indices = new ArrayList<>();
+	private final List<Boolean> isIDs = new ArrayList<>();
+	private final List<File> replacements = new ArrayList<>();
+	
+	/**
+	 * Constructs a new <code>BankVariant</code> without any replacements.
+	 * @param output the file to write this variant to
+	 */
+	public BankVariant(File output) {
+		this.output = output;
+	}
+	
+	/**
+	 * Marks the specified WEM as replaced with the specified file in this variant.
+	 * If the same WEM is replaced more than once, the last replacement wins.
+	 * @param index purpose explained below
+	 * @param isID <code>false</code>: <code><b>index</b></code> is the position of the WEM inside the SoundBank
+	 * <br><code>true</code>: <code><b>index</b></code> is the ID of the WEM to replace
+	 * @param replacement the file to replace the specified WEM with
+	 */
+	public void replace(int index, boolean isID, File replacement) {
+		indices.add(index);
+		isIDs.add(isID);
+		replacements.add(replacement);
+	}
+	
+	/**
+	 * Returns the file this variant is written to.
+	 * @return the file this variant is written to
+	 */
+	public File getOutput() {
+		return output;
+	}
+	
+	/**
+	 * Returns how many replacements have been added to this variant.
+	 * @return how many replacements have been added to this variant
+	 */
+	public int getReplacementCount() {
+		return replacements.size();
+	}
+	
+	/**
+	 * Returns the index of the specified replacement, as passed to {@link #replace(int, boolean, File)}.
+	 * @param replacement the number of the replacement
+	 * @return the position or ID of the replaced WEM
+	 */
+	int getIndex(int replacement) {
+		return indices.get(replacement);
+	}
+	
+	/**
+	 * Returns whether the index of the specified replacement is an ID, as passed to {@link #replace(int, boolean, File)}.
+	 * @param replacement the number of the replacement
+	 * @return whether the index is an ID
+	 */
+	boolean isID(int replacement) {
+		return isIDs.get(replacement);
+	}
+	
+	/**
+	 * Returns the file of the specified replacement, as passed to {@link #replace(int, boolean, File)}.
+	 * @param replacement the number of the replacement
+	 * @return the file to replace the WEM with
+	 */
+	File getReplacement(int replacement) {
+		return replacements.get(replacement);
+	}
+}
\ No newline at end of file
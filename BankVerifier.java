@@ -0,0 +1,317 @@
+package bnkeditor;
+
+import java.io.EOFException;
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadFactory;
+import java.util.zip.CRC32;
+
+/**
+ * Checks a written SoundBank against what it should contain, see {@link BNKEditor#verify(File, boolean)}.
+ * The layout is checked first: the same sections in the same order, and a DIDX section with the right IDs and lengths whose WEMs follow right after each other and fill the DATA section.
+ * Then the CRC-32 of every section and every WEM is compared with the CRC-32 of where it came from: the original SoundBank, or the replacement.
+ * The CRCs are calculated by several threads at once, a batch of neighboring WEMs each. Every thread reads with positional reads into a set of buffers,
+ * which is reused for all of its batches. Nothing is mapped into memory, since a mapped file stays locked on Windows until the mapping is garbage collected.
+ * <p>
+ * The threads and the buffers are shared by all checks, one thread and one set of buffers per processor, so checking several SoundBanks at once
+ * (like {@link BatchEditor} does) only makes the checks wait for each other instead of starting more threads and allocating more buffers.
+ * @author marieismywaifu
+ */
+class BankVerifier {
+	private static final long BATCH_SIZE = 16 * 1024 * 1024;
+	private static final int BUFFER_SIZE = 1024 * 1024, MAX_PROBLEMS = 100, DIDX = 0x44494458, DATA = 0x44415441;
+	private static final int THREADS = Runtime.getRuntime().availableProcessors();
+	
+	/**
+	 * The threads shared by all checks. They don't keep the program running.
+	 */
+	private static final ExecutorService EXECUTOR = Executors.newFixedThreadPool(THREADS, new ThreadFactory() {
+		@Override public Thread newThread(Runnable runnable) {
+			Thread thread = new Thread(runnable, "BankVerifier");
+			thread.setDaemon(true);
+			return thread;
+		}
+	});
+	
+	/**
+	 * The buffers shared by all checks, one set per thread: for the written SoundBank, the original SoundBank, and the replacements.
+	 * Allocated by the first check.
+	 */
+	private static BlockingQueue<ByteBuffer[]> sharedBuffers;
+	
+	private final File source;
+	private final ChunkTable chunks;
+	private final int didxChunk, dataChunk;
+	private final int[] ids;
+	private final long[] sourceOffsets, sourceLengths, lengths;
+	private final File[] replacements;
+	
+	/**
+	 * Prepares a check against the specified intended content.
+	 * @param source the original SoundBank
+	 * @param chunks the sections of the original SoundBank
+	 * @param ids the IDs of all WEMs
+	 * @param sourceOffsets where every WEM is stored inside the original SoundBank file
+	 * @param sourceLengths the length of every WEM inside the original SoundBank
+	 * @param replacements the replacement of every WEM, or <code>null</code> where it isn't replaced
+	 * @param lengths the length every WEM should have now
+	 */
+	BankVerifier(File source, ChunkTable chunks, int[] ids, long[] sourceOffsets, long[] sourceLengths, File[] replacements, long[] lengths) {
+		this.source = source;
+		this.chunks = chunks;
+		this.didxChunk = chunks.find(DIDX);
+		this.dataChunk = chunks.find(DATA);
+		this.ids = ids;
+		this.sourceOffsets = sourceOffsets;
+		this.sourceLengths = sourceLengths;
+		this.replacements = replacements;
+		this.lengths = lengths;
+	}
+	
+	/**
+	 * Checks the specified SoundBank.
+	 * @param written the SoundBank to check
+	 * @param littleEndian the endianness of the SoundBank
+	 * @return everything that's wrong, in the order it appears in the written SoundBank (at most {@value #MAX_PROBLEMS}); empty if everything is right
+	 * @throws IOException if something goes wrong while reading
+	 */
+	List<String> verify(File written, boolean littleEndian) throws IOException {
+		final List<String> problems = new ArrayList<>();
+		
+		// check the layout
+		final ChunkTable writtenChunks;
+		final long[] writtenOffsets = new long[ids.length];
+		CustomInputStream input = new CustomInputStream(written, littleEndian);
+		try {
+			try {
+				writtenChunks = new ChunkTable(input);
+			} catch (IllegalArgumentException iae) {
+				problems.add(iae.getMessage());
+				return problems;
+			}
+			if (writtenChunks.getCount() != chunks.getCount() || input.getLength() - writtenChunks.getEnd() != source.length() - chunks.getEnd()) {
+				problems.add("The SoundBank has " + writtenChunks.getCount() + " sections and " + (input.getLength() - writtenChunks.getEnd()) + " bytes after them, but it should have " + chunks.getCount() + " and " + (source.length() - chunks.getEnd()) + "!");
+				return problems;
+			}
+			for (int chunk = 0; chunk < chunks.getCount(); chunk++) {
+				if (writtenChunks.getMagic(chunk) != chunks.getMagic(chunk)) {
+					problems.add("Section number " + (chunk + 1) + " is " + ChunkTable.toString(writtenChunks.getMagic(chunk)) + ", but it should be " + ChunkTable.toString(chunks.getMagic(chunk)) + "!");
+					return problems;
+				}
+				if (chunk != didxChunk && (chunk != dataChunk || didxChunk < 0) && writtenChunks.getLength(chunk) != chunks.getLength(chunk)) problems.add("The " + ChunkTable.toString(chunks.getMagic(chunk)) + " section is " + writtenChunks.getLength(chunk) + " bytes long, but it should be " + chunks.getLength(chunk) + "!");
+			}
+			if (didxChunk >= 0) checkDIDX(input, writtenChunks, littleEndian, writtenOffsets, problems);
+		} finally {
+			input.close();
+		}
+		if (!problems.isEmpty()) return problems;
+		
+		// compare the CRCs of everything, in batches, which are submitted in the order they appear in the written SoundBank, the WEMs where the DATA section is
+		final FileChannel writtenChannel = FileChannel.open(written.toPath(), StandardOpenOption.READ), sourceChannel = FileChannel.open(source.toPath(), StandardOpenOption.READ);
+		final BlockingQueue<ByteBuffer[]> buffers = getBuffers();
+		List<Future<List<String>>> batches = new ArrayList<>();
+		try {
+			for (int chunk = 0; chunk < chunks.getCount(); chunk++) {
+				if (chunk == didxChunk) continue;
+				if (chunk == dataChunk && didxChunk >= 0) {
+					for (int first = 0; first < ids.length;) {
+						int last = first + 1;
+						while (last < ids.length && writtenOffsets[last] + lengths[last] - writtenOffsets[first] <= BATCH_SIZE) last++;
+						final int from = first, to = last;
+						batches.add(EXECUTOR.submit(new Callable<List<String>>() {
+							@Override public List<String> call() throws IOException, InterruptedException {
+								ByteBuffer[] mine = buffers.take();
+								try {
+									return checkWEMs(from, to, writtenChannel, sourceChannel, writtenOffsets, mine);
+								} finally {
+									buffers.put(mine);
+								}
+							}
+						}));
+						first = last;
+					}
+					continue;
+				}
+				final int finalChunk = chunk;
+				batches.add(EXECUTOR.submit(new Callable<List<String>>() {
+					@Override public List<String> call() throws IOException, InterruptedException {
+						List<String> problems = new ArrayList<>(0);
+						long length = chunks.getLength(finalChunk);
+						ByteBuffer[] mine = buffers.take();
+						try {
+							if (crc(writtenChannel, writtenChunks.getDataOffset(finalChunk), length, mine[0]) != crc(sourceChannel, chunks.getDataOffset(finalChunk), length, mine[1])) problems.add("The " + ChunkTable.toString(chunks.getMagic(finalChunk)) + " section isn't the same as in the original SoundBank!");
+						} finally {
+							buffers.put(mine);
+						}
+						return problems;
+					}
+				}));
+			}
+			for (Future<List<String>> batch : batches) {
+				for (String problem : batch.get()) {
+					if (problems.size() < MAX_PROBLEMS) problems.add(problem);
+				}
+			}
+		} catch (ExecutionException ee) {
+			if (ee.getCause() instanceof IOException) throw (IOException) ee.getCause();
+			if (ee.getCause() instanceof RuntimeException) throw (RuntimeException) ee.getCause();
+			throw new IOException(ee.getCause());
+		} catch (InterruptedException ie) {
+			Thread.currentThread().interrupt();
+			throw new IOException("Interrupted while verifying!", ie);
+		} finally {
+			// the threads are shared, so batches that haven't started yet shouldn't keep them busy after a failure (the ones that have fail on the closed files)
+			for (Future<List<String>> batch : batches) batch.cancel(false);
+			writtenChannel.close();
+			sourceChannel.close();
+		}
+		return problems;
+	}
+	
+	/**
+	 * Returns the buffers shared by all checks, allocating them the first time.
+	 */
+	private static synchronized BlockingQueue<ByteBuffer[]> getBuffers() {
+		if (sharedBuffers == null) {
+			sharedBuffers = new ArrayBlockingQueue<>(THREADS);
+			for (int i = 0; i < THREADS; i++) sharedBuffers.add(new ByteBuffer[] {ByteBuffer.allocateDirect(BUFFER_SIZE), ByteBuffer.allocateDirect(BUFFER_SIZE), ByteBuffer.allocateDirect(BUFFER_SIZE)});
+		}
+		return sharedBuffers;
+	}
+	
+	/**
+	 * Reads the DIDX section of the written SoundBank, and checks it against what it should contain.
+	 * @param input the written SoundBank
+	 * @param writtenChunks the sections of the written SoundBank
+	 * @param littleEndian the endianness of the written SoundBank
+	 * @param writtenOffsets where to put the position of every WEM inside the written SoundBank file
+	 * @param problems where to add everything that's wrong
+	 * @throws IOException if something goes wrong while reading
+	 */
+	private void checkDIDX(CustomInputStream input, ChunkTable writtenChunks, boolean littleEndian, long[] writtenOffsets, List<String> problems) throws IOException {
+		if (writtenChunks.getLength(didxChunk) != 12L * ids.length) {
+			problems.add("The DIDX section is " + writtenChunks.getLength(didxChunk) + " bytes long, but it should be " + 12L * ids.length + " (for " + ids.length + " WEMs)!");
+			return;
+		}
+		ByteBuffer didx = ByteBuffer.wrap(input.read(writtenChunks.getDataOffset(didxChunk), 12 * ids.length)).order(littleEndian ? ByteOrder.LITTLE_ENDIAN : ByteOrder.BIG_ENDIAN);
+		long dataLength = writtenChunks.getLength(dataChunk), end = 0;
+		for (int i = 0; i < ids.length && problems.size() < MAX_PROBLEMS; i++) {
+			int id = didx.getInt();
+			long offset = didx.getInt() & BNKEditor.MAX_UNSIGNED_INT, length = didx.getInt() & BNKEditor.MAX_UNSIGNED_INT;
+			String wem = "WEM number " + (i + 1) + " (ID " + Integer.toUnsignedString(ids[i]) + ")";
+			if (id != ids[i]) problems.add(wem + " has the ID " + Integer.toUnsignedString(id) + " in the DIDX section!");
+			if (length != lengths[i]) problems.add(wem + " is " + length + " bytes long, but it should be " + lengths[i] + "!");
+			if (offset != end) problems.add(wem + " starts at offset " + offset + ", but it should start right where the WEM in front of it ends (at offset " + end + ")!");
+			if (offset + length > dataLength) problems.add(wem + " ends at offset " + (offset + length) + ", but the DATA section is only " + dataLength + " bytes long!");
+			writtenOffsets[i] = writtenChunks.getDataOffset(dataChunk) + offset;
+			end = offset + length;
+		}
+		if (problems.isEmpty() && end != dataLength) problems.add("The DATA section is " + dataLength + " bytes long, but the WEMs only fill " + end + " bytes of it!");
+	}
+	
+	/**
+	 * Compares the CRCs of the specified WEMs with the CRCs of where they came from.
+	 * @param from the position of the first WEM
+	 * @param to the position after the last WEM
+	 * @param writtenChannel the written SoundBank
+	 * @param sourceChannel the original SoundBank
+	 * @param writtenOffsets where every WEM is stored inside the written SoundBank file
+	 * @param buffers three buffers to read into, for the written SoundBank, the original SoundBank and the replacements
+	 * @return everything that's wrong
+	 * @throws IOException if something goes wrong while reading
+	 */
+	private List<String> checkWEMs(int from, int to, FileChannel writtenChannel, FileChannel sourceChannel, long[] writtenOffsets, ByteBuffer[] buffers) throws IOException {
+		List<String> problems = new ArrayList<>(0);
+		Window written = new Window(writtenChannel, buffers[0]), original = new Window(sourceChannel, buffers[1]);
+		for (int i = from; i < to; i++) {
+			long expected;
+			if (replacements[i] == null) expected = original.crc(sourceOffsets[i], sourceLengths[i]);
+			else {
+				FileChannel replacement;
+				try {
+					replacement = FileChannel.open(replacements[i].toPath(), StandardOpenOption.READ);
+				} catch (IOException ioe) {
+					problems.add("The replacement " + replacements[i] + " can't be read anymore! (" + ioe.getMessage() + ")");
+					continue;
+				}
+				try {
+					if (replacement.size() != lengths[i]) {
+						problems.add("The replacement " + replacements[i] + " is " + replacement.size() + " bytes long now, but it was " + lengths[i] + " bytes long when it was chosen!");
+						continue;
+					}
+					expected = crc(replacement, 0, lengths[i], buffers[2]);
+				} finally {
+					replacement.close();
+				}
+			}
+			if (written.crc(writtenOffsets[i], lengths[i]) != expected) problems.add("WEM number " + (i + 1) + " (ID " + Integer.toUnsignedString(ids[i]) + ") isn't the same as " + (replacements[i] == null ? "in the original SoundBank" : replacements[i]) + "!");
+		}
+		return problems;
+	}
+	
+	/**
+	 * Calculates the CRC-32 of the specified range of a file, reading it into the specified buffer piece by piece.
+	 */
+	private static long crc(FileChannel channel, long position, long length, ByteBuffer buffer) throws IOException {
+		return new Window(channel, buffer).crc(position, length);
+	}
+	
+	/**
+	 * A part of a file that's read into a buffer with positional reads, and moved along when a CRC needs bytes outside of it.
+	 * Neighboring WEMs usually share one read that way.
+	 */
+	private static class Window {
+		private final FileChannel channel;
+		private final long end;
+		private final ByteBuffer buffer;
+		private long start;
+		private int filled;
+		
+		private Window(FileChannel channel, ByteBuffer buffer) throws IOException {
+			this.channel = channel;
+			this.end = channel.size();
+			this.buffer = buffer;
+		}
+		
+		/**
+		 * Calculates the CRC-32 of the specified part of the file.
+		 */
+		private long crc(long position, long length) throws IOException {
+			CRC32 crc = new CRC32();
+			while (length > 0) {
+				if (position < start || position >= start + filled) fill(position);
+				if (filled == 0) throw new EOFException("The file got shorter while verifying it!");
+				int offset = (int) (position - start), step = (int) Math.min(length, filled - offset);
+				buffer.limit(offset + step);
+				buffer.position(offset);
+				crc.update(buffer);
+				position += step;
+				length -= step;
+			}
+			return crc.getValue();
+		}
+		
+		private void fill(long position) throws IOException {
+			buffer.clear();
+			buffer.limit((int) Math.min(buffer.capacity(), end - position));
+			while (buffer.hasRemaining()) {
+				if (channel.read(buffer, position + buffer.position()) < 0) throw new EOFException("The file got shorter while verifying it!");
+			}
+			start = position;
+			filled = buffer.position();
+		}
+	}
+}
\ No newline at end of file
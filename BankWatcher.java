@@ -0,0 +1,337 @@
+package bnkeditor;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.PrintStream;
+import java.nio.file.ClosedWatchServiceException;
+import java.nio.file.FileSystems;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardWatchEventKinds;
+import java.nio.file.WatchEvent;
+import java.nio.file.WatchKey;
+import java.nio.file.WatchService;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.nio.file.attribute.FileTime;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeSet;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Keeps a modified copy of a SoundBank up to date with a folder of replacements, for as long as it's running.
+ * Every file in the folder replaces the WEM whose unsigned ID is at the end of its name, either <code>&lt;id&gt;.wem</code> or <code>&lt;number&gt;_&lt;id&gt;.wem</code>
+ * (the names "save all WEMs" uses, see {@link ExtractionOptions#DEFAULT_NAME_PATTERN}). Other files are ignored.
+ * <p>
+ * When it starts, the modified SoundBank is written once from scratch. After that, only the WEMs whose files changed are written into it,
+ * with {@link BNKEditor#writeBNKInPlace()} on a <code>BNKEditor</code> that stays open the whole time, so the SoundBank is never read again as long as the new WEMs fit into the old space (and is rewritten as a whole otherwise).
+ * Deleting a file puts the original WEM back.
+ * A file counts as changed if its size, modification time or file key changed, or, if none of them did, if its content isn't what was written.
+ * Changes are collected until nothing has happened in the folder for a moment, so a file that's still being written isn't picked up halfway
+ * (and if it is anyway, the next change to it fixes that).
+ * @author marieismywaifu
+ */
+public class BankWatcher {
+	/**
+	 * How long nothing has to happen in the folder before the changes are written, in milliseconds.
+	 */
+	private static final long DEBOUNCE = 250;
+	
+	/**
+	 * How long to wait before trying to write changes again that couldn't be written, if nothing else happens in the folder, in milliseconds.
+	 */
+	private static final long RETRY = 5000;
+	
+	/**
+	 * What a replacement looked like when it was written into the modified SoundBank.
+	 */
+	private static final class Stamp {
+		private final long length;
+		private final FileTime modified;
+		private final Object key;
+		
+		private Stamp(BasicFileAttributes attributes) {
+			length = attributes.size();
+			modified = attributes.lastModifiedTime();
+			key = attributes.fileKey();
+		}
+
+		@Override public boolean equals(Object o) {
+			if (!(o instanceof Stamp)) return false;
+			Stamp other = (Stamp) o;
+			return length == other.length && modified.equals(other.modified) && (key == null ? other.key == null : key.equals(other.key));
+		}
+
+		@Override public int hashCode() {
+			return Long.hashCode(length) ^ modified.hashCode();
+		}
+	}
+	
+	private final File folder;
+	private final BNKEditor source, output;
+	private final WatchService watcher;
+	private final Map<String, Stamp> applied = new HashMap<>();
+	private boolean running, closed;
+	
+	/**
+	 * Constructs a new <code>BankWatcher</code>, and writes the modified SoundBank with all replacements that are in the folder right now.
+	 * @param source the original SoundBank, which is only read
+	 * @param folder the folder containing the replacements
+	 * @param output where to write the modified SoundBank
+	 * @param littleEndian the endianness of the SoundBanks
+	 * @throws IllegalArgumentException if <code><b>source</b></code> and <code><b>output</b></code> are the same file, or if the source has an unexpected layout
+	 * @throws IOException if something else goes wrong
+	 */
+	public BankWatcher(File source, File folder, File output, boolean littleEndian) throws IOException {
+		if (source.getAbsoluteFile().equals(output.getAbsoluteFile())) throw new IllegalArgumentException("The original SoundBank can't be overwritten, it's needed to put back deleted WEMs!");
+		this.folder = folder;
+		this.source = new BNKEditor(source, littleEndian, 0);
+		try {
+			watcher = FileSystems.getDefault().newWatchService();
+			try {
+				folder.toPath().register(watcher, StandardWatchEventKinds.ENTRY_CREATE, StandardWatchEventKinds.ENTRY_MODIFY, StandardWatchEventKinds.ENTRY_DELETE);
+				
+				// write everything once, then keep the result open
+				BankVariant variant = new BankVariant(output);
+				String[] names = folder.list();
+				for (String name : names == null ? new String[0] : names) {
+					File file = new File(folder, name);
+					int id = getID(name);
+					Stamp stamp = getStamp(file);
+					if (id == -1 || stamp == null || this.source.findID(id) < 0) continue;
+					variant.replace(id, true, file);
+					applied.put(name, stamp);
+				}
+				this.source.writeVariants(Arrays.asList(variant), littleEndian);
+				this.output = new BNKEditor(output, littleEndian, 0);
+			} catch (IOException | RuntimeException e) {
+				watcher.close();
+				throw e;
+			}
+		} catch (IOException | RuntimeException e) {
+			this.source.close();
+			throw e;
+		}
+	}
+	
+	/**
+	 * Watches the folder and writes every change into the modified SoundBank, until {@link #close()} is called or the folder is deleted.
+	 * Writing a change may fail, for example if a replacement is still being written; that's reported and tried again with the next change in the folder, or after a few seconds if there is none.
+	 * Afterwards, both SoundBanks are closed.
+	 * @param log where to report every change that's written, or <code>null</code>
+	 * @throws IllegalStateException if this is already running or has been closed
+	 * @throws IOException if the modified SoundBank can't be written anymore at all
+	 */
+	public void run(PrintStream log) throws IOException {
+		synchronized (this) {
+			if (running || closed) throw new IllegalStateException("The watcher is already running or has been closed!");
+			running = true;
+		}
+		try {
+			TreeSet<String> pending = new TreeSet<>();
+			boolean retrying = false;
+			while (true) {
+				// wait for the first change, then keep collecting until it's quiet for a moment; after a failure, try again a bit later even if nothing happens
+				WatchKey key = pending.isEmpty() ? watcher.take() : watcher.poll(retrying ? RETRY : DEBOUNCE, TimeUnit.MILLISECONDS);
+				if (key == null) {
+					Set<String> failed = update(pending, log);
+					pending.clear();
+					pending.addAll(failed);
+					retrying = !failed.isEmpty();
+					continue;
+				}
+				retrying = false;
+				for (WatchEvent<?> event : key.pollEvents()) {
+					if (event.kind() == StandardWatchEventKinds.OVERFLOW) {
+						// too many changes to keep track of, so look at everything
+						String[] names = folder.list();
+						if (names != null) pending.addAll(Arrays.asList(names));
+						pending.addAll(applied.keySet());
+					} else pending.add(((Path) event.context()).toString());
+				}
+				if (!key.reset()) break;
+			}
+		} catch (ClosedWatchServiceException cwse) {
+			// close() was called
+		} catch (InterruptedException ie) {
+			Thread.currentThread().interrupt();
+		} finally {
+			synchronized (this) {
+				running = false;
+				closed = true;
+			}
+			try {
+				watcher.close();
+			} finally {
+				try {
+					output.close();
+				} finally {
+					source.close();
+				}
+			}
+		}
+	}
+	
+	/**
+	 * Stops watching the folder. If {@link #run(PrintStream)} is writing a change right now, it's finished first.
+	 * If <code>run</code> hasn't been called, both SoundBanks are closed right away.
+	 * @throws IOException if something goes wrong
+	 */
+	public void close() throws IOException {
+		boolean wasRunning;
+		synchronized (this) {
+			wasRunning = running;
+			closed = true;
+		}
+		try {
+			watcher.close();
+		} finally {
+			if (!wasRunning) {
+				try {
+					output.close();
+				} finally {
+					source.close();
+				}
+			}
+		}
+	}
+	
+	/**
+	 * Writes the changes to the specified files into the modified SoundBank.
+	 * Files that changed back and forth (or didn't change at all) are skipped.
+	 * A file whose size, modification time and file key are all still the same may have been written again anyway, within the precision of the file system's clock,
+	 * so its content is compared with the WEM inside the modified SoundBank.
+	 * Nothing is remembered as written before the modified SoundBank has actually been written, so if that fails, the same files are found to have changed again next time.
+	 * @param names the names of the files inside the folder that changed
+	 * @param log where to report what was written, or <code>null</code>
+	 * @return the names of the files that couldn't be written and have to be tried again, because there may never be another change to them (a deleted file, for example)
+	 * @throws IOException if the modified SoundBank can't be written anymore
+	 */
+	private Set<String> update(TreeSet<String> names, PrintStream log) throws IOException {
+		long start = System.nanoTime();
+		List<String> changed = new ArrayList<>();
+		List<Stamp> stamps = new ArrayList<>();
+		List<File> originals = new ArrayList<>();
+		try {
+			for (String name : names) {
+				int id = getID(name);
+				if (id == -1 || source.findID(id) < 0) continue;
+				File file = new File(folder, name);
+				Stamp stamp = getStamp(file);
+				if (stamp == null ? !applied.containsKey(name) : stamp.equals(applied.get(name)) && isApplied(id, file)) continue;
+				if (stamp != null && stamp.length > BNKEditor.MAX_UNSIGNED_INT) {
+					if (log != null) log.println("SKIPPED " + file + ": a SoundBank can't store WEMs bigger than 4 GiB");
+					continue;
+				}
+				if (stamp != null) output.replace(id, true, file);
+				else {
+					// put the original WEM back, which has to be in a file of its own for that
+					File original = File.createTempFile("bnkeditor", ".wem");
+					originals.add(original);
+					source.writeWEM(id, true, original);
+					output.replace(id, true, original);
+				}
+				changed.add(name);
+				stamps.add(stamp);
+			}
+			if (changed.isEmpty()) return Collections.emptySet();
+			
+			boolean fits;
+			try {
+				fits = output.writeBNKInPlace();
+			} catch (IllegalArgumentException | UnsupportedOperationException | IOException e) {
+				// most likely a file that's still being written; leave applied as it was, so all of them are tried again
+				for (String name : changed) output.cancelReplacement(getID(name), true);
+				if (log != null) log.println("FAILED to write " + changed.size() + " WEMs: " + e.getMessage());
+				return new TreeSet<>(changed);
+			}
+			for (int i = 0; i < changed.size(); i++) {
+				if (stamps.get(i) == null) applied.remove(changed.get(i));
+				else applied.put(changed.get(i), stamps.get(i));
+			}
+			if (log != null) log.println(String.format("%d WEMs written in %.1f ms%s", changed.size(), (System.nanoTime() - start) / 1e6, fits ? "" : " (the whole SoundBank had to be rewritten)"));
+			return Collections.emptySet();
+		} finally {
+			for (File original : originals) original.delete();
+		}
+	}
+	
+	/**
+	 * Finds out whether the specified file contains exactly the WEM that's inside the modified SoundBank.
+	 * @param id the ID of the WEM
+	 * @param file the replacement
+	 * @return whether they're the same, <code>false</code> if either can't be read
+	 */
+	private boolean isApplied(int id, File file) {
+		try {
+			byte[] wem = output.readWEM(id, true);
+			return wem.length == file.length() && Arrays.equals(wem, Files.readAllBytes(file.toPath()));
+		} catch (IOException | RuntimeException e) {
+			return false;
+		}
+	}
+	
+	/**
+	 * Reads the size, modification time and file key of the specified file, as precisely as the file system keeps them.
+	 * @param file the file
+	 * @return what the file looks like, or <code>null</code> if it doesn't exist or isn't a normal file
+	 */
+	private static Stamp getStamp(File file) {
+		try {
+			BasicFileAttributes attributes = Files.readAttributes(file.toPath(), BasicFileAttributes.class);
+			return attributes.isRegularFile() ? new Stamp(attributes) : null;
+		} catch (IOException ioe) {
+			return null;
+		}
+	}
+	
+	/**
+	 * Finds out which WEM the file with the specified name replaces.
+	 * @param name the name of the file
+	 * @return the ID of the WEM, or <code>-1</code> if the name doesn't end with an ID and <code>.wem</code>
+	 */
+	private static int getID(String name) {
+		if (!name.toLowerCase().endsWith(".wem")) return -1;
+		String id = name.substring(name.lastIndexOf('_') + 1, name.length() - 4);
+		try {
+			return Integer.parseUnsignedInt(id);
+		} catch (NumberFormatException nfe) {
+			return -1;
+		}
+	}
+	
+	public static void main(String[] args) {
+		File source = null, folder = null, output = null;
+		boolean littleEndian = true;
+		try {
+			for (String arg : args) {
+				if ("-bigendian".equals(arg)) littleEndian = false;
+				else if (source == null) source = new File(arg);
+				else if (folder == null) folder = new File(arg);
+				else if (output == null) output = new File(arg);
+				else throw new IllegalArgumentException("Too many arguments!");
+			}
+			if (output == null) throw new IllegalArgumentException("Not enough arguments!");
+			if (!folder.isDirectory()) throw new IllegalArgumentException(folder + " isn't a folder!");
+		} catch (IllegalArgumentException iae) {
+			System.err.println(iae.getMessage());
+			System.err.println("usage: java bnkeditor.BankWatcher <soundbank> <folder> <output> [-bigendian]");
+			System.exit(2);
+			return;
+		}
+		try {
+			long start = System.nanoTime();
+			BankWatcher watcher = new BankWatcher(source, folder, output, littleEndian);
+			System.out.println(String.format("%s written with %d replacements in %.2f s, watching %s", output, watcher.applied.size(), (System.nanoTime() - start) / 1e9, folder));
+			watcher.run(System.out);
+		} catch (IOException | IllegalArgumentException e) {
+			System.err.println(e.getMessage());
+			System.exit(1);
+		}
+	}
+}
\ No newline at end of file
@@ -0,0 +1,306 @@
+package bnkeditor;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * A command line tool that applies replacements to many SoundBanks at once, without any windows or file choosers.
+ * Which WEMs to replace in which SoundBanks is read from one or more manifests, which look like this:
+ * <pre>
+ * # lines starting with # are ignored
+ * [sfx/weapons.bnk -&gt; out/weapons.bnk]
+ * 123456789 = new/gunshot.wem
+ * 987654321 = new/reload.wem
+ *
+ * [vo/english.bnk]
+ * 555555555 = new/line.wem
+ * </pre>
+ * Every section starts with the SoundBank to modify and, optionally, where to write the modified SoundBank.
+ * Without an output, the SoundBank is modified in place (see {@link BNKEditor#writeBNKInPlace()}).
+ * Every line after that maps the unsigned ID of a WEM to the file to replace it with.
+ * Relative paths are relative to the directory the manifest is in.
+ * <p>
+ * The SoundBanks are processed at the same time by a fixed number of threads. For every SoundBank, one line is printed saying how long it took.
+ * All sections with the same SoundBank are done one after another by the same thread, so a SoundBank is never modified in place while it's being read for another section.
+ * Sections that write the same SoundBank to different outputs are done together, reading the SoundBank only once (see {@link BNKEditor#writeVariants(List, boolean)}),
+ * and the sections that modify it in place are done after those. Every output may only be written once, and never be the SoundBank of another section.
+ * With <code>-delta</code>, a delta is written to every output instead of the modified SoundBank (see {@link BankDelta}), so every section needs an output.
+ * With <code>-pipelined</code>, SoundBanks written to an output on their own are read and written at the same time (see {@link BNKEditor#writeBNKPipelined(File, boolean, ProgressListener)}), which helps on network drives.
+ * With <code>-verify</code>, every modified SoundBank that's written to an output is checked afterwards (see {@link BNKEditor#verify(File, boolean)}), and fails if it's not what it should be.
+ * With <code>-metrics</code>, a table of how long each phase of the work took and how much it read and wrote is printed at the end (see {@link MetricsRecorder}).
+ * The exit code is 0 if everything worked, 1 if at least one SoundBank failed, and 2 if the arguments or a manifest couldn't be read.
+ * @author marieismywaifu
+ */
+public class BatchEditor {
+	private static final String USAGE = "usage: java bnkeditor.BatchEditor [-threads <count>] [-bigendian] [-delta] [-pipelined] [-verify] [-metrics] <manifest> ...";
+	
+	/**
+	 * One SoundBank to modify, and how.
+	 */
+	private static class Job {
+		private final File input, output;
+		private final List<Integer> ids = new ArrayList<>();
+		private final List<File> replacements = new ArrayList<>();
+		
+		private Job(File input, File output) {
+			this.input = input;
+			this.output = output;
+		}
+	}
+	
+	public static void main(String[] args) {
+		// read the arguments
+		int threads = Runtime.getRuntime().availableProcessors();
+		boolean littleEndian = true, delta = false, pipelined = false, verify = false;
+		MetricsRecorder metrics = null;
+		List<Job> jobs = new ArrayList<>();
+		try {
+			for (int i = 0; i < args.length; i++) {
+				if ("-threads".equals(args[i])) {
+					if (i + 1 == args.length) throw new IllegalArgumentException("The number of threads is missing after -threads!");
+					try {
+						threads = Integer.parseInt(args[++i]);
+					} catch (NumberFormatException nfe) {
+						throw new IllegalArgumentException(args[i] + " is not a valid number of threads!");
+					}
+					if (threads < 1) throw new IllegalArgumentException("At least one thread is needed!");
+				} else if ("-bigendian".equals(args[i])) littleEndian = false;
+				else if ("-delta".equals(args[i])) delta = true;
+				else if ("-pipelined".equals(args[i])) pipelined = true;
+				else if ("-verify".equals(args[i])) verify = true;
+				else if ("-metrics".equals(args[i])) metrics = new MetricsRecorder();
+				else if (args[i].startsWith("-")) throw new IllegalArgumentException("Unknown option " + args[i] + "!");
+				else jobs.addAll(readManifest(new File(args[i])));
+			}
+			if (jobs.isEmpty()) throw new IllegalArgumentException("No SoundBanks to modify!");
+			Set<File> inputs = new HashSet<>(), outputs = new HashSet<>();
+			for (Job job : jobs) inputs.add(job.input);
+			for (Job job : jobs) {
+				if (delta && job.output == null) throw new IllegalArgumentException("With -delta, every SoundBank needs an output! (" + job.input + " doesn't have one)");
+				if (job.output == null) continue;
+				if (!outputs.add(job.output)) throw new IllegalArgumentException(job.output + " is written more than once!");
+				if (inputs.contains(job.output)) throw new IllegalArgumentException(job.output + " is also the SoundBank of another section, so it can't be written to!");
+			}
+		} catch (IOException | IllegalArgumentException e) {
+			System.err.println(e.getMessage());
+			System.err.println(USAGE);
+			System.exit(2);
+			return;
+		}
+		
+		// every SoundBank is read and written by one thread only, so jobs with the same input are done one after another
+		Map<File, List<Job>> byInput = new LinkedHashMap<>();
+		for (Job job : jobs) {
+			List<Job> same = byInput.get(job.input);
+			if (same == null) {
+				same = new ArrayList<>();
+				byInput.put(job.input, same);
+			}
+			same.add(job);
+		}
+		
+		// process all SoundBanks
+		final boolean finalLittleEndian = littleEndian, finalDelta = delta, finalPipelined = pipelined, finalVerify = verify;
+		final MetricsRecorder finalMetrics = metrics;
+		final AtomicInteger failed = new AtomicInteger();
+		long start = System.nanoTime();
+		ExecutorService executor = Executors.newFixedThreadPool(Math.min(threads, byInput.size()));
+		for (final List<Job> same : byInput.values()) {
+			executor.execute(new Runnable() {
+				@Override public void run() {
+					// jobs that write the SoundBank to different outputs are done in one go, and the ones that modify it in place come last
+					List<Job> variants = new ArrayList<>(), rest = new ArrayList<>(), inPlace = new ArrayList<>();
+					for (Job job : same) {
+						if (job.output == null) inPlace.add(job);
+						else if (finalDelta) rest.add(job);
+						else variants.add(job);
+					}
+					if (variants.size() == 1) rest.add(0, variants.remove(0));
+					if (!variants.isEmpty()) {
+						try {
+							for (String line : processVariants(variants, finalLittleEndian, finalVerify, finalMetrics)) System.out.println(line);
+						} catch (Throwable t) {
+							fail(variants.size(), variants.get(0), t);
+						}
+					}
+					rest.addAll(inPlace);
+					for (Job job : rest) {
+						try {
+							System.out.println(process(job, finalLittleEndian, finalDelta, finalPipelined, finalVerify, finalMetrics));
+						} catch (Throwable t) {
+							fail(1, job, t);
+						}
+					}
+				}
+				
+				private void fail(int jobs, Job job, Throwable t) {
+					failed.addAndGet(jobs);
+					System.err.println("FAILED " + job.input + ": " + (t instanceof Exception ? t.getMessage() : t));
+				}
+			});
+		}
+		executor.shutdown();
+		try {
+			while (!executor.awaitTermination(1, TimeUnit.HOURS));
+		} catch (InterruptedException ie) {
+			System.err.println("Interrupted!");
+			System.exit(1);
+		}
+		System.out.println(String.format("%d of %d SoundBanks done in %.2f s", jobs.size() - failed.get(), jobs.size(), (System.nanoTime() - start) / 1e9));
+		if (metrics != null) metrics.print(System.out);
+		System.exit(failed.get() == 0 ? 0 : 1);
+	}
+	
+	/**
+	 * Applies all replacements of the specified job.
+	 * @param job what to modify, and how
+	 * @param littleEndian the endianness of the SoundBank
+	 * @param delta whether to write a delta instead of the modified SoundBank
+	 * @param pipelined whether to read and write at the same time, if the modified SoundBank is written to an output
+	 * @param verify whether to check the modified SoundBank afterwards, if it's written to an output
+	 * @param metrics what to tell about every phase of the work, or <code>null</code>
+	 * @return a line describing what was done
+	 * @throws ArrayIndexOutOfBoundsException if an ID does not exist in the SoundBank
+	 * @throws IOException if the modified SoundBank isn't what it should be, or if something else goes wrong
+	 */
+	private static String process(Job job, boolean littleEndian, boolean delta, boolean pipelined, boolean verify, MetricsListener metrics) throws IOException {
+		long start = System.nanoTime();
+		BNKEditor editor = new BNKEditor(job.input, littleEndian, 0, metrics);
+		File written;
+		try {
+			for (int i = 0; i < job.ids.size(); i++) {
+				File replacement = job.replacements.get(i);
+				if (!replacement.isFile()) throw new IOException("The replacement " + replacement + " doesn't exist!");
+				editor.replace(job.ids.get(i), true, replacement);
+			}
+			if (delta) {
+				editor.writeDelta(job.output, littleEndian);
+				written = job.output;
+			} else if (job.output == null) {
+				editor.writeBNKInPlace();
+				written = job.input;
+			} else {
+				if (pipelined) editor.writeBNKPipelined(job.output, littleEndian, null);
+				else editor.writeBNK(job.output, littleEndian);
+				written = job.output;
+				if (verify) check(job.output, editor.verify(job.output, littleEndian));
+			}
+		} finally {
+			editor.close();
+		}
+		double seconds = (System.nanoTime() - start) / 1e9, mebibytes = written.length() / 1048576.0;
+		return String.format("OK %s -> %s: %d WEMs replaced, %.1f MiB in %.2f s (%.1f MiB/s)", job.input, written, job.ids.size(), mebibytes, seconds, seconds == 0 ? 0 : mebibytes / seconds);
+	}
+	
+	/**
+	 * Applies the replacements of several jobs that all modify the same SoundBank and write it to different outputs, reading the SoundBank only once.
+	 * @param group the jobs, all with the same input
+	 * @param littleEndian the endianness of the SoundBank
+	 * @param verify whether to check the modified SoundBanks afterwards
+	 * @param metrics what to tell about every phase of the work, or <code>null</code>
+	 * @return one line per job describing what was done
+	 * @throws ArrayIndexOutOfBoundsException if an ID does not exist in the SoundBank
+	 * @throws IOException if a modified SoundBank isn't what it should be, or if something else goes wrong
+	 */
+	private static List<String> processVariants(List<Job> group, boolean littleEndian, boolean verify, MetricsListener metrics) throws IOException {
+		long start = System.nanoTime();
+		BNKEditor editor = new BNKEditor(group.get(0).input, littleEndian, 0, metrics);
+		try {
+			List<BankVariant> variants = new ArrayList<>();
+			for (Job job : group) {
+				BankVariant variant = new BankVariant(job.output);
+				for (int i = 0; i < job.ids.size(); i++) variant.replace(job.ids.get(i), true, job.replacements.get(i));
+				variants.add(variant);
+			}
+			editor.writeVariants(variants, littleEndian);
+			if (verify) {
+				for (BankVariant variant : variants) check(variant.getOutput(), editor.verify(variant, littleEndian));
+			}
+		} finally {
+			editor.close();
+		}
+		double seconds = (System.nanoTime() - start) / 1e9;
+		List<String> lines = new ArrayList<>();
+		for (Job job : group) {
+			lines.add(String.format("OK %s -> %s: %d WEMs replaced, %.1f MiB (one of %d variants written together in %.2f s)", job.input, job.output, job.ids.size(), job.output.length() / 1048576.0, group.size(), seconds));
+		}
+		return lines;
+	}
+	
+	/**
+	 * Makes sure a check of a modified SoundBank didn't find anything wrong.
+	 * @param written the modified SoundBank
+	 * @param problems what the check found
+	 * @throws IOException if the check found something
+	 */
+	private static void check(File written, List<String> problems) throws IOException {
+		if (!problems.isEmpty()) throw new IOException(written + " isn't what it should be: " + problems.get(0) + (problems.size() > 1 ? " (and " + (problems.size() - 1) + " more problems)" : ""));
+	}
+	
+	/**
+	 * Reads a manifest.
+	 * @param manifest the manifest to read
+	 * @return all jobs inside the manifest
+	 * @throws IllegalArgumentException if the manifest isn't formatted properly
+	 * @throws IOException if something else goes wrong
+	 */
+	private static List<Job> readManifest(File manifest) throws IOException {
+		File directory = manifest.getAbsoluteFile().getParentFile();
+		List<Job> jobs = new ArrayList<>();
+		BufferedReader reader = new BufferedReader(new InputStreamReader(new FileInputStream(manifest), StandardCharsets.UTF_8));
+		try {
+			Job job = null;
+			int number = 0;
+			for (String line = reader.readLine(); line != null; line = reader.readLine()) {
+				number++;
+				line = line.trim();
+				if (line.isEmpty() || line.startsWith("#")) continue;
+				if (line.startsWith("[") && line.endsWith("]")) {
+					String[] banks = line.substring(1, line.length() - 1).split("->", -1);
+					if (banks.length > 2 || banks[0].trim().isEmpty() || banks.length == 2 && banks[1].trim().isEmpty()) throw new IllegalArgumentException(manifest + ", line " + number + ": expected [input.bnk] or [input.bnk -> output.bnk]");
+					File input = resolve(directory, banks[0]), output = banks.length == 2 ? resolve(directory, banks[1]) : null;
+					job = new Job(input, input.equals(output) ? null : output);
+					jobs.add(job);
+					continue;
+				}
+				int equals = line.indexOf('=');
+				if (job == null || equals < 0) throw new IllegalArgumentException(manifest + ", line " + number + ": expected [input.bnk] or <id> = <replacement.wem>");
+				try {
+					job.ids.add(Integer.parseUnsignedInt(line.substring(0, equals).trim()));
+				} catch (NumberFormatException nfe) {
+					throw new IllegalArgumentException(manifest + ", line " + number + ": " + line.substring(0, equals).trim() + " is not a valid ID");
+				}
+				job.replacements.add(resolve(directory, line.substring(equals + 1)));
+			}
+		} finally {
+			reader.close();
+		}
+		return jobs;
+	}
+	
+	/**
+	 * Turns a path from a manifest into a file.
+	 * @param directory the directory the manifest is in
+	 * @param path the path, possibly surrounded by whitespace
+	 * @return the file, with its canonical path so that files can be compared
+	 * @throws IOException if the canonical path cannot be found
+	 */
+	private static File resolve(File directory, String path) throws IOException {
+		File file = new File(path.trim());
+		return (file.isAbsolute() ? file : new File(directory, path.trim())).getCanonicalFile();
+	}
+}
\ No newline at end of file
@@ -0,0 +1,54 @@
+package bnkeditor;
+
+import java.io.File;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+
+/**
+ * The directory of the current user where BNKEditor keeps what it has found out about SoundBanks, so nothing is ever written next to the SoundBanks themselves.
+ * That's <code>%LOCALAPPDATA%\bnkeditor</code> on Windows, <code>~/Library/Caches/bnkeditor</code> on macOS and <code>$XDG_CACHE_HOME/bnkeditor</code> (usually <code>~/.cache/bnkeditor</code>) everywhere else.
+ * The system property <code>{@value #PROPERTY}</code> puts it somewhere else.
+ * Everything inside it can be deleted at any time, it's just found out again.
+ * @author marieismywaifu
+ */
+final class CacheDirectory {
+	static final String PROPERTY = "bnkeditor.cache.dir";
+	
+	private CacheDirectory() {}
+	
+	/**
+	 * Returns the directory, which may not exist yet.
+	 * @return the directory
+	 */
+	static File get() {
+		String property = System.getProperty(PROPERTY);
+		if (property != null && !property.isEmpty()) return new File(property);
+		String os = System.getProperty("os.name", "").toLowerCase(), home = System.getProperty("user.home");
+		if (os.startsWith("windows")) {
+			String local = System.getenv("LOCALAPPDATA");
+			return new File(local != null && !local.isEmpty() ? new File(local) : new File(home, "AppData\\Local"), "bnkeditor");
+		}
+		if (os.startsWith("mac")) return new File(home, "Library/Caches/bnkeditor");
+		String xdg = System.getenv("XDG_CACHE_HOME");
+		return new File(xdg != null && !xdg.isEmpty() ? new File(xdg) : new File(home, ".cache"), "bnkeditor");
+	}
+	
+	/**
+	 * Returns the file inside the directory that belongs to the specified file or directory, named after the SHA-256 hash of its absolute path.
+	 * @param file the file or directory
+	 * @param suffix what the name ends with, like <code>.weminfo</code>
+	 * @return the file inside the directory, which may not exist yet
+	 */
+	static File getFile(File file, String suffix) {
+		MessageDigest digest;
+		try {
+			digest = MessageDigest.getInstance("SHA-256");
+		} catch (NoSuchAlgorithmException nsae) {
+			throw new IllegalStateException("Every Java platform has to support SHA-256!", nsae);
+		}
+		StringBuilder hex = new StringBuilder(64 + suffix.length());
+		for (byte b : digest.digest(file.getAbsolutePath().getBytes(StandardCharsets.UTF_8))) hex.append(String.format("%02x", b));
+		return new File(get(), hex.append(suffix).toString());
+	}
+}
\ No newline at end of file
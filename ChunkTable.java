@@ -0,0 +1,126 @@
+package bnkeditor;
+
+import java.io.IOException;
+import java.util.Arrays;
+
+/**
+ * A table of all the sections ("chunks") inside a SoundBank, like <code>BKHD</code>, <code>DIDX</code>, <code>DATA</code>, <code>HIRC</code> or <code>STID</code>.
+ * Every section starts with a four-letter name and a 32-bit length, followed by that many bytes of data.
+ * Building the table only reads those two values for every section and skips over the data, so it's cheap even for huge SoundBanks.
+ * The sections are kept in the order they appear in the file, whatever that order may be.
+ * @author marieismywaifu
+ */
+public class ChunkTable {
+	private int count;
+	private int[] magics;
+	private long[] offsets, lengths;
+	private final long end;
+	
+	/**
+	 * Builds the table by walking over the section headers of the specified file, starting at its very beginning.
+	 * Leaves the specified stream positioned after the last complete section.
+	 * @param input the SoundBank
+	 * @throws IllegalArgumentException if a section claims to be longer than the rest of the file
+	 * @throws IOException if something else goes wrong
+	 */
+	public ChunkTable(CustomInputStream input) throws IOException {
+		magics = new int[8];
+		offsets = new long[8];
+		lengths = new long[8];
+		input.seek(0);
+		while (input.getRemaining() >= 8) {
+			long offset = input.getCurrentPosition();
+			int magic = input.readMagic();
+			long length = input.readInt() & 0xFFFFFFFFL;
+			if (length > input.getRemaining()) throw new IllegalArgumentException("The file has a corrupted " + toString(magic) + " section! (its length is " + length + ", but there are only " + input.getRemaining() + " bytes left)");
+			input.skip(length);
+			if (count == magics.length) {
+				magics = Arrays.copyOf(magics, count * 2);
+				offsets = Arrays.copyOf(offsets, count * 2);
+				lengths = Arrays.copyOf(lengths, count * 2);
+			}
+			magics[count] = magic;
+			offsets[count] = offset;
+			lengths[count] = length;
+			count++;
+		}
+		end = input.getCurrentPosition();
+	}
+	
+	/**
+	 * Returns the index of the first section with the specified name.
+	 * @param magic the name of the section, as returned by {@link CustomInputStream#readMagic()}
+	 * @return the index of the section, or <code>-1</code> if there is no such section
+	 */
+	public int find(int magic) {
+		for (int i = 0; i < count; i++) {
+			if (magics[i] == magic) return i;
+		}
+		return -1;
+	}
+	
+	/**
+	 * Returns how many sections there are.
+	 * @return how many sections there are
+	 */
+	public int getCount() {
+		return count;
+	}
+	
+	/**
+	 * Returns the name of the specified section.
+	 * @param index the index of the section
+	 * @return the name of the section, as returned by {@link CustomInputStream#readMagic()}
+	 */
+	public int getMagic(int index) {
+		if (index >= count) throw new ArrayIndexOutOfBoundsException(index);
+		return magics[index];
+	}
+	
+	/**
+	 * Returns where the specified section starts, including its header.
+	 * @param index the index of the section
+	 * @return the position of the name of the section inside the file
+	 */
+	public long getOffset(int index) {
+		if (index >= count) throw new ArrayIndexOutOfBoundsException(index);
+		return offsets[index];
+	}
+	
+	/**
+	 * Returns where the data of the specified section starts, right after its header.
+	 * @param index the index of the section
+	 * @return the position of the data of the section inside the file
+	 */
+	public long getDataOffset(int index) {
+		return getOffset(index) + 8;
+	}
+	
+	/**
+	 * Returns the length of the data of the specified section, not including its header.
+	 * @param index the index of the section
+	 * @return the length of the data of the section
+	 */
+	public long getLength(int index) {
+		if (index >= count) throw new ArrayIndexOutOfBoundsException(index);
+		return lengths[index];
+	}
+	
+	/**
+	 * Returns where the last complete section ends.
+	 * If this isn't the length of the file, there are a few bytes at the end that don't make up a section.
+	 * @return the position right after the last complete section
+	 */
+	public long getEnd() {
+		return end;
+	}
+	
+	/**
+	 * Turns a section name as returned by {@link CustomInputStream#readMagic()} back into a <code>String</code>.
+	 * @param magic the name of the section
+	 * @return the name of the section as a <code>String</code>
+	 */
+	public static String toString(int magic) {
+		return new String(new char[] {(char) (magic >>> 24 & 0xFF), (char) (magic >>> 16 & 0xFF), (char) (magic >>> 8 & 0xFF), (char) (magic & 0xFF)});
+	}
+}
\ No newline at end of file
@@ -1,25 +1,41 @@
 package bnkeditor;
 
+import java.io.EOFException;
 import java.io.File;
-import java.io.FileInputStream;
 import java.io.FileNotFoundException;
 import java.io.IOException;
-import java.io.InputStream;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.nio.channels.WritableByteChannel;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.atomic.AtomicLong;
 
 /**
- * A wrapper for an <code>InputStream</code>.
+ * A wrapper for a <code>FileChannel</code>.
  * Supports advanced stuff like arbitrary endianness, reading primitive types and <code>String</code>s, and reading until specified offsets.
- * Additionally, automatically closes the <code>InputStream</code> once its end has been reached.
- * This is not buffered, so if you read something once you can never read it again.
- * Uses a <code>FileInputStream</code> internally.
+ * Unlike a plain <code>InputStream</code>, this can jump around in the file, so if you read something once you can always read it again.
+ * Sequential reads are buffered, so reading primitive types one after another only touches the file once every {@value #BUFFER_SIZE} bytes.
+ * Positional reads like {@link #read(long, byte[])} don't touch the current position, so they are safe to use from multiple threads at once.
+ * Since the file is no longer closed automatically once its end has been reached, don't forget to call {@link #close()}.
+ * Every call to the <code>FileChannel</code> is counted, along with the bytes it read, see {@link #getReadCount()} and {@link #getBytesRead()}.
+ * Uses a <code>FileChannel</code> internally.
  * @author marieismywaifu
  */
 public class CustomInputStream {
-	private final InputStream a;
+	/**
+	 * The size of the buffer used for sequential reads.
+	 */
+	public static final int BUFFER_SIZE = 0x10000;
+	
+	private final FileChannel a;
 	private final boolean b;
 	private final long c;
+	private ByteBuffer e;
+	private final AtomicLong i, j;
 	
-	private long d;
+	private long d, f;
 	
 	
 	
@@ -30,18 +46,22 @@ public class CustomInputStream {
 	 * @throws FileNotFoundException if the specified file cannot be found
 	 */
 	public CustomInputStream(File file, boolean littleEndian) throws FileNotFoundException {
-		a = new FileInputStream(file);
+		a = new RandomAccessFile(file, "r").getChannel();
 		b = littleEndian;
 		c = file.length();
 		d = 0;
+		f = 0;
+		i = new AtomicLong();
+		j = new AtomicLong();
 	}
 	
 	
 	
 	/**
 	 * Reads from the current position until the end of the file.
+	 * To copy more than <code>Integer.MAX_VALUE</code> bytes, use {@link #transferTo(long, long, WritableByteChannel)} instead.
 	 * @return all read bytes
-	 * @throws IOException passed from the underlying <code>InputStream</code>
+	 * @throws IOException passed from the underlying <code>FileChannel</code>
 	 * @throws UnsupportedOperationException if the rest of the file is longer than <code>Integer.MAX_VALUE</code> bytes
 	 */
 	public byte[] readRest() throws IOException {
@@ -51,10 +71,11 @@ public class CustomInputStream {
 	
 	/**
 	 * Reads from the current position until the specified position.
+	 * To copy more than <code>Integer.MAX_VALUE</code> bytes, use {@link #transferTo(long, long, WritableByteChannel)} instead.
 	 * @param position until where to read (exclusive)
 	 * @return all read bytes
 	 * @throws IllegalArgumentException if the specicied position has already been passed, if it is past the end of the file, or if the amount of bytes to read is greater than <code>Integer.MAX_VALUE</code>
-	 * @throws IOException passed from the underlying <code>InputStream</code>
+	 * @throws IOException passed from the underlying <code>FileChannel</code>
 	 */
 	public byte[] readUntil(long position) throws IOException {
 		if (position < d) throw new IllegalArgumentException("That point has already been passed!");
@@ -67,12 +88,12 @@ public class CustomInputStream {
 	 * @param length the amount of bytes to read
 	 * @return all read bytes
 	 * @throws IllegalArgumentException if there are less than <code><b>length</b></code> bytes remaining
-	 * @throws IOException passed from the underlying <code>InputStream</code>
+	 * @throws IOException passed from the underlying <code>FileChannel</code>
 	 */
 	public byte[] read(int length) throws IOException {
-		byte[] e = new byte[length];
-		read(e);
-		return e;
+		byte[] g = new byte[length];
+		read(g);
+		return g;
 	}
 	
 	/**
@@ -80,26 +101,98 @@ public class CustomInputStream {
 	 * The entire array is filled, from start to finish.
 	 * @param bytes an array to read into
 	 * @throws IllegalArgumentException if there are less than <code><b>bytes</b>.length</code> bytes remaining
-	 * @throws IOException passed from the underlying <code>InputStream</code>
+	 * @throws IOException passed from the underlying <code>FileChannel</code>
 	 */
 	public void read(byte[] bytes) throws IOException {
-		if (c < d + bytes.length) throw new IllegalArgumentException("The file isn't that long!");
-		long e = d;
-		while (d < e + bytes.length) d += a.read(bytes, (int) (d - e), (int) (bytes.length - (d - e)));
-		if (d == c) close();
+		if (bytes.length <= BUFFER_SIZE) {
+			fill(bytes.length);
+			e.get(bytes);
+		} else read(d, bytes);
+		d += bytes.length;
 	}
 	
+	/**
+	 * Reads from the specified position in the file, without changing the current position.
+	 * @param position where to start reading
+	 * @param length the amount of bytes to read
+	 * @return all read bytes
+	 * @throws IllegalArgumentException if the file ends less than <code><b>length</b></code> bytes after <code><b>position</b></code>
+	 * @throws IOException passed from the underlying <code>FileChannel</code>
+	 */
+	public byte[] read(long position, int length) throws IOException {
+		byte[] g = new byte[length];
+		read(position, g);
+		return g;
+	}
 	
+	/**
+	 * Reads from the specified position in the file into the specified array, without changing the current position.
+	 * The entire array is filled, from start to finish.
+	 * @param position where to start reading
+	 * @param bytes an array to read into
+	 * @throws IllegalArgumentException if the file ends less than <code><b>bytes</b>.length</code> bytes after <code><b>position</b></code>
+	 * @throws IOException passed from the underlying <code>FileChannel</code>
+	 */
+	public void read(long position, byte[] bytes) throws IOException {
+		read(position, ByteBuffer.wrap(bytes));
+	}
 	
 	/**
-	 * Reads a four-letter <code>String</code>.
-	 * @return the read <code>String</code>
-	 * @throws IOException passed from the underlying <code>InputStream</code>
+	 * Reads from the specified position in the file into the specified buffer, without changing the current position.
+	 * The buffer is filled from its position up to its limit, so one buffer can be reused for reading a big chunk of the file piece by piece.
+	 * @param position where to start reading
+	 * @param bytes a buffer to read into
+	 * @throws IllegalArgumentException if the file ends less than <code><b>bytes</b>.remaining()</code> bytes after <code><b>position</b></code>
+	 * @throws IOException passed from the underlying <code>FileChannel</code>
+	 */
+	public void read(long position, ByteBuffer bytes) throws IOException {
+		if (position < 0 || c < position + bytes.remaining()) throw new IllegalArgumentException("The file isn't that long!");
+		long g = position - bytes.position();
+		while (bytes.hasRemaining()) {
+			int h = a.read(bytes, g + bytes.position());
+			if (h < 0) throw new EOFException("The file got shorter while reading from it!");
+			i.incrementAndGet();
+			j.addAndGet(h);
+		}
+	}
+	
+	/**
+	 * Copies from the specified position in the file directly into the specified channel, without changing the current position.
+	 * The bytes never have to pass through the Java heap, so this is the way to go for big chunks of the file.
+	 * @param position where to start copying
+	 * @param length the amount of bytes to copy
+	 * @param target the channel to copy into
+	 * @throws IllegalArgumentException if the file ends less than <code><b>length</b></code> bytes after <code><b>position</b></code>
+	 * @throws IOException passed from the underlying <code>FileChannel</code>
+	 */
+	public void transferTo(long position, long length, WritableByteChannel target) throws IOException {
+		if (position < 0 || c < position + length) throw new IllegalArgumentException("The file isn't that long!");
+		long g = 0;
+		while (g < length) {
+			long h = a.transferTo(position + g, length - g, target);
+			if (h <= 0) throw new EOFException("The file got shorter while reading from it!");
+			i.incrementAndGet();
+			j.addAndGet(h);
+			g += h;
+		}
+	}
+	
+	
+	
+	/**
+	 * Reads a four-letter chunk name, like <code>BKHD</code> or <code>DATA</code>.
+	 * The name is returned as an <code>int</code> containing its four ASCII characters from the most to the least significant byte, regardless of the endianness of the file.
+	 * That way it can be compared without creating a <code>String</code> first, for example <code>"BKHD"</code> becomes <code>0x424B4844</code>.
+	 * @return the read chunk name
+	 * @throws IOException passed from the underlying <code>FileChannel</code>
 	 * @throws UnsupportedOperationException if there are less than 4 bytes remaining
 	 */
-	public String readMagic() throws IOException {
+	public int readMagic() throws IOException {
 		if (c < d + 4) throw new UnsupportedOperationException("The file isn't that long!");
-		return readString(4);
+		fill(4);
+		d += 4;
+		int g = e.getInt();
+		return b ? Integer.reverseBytes(g) : g;
 	}
 	
 	/**
@@ -107,72 +200,112 @@ public class CustomInputStream {
 	 * @param length the length of the <code>String</code>
 	 * @return the read <code>String</code>
 	 * @throws IllegalArgumentException if there are less than <code><b>length</b></code> bytes remaining
-	 * @throws IOException passed from the underlying <code>InputStream</code>
+	 * @throws IOException passed from the underlying <code>FileChannel</code>
 	 */
 	public String readString(int length) throws IOException {
 		if (c < d + length) throw new IllegalArgumentException("The file isn't that long!");
-		StringBuilder e = new StringBuilder();
-		for (int f = 0; f < length; f++) e.append((char) read());
-		return e.toString();
+		return new String(read(length), StandardCharsets.US_ASCII);
 	}
 	
 	/**
 	 * Reads a 64-bit integer.
 	 * @return the read <code>long</code>
-	 * @throws IOException passed from the underlying <code>InputStream</code>
+	 * @throws IOException passed from the underlying <code>FileChannel</code>
 	 * @throws UnsupportedOperationException if there are less than 8 bytes remaining
 	 */
 	public long readLong() throws IOException {
 		if (c < d + 8) throw new UnsupportedOperationException("The file isn't that long!");
-		if (b) return read() + 0x100 * read() + 0x10000 * read() + 0x1000000 * read() + 0x100000000l * read() + 0x10000000000l * read() + 0x1000000000000l * read() + 0x100000000000000l * read();
-		return 0x100000000000000l * read() + 0x1000000000000l * read() + 0x10000000000l * read() + 0x100000000l * read() + 0x1000000 * read() + 0x10000 * read() + 0x100 * read() + read();
+		fill(8);
+		d += 8;
+		return e.getLong();
 	}
 	
 	/**
 	 * Reads a 32-bit integer.
 	 * @return the read <code>int</code>
-	 * @throws IOException passed from the underlying <code>InputStream</code>
+	 * @throws IOException passed from the underlying <code>FileChannel</code>
 	 * @throws UnsupportedOperationException if there are less than 4 bytes remaining
 	 */
 	public int readInt() throws IOException {
 		if (c < d + 4) throw new UnsupportedOperationException("The file isn't that long!");
-		if (b) return read() + 0x100 * read() + 0x10000 * read() + 0x1000000 * read();
-		return 0x1000000 * read() + 0x10000 * read() + 0x100 * read() + read();
+		fill(4);
+		d += 4;
+		return e.getInt();
 	}
 	
 	/**
 	 * Reads a 16-bit integer.
 	 * @return the read <code>short</code>
-	 * @throws IOException passed from the underlying <code>InputStream</code>
+	 * @throws IOException passed from the underlying <code>FileChannel</code>
 	 * @throws UnsupportedOperationException if there are less than 2 bytes remaining
 	 */
 	public short readShort() throws IOException {
 		if (c < d + 2) throw new UnsupportedOperationException("The file isn't that long!");
-		if (b) return (short) (read() + 0x100 * read());
-		return (short) (0x100 * read() + read());
+		fill(2);
+		d += 2;
+		return e.getShort();
 	}
 	
 	/**
 	 * Reads a singleton byte.
 	 * @return the unsigned integer equivalent to the read byte
-	 * @throws IOException passed from the underlying <code>InputStream</code>
+	 * @throws IOException passed from the underlying <code>FileChannel</code>
 	 */
 	public int read() throws IOException {
-		int e = a.read();
+		if (c < d + 1) throw new UnsupportedOperationException("The file isn't that long!");
+		fill(1);
 		d++;
-		if (d == c) close();
-		return e;
+		return e.get() & 0xFF;
+	}
+	
+	/**
+	 * Makes sure the buffer contains the specified amount of bytes starting at the current position, and points it at the current position.
+	 * If they aren't in there already, the buffer is refilled with as many bytes as possible in one go.
+	 * @param length how many bytes are needed (at most {@link #BUFFER_SIZE})
+	 * @throws IllegalArgumentException if there are less than <code><b>length</b></code> bytes remaining
+	 * @throws IOException passed from the underlying <code>FileChannel</code>
+	 */
+	private void fill(int length) throws IOException {
+		if (c < d + length) throw new IllegalArgumentException("The file isn't that long!");
+		if (e == null) {
+			// only allocated once it's needed, since files that are only copied from never need it
+			e = ByteBuffer.allocate(BUFFER_SIZE).order(b ? ByteOrder.LITTLE_ENDIAN : ByteOrder.BIG_ENDIAN);
+			e.limit(0);
+		}
+		if (d < f || d + length > f + e.limit()) {
+			e.clear();
+			e.limit((int) Math.min(BUFFER_SIZE, c - d));
+			while (e.position() < length) {
+				int g = a.read(e, d + e.position());
+				if (g < 0) throw new EOFException("The file got shorter while reading from it!");
+				i.incrementAndGet();
+				j.addAndGet(g);
+			}
+			e.flip();
+			f = d;
+		}
+		e.position((int) (d - f));
 	}
 	
 	
 	
+	/**
+	 * Jumps to the specified position.
+	 * Unlike {@link #skipUntil(long)}, this can also go backwards.
+	 * @param position the position of the next byte to read
+	 * @throws IllegalArgumentException if the specified position is negative or past the end of the file
+	 */
+	public void seek(long position) {
+		if (position < 0 || position > c) throw new IllegalArgumentException("The file isn't that long!");
+		d = position;
+	}
+	
 	/**
 	 * Skips until the specified position.
 	 * @param position until where to skip (exclusive)
 	 * @throws IllegalArgumentException if the specified position has already been reached or if it is past the end of the file
-	 * @throws IOException passed from the underlying <code>InputStream</code>
 	 */
-	public void skipUntil(long position) throws IOException {
+	public void skipUntil(long position) {
 		if (position < d) throw new IllegalArgumentException("That point has already been passed!");
 		skip(position - d);
 	}
@@ -181,22 +314,18 @@ public class CustomInputStream {
 	 * Skips over the specified amount of bytes.
 	 * @param amount how many bytes to skip
 	 * @throws IllegalArgumentException if there are less than <code><b>amount</b></code> bytes remaining
-	 * @throws IOException passed from the underlying <code>InputStream</code>
 	 */
-	public void skip(long amount) throws IOException {
-		if (amount > c + d) throw new IllegalArgumentException("The file isn't that long!");
-		long e = d;
-		while (d < e +amount) d += a.skip(amount - (d - e));
-		if (d == c) close();
-		
+	public void skip(long amount) {
+		if (amount > c - d) throw new IllegalArgumentException("The file isn't that long!");
+		d += amount;
 	}
 	
 	
 	
 	/**
-	 * Closes the underlying <code>InputStream</code>.
-	 * This is called internally automatically once the end of the file has been reached.
-	 * @throws IOException passed from the underlying <code>InputStream</code>
+	 * Closes the underlying <code>FileChannel</code>.
+	 * This is no longer called automatically, since you might still want to go back to an earlier position.
+	 * @throws IOException passed from the underlying <code>FileChannel</code>
 	 */
 	public void close() throws IOException {
 		a.close();
@@ -227,4 +356,22 @@ public class CustomInputStream {
 	public long getRemaining() {
 		return c - d;
 	}
+	
+	/**
+	 * Returns how many times the underlying <code>FileChannel</code> has been asked to read or transfer bytes so far.
+	 * Reads that could be answered from the buffer don't count, so this is roughly the number of system calls.
+	 * @return how many times the file has actually been read from
+	 */
+	public long getReadCount() {
+		return i.get();
+	}
+	
+	/**
+	 * Returns how many bytes have been read or transferred from the underlying <code>FileChannel</code> so far.
+	 * Bytes that were read into the buffer count even if they were never used.
+	 * @return how many bytes have actually been read from the file
+	 */
+	public long getBytesRead() {
+		return j.get();
+	}
 }
\ No newline at end of file
@@ -4,18 +4,32 @@ import java.io.File;
 import java.io.FileNotFoundException;
 import java.io.FileOutputStream;
 import java.io.IOException;
-import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
 import java.nio.charset.StandardCharsets;
 
 /**
- * A wrapper for an <code>OutputStream</code>.
- * Supports advenced stuff like arbitrary endianness and writing primitive types and <code>String</code>s.
- * Uses a <code>FileOutputStream</code> internally.
+ * A wrapper for a <code>FileChannel</code>.
+ * Supports advenced stuff like arbitrary endianness, writing primitive types and <code>String</code>s, and copying straight from a {@link CustomInputStream}.
+ * Everything is buffered, so writing primitive types one after another only touches the file once every {@value #BUFFER_SIZE} bytes.
+ * Because of that, nothing is guaranteed to be in the file before {@link #flush()} or {@link #flushAndClose()} has been called.
+ * Every call to the <code>FileChannel</code> is counted, along with the bytes it wrote, see {@link #getWriteCount()} and {@link #getBytesWritten()}.
+ * Uses a <code>FileOutputStream</code> and its <code>FileChannel</code> internally.
  * @author marieismywaifu
  */
 public class CustomOutputStream {
-	private final OutputStream a;
+	/**
+	 * The size of the buffer used for writing.
+	 */
+	public static final int BUFFER_SIZE = 0x10000;
+	
+	private final FileOutputStream a;
 	private final boolean b;
+	private final FileChannel c;
+	private final ByteBuffer d;
+	
+	private long e, f;
 	
 	
 	
@@ -28,14 +42,26 @@ public class CustomOutputStream {
 	public CustomOutputStream(File file, boolean littleEndian) throws FileNotFoundException {
 		a = new FileOutputStream(file);
 		b = littleEndian;
+		c = a.getChannel();
+		d = ByteBuffer.allocate(BUFFER_SIZE).order(littleEndian ? ByteOrder.LITTLE_ENDIAN : ByteOrder.BIG_ENDIAN);
 	}
 	
 	
 	
+	/**
+	 * Writes a four-letter chunk name, like <code>BKHD</code> or <code>DATA</code>.
+	 * The name is expected in the format returned by {@link CustomInputStream#readMagic()}, so its first character is in the most significant byte, regardless of the endianness of the file.
+	 * @param magic the chunk name to write
+	 * @throws IOException passed from the underlying <code>FileChannel</code>
+	 */
+	public void writeMagic(int magic) throws IOException {
+		writeInt(b ? Integer.reverseBytes(magic) : magic);
+	}
+	
 	/**
 	 * Writes an ASCII-encoded <code>String</code>.
 	 * @param aString the <code>String</code> to write
-	 * @throws IOException passed from the underlying <code>OutputStream</code>
+	 * @throws IOException passed from the underlying <code>FileChannel</code>
 	 */
 	public void writeString(String aString) throws IOException {
 		write(aString.getBytes(StandardCharsets.US_ASCII));
@@ -43,11 +69,61 @@ public class CustomOutputStream {
 	
 	/**
 	 * Writes to the file.
+	 * If the bytes don't fit into the buffer, they're written directly instead of being copied into it.
 	 * @param bytes the bytes to write
-	 * @throws IOException passed from the underlying <code>OutputStream</code>
+	 * @throws IOException passed from the underlying <code>FileChannel</code>
 	 */
 	public void write(byte[] bytes) throws IOException {
-		a.write(bytes);
+		write(bytes, 0, bytes.length);
+	}
+	
+	/**
+	 * Writes part of the specified array to the file.
+	 * If the bytes don't fit into the buffer, they're written directly instead of being copied into it.
+	 * @param bytes an array containing the bytes to write
+	 * @param offset where the bytes to write start inside the array
+	 * @param length how many bytes to write
+	 * @throws IOException passed from the underlying <code>FileChannel</code>
+	 */
+	public void write(byte[] bytes, int offset, int length) throws IOException {
+		if (length <= d.remaining()) {
+			d.put(bytes, offset, length);
+			return;
+		}
+		flush();
+		if (length < BUFFER_SIZE) d.put(bytes, offset, length);
+		else writeDirectly(ByteBuffer.wrap(bytes, offset, length));
+	}
+	
+	/**
+	 * Writes all the remaining bytes of the specified buffer to the file.
+	 * If they don't fit into the buffer of this <code>CustomOutputStream</code>, they're written directly instead of being copied into it,
+	 * so a big direct buffer never has to pass through the Java heap.
+	 * @param bytes the bytes to write
+	 * @throws IOException passed from the underlying <code>FileChannel</code>
+	 */
+	public void write(ByteBuffer bytes) throws IOException {
+		if (bytes.remaining() <= d.remaining()) {
+			d.put(bytes);
+			return;
+		}
+		flush();
+		if (bytes.remaining() < BUFFER_SIZE) d.put(bytes);
+		else writeDirectly(bytes);
+	}
+	
+	/**
+	 * Copies from the specified file to this one, without the bytes ever having to pass through the Java heap.
+	 * @param source the file to copy from
+	 * @param position where to start copying in the source file
+	 * @param length the amount of bytes to copy
+	 * @throws IllegalArgumentException if the source file ends less than <code><b>length</b></code> bytes after <code><b>position</b></code>
+	 * @throws IOException passed from the underlying <code>FileChannel</code>s
+	 */
+	public void transferFrom(CustomInputStream source, long position, long length) throws IOException {
+		flush();
+		source.transferTo(position, length, c);
+		f += length;
 	}
 	
 	
@@ -55,65 +131,94 @@ public class CustomOutputStream {
 	/**
 	 * Writes a 64-bit integer.
 	 * @param aLong the <code>long</code> to write
-	 * @throws IOException passed from the underlying <code>OutputStream</code>
+	 * @throws IOException passed from the underlying <code>FileChannel</code>
 	 */
 	public void writeLong(long aLong) throws IOException {
-		if (b) {
-			writeInt((int) aLong);
-			writeInt((int) (aLong >> 32));
-		} else {
-			writeInt((int) (aLong >> 32));
-			writeInt((int) aLong);
-		}
+		if (d.remaining() < 8) flush();
+		d.putLong(aLong);
 	}
 	
 	/**
 	 * Writes a 32-bit integer.
 	 * @param anInt the <code>int</code> to write
-	 * @throws IOException passed from the underlying <code>OutputStream</code>
+	 * @throws IOException passed from the underlying <code>FileChannel</code>
 	 */
 	public void writeInt(int anInt) throws IOException {
-		if (b) {
-			writeShort((short) anInt);
-			writeShort((short) (anInt >> 16));
-		} else {
-			writeShort((short) (anInt >> 16));
-			writeShort((short) anInt);
-		}
+		if (d.remaining() < 4) flush();
+		d.putInt(anInt);
 	}
 	
 	/**
 	 * Writes a 16-bit integer.
 	 * @param aShort the <code>short</code> to write
-	 * @throws IOException passed from the underlying <code>OutputStream</code>
+	 * @throws IOException passed from the underlying <code>FileChannel</code>
 	 */
 	public void writeShort(short aShort) throws IOException {
-		if (b) {
-			write(aShort);
-			write(aShort >> 8);
-		} else {
-			write(aShort >> 8);
-			write(aShort);
-		}
+		if (d.remaining() < 2) flush();
+		d.putShort(aShort);
 	}
 	
 	/**
 	 * Writes a singleton byte.
 	 * @param aByte the unsigned integer equivalent to the byte to write
-	 * @throws IOException passed from the underlying <code>OutputStream</code>
+	 * @throws IOException passed from the underlying <code>FileChannel</code>
 	 */
 	public void write(int aByte) throws IOException {
-		a.write(aByte);
+		if (!d.hasRemaining()) flush();
+		d.put((byte) aByte);
 	}
 	
 	
 	
 	/**
-	 * Flushes and closes the underlying <code>OutputStream</code>.
-	 * @throws IOException passed from the underlying <code>OutputStream</code>
+	 * Writes everything that's currently in the buffer to the file.
+	 * @throws IOException passed from the underlying <code>FileChannel</code>
+	 */
+	public void flush() throws IOException {
+		d.flip();
+		writeDirectly(d);
+		d.clear();
+	}
+	
+	/**
+	 * Flushes and closes the underlying <code>FileChannel</code>.
+	 * @throws IOException passed from the underlying <code>FileChannel</code>
 	 */
 	public void flushAndClose() throws IOException {
-		a.flush();
-		a.close();
+		try {
+			flush();
+		} finally {
+			a.close();
+		}
+	}
+	
+	/**
+	 * Returns how many times the underlying <code>FileChannel</code> has been asked to write bytes so far.
+	 * Copies made with {@link #transferFrom(CustomInputStream, long, long)} are counted by the source instead, see {@link CustomInputStream#getReadCount()}.
+	 * @return how many times the file has actually been written to
+	 */
+	public long getWriteCount() {
+		return e;
+	}
+	
+	/**
+	 * Returns how many bytes have been written to the underlying <code>FileChannel</code> so far, including those copied with {@link #transferFrom(CustomInputStream, long, long)}.
+	 * Bytes that are still in the buffer don't count.
+	 * @return how many bytes have actually been written to the file
+	 */
+	public long getBytesWritten() {
+		return f;
+	}
+	
+	/**
+	 * Writes all the remaining bytes in the specified buffer to the file, bypassing the buffer of this <code>CustomOutputStream</code>.
+	 * @param bytes the bytes to write
+	 * @throws IOException passed from the underlying <code>FileChannel</code>
+	 */
+	private void writeDirectly(ByteBuffer bytes) throws IOException {
+		while (bytes.hasRemaining()) {
+			f += c.write(bytes);
+			e++;
+		}
 	}
 }
\ No newline at end of file
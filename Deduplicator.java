@@ -0,0 +1,189 @@
+package bnkeditor;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.io.OutputStreamWriter;
+import java.io.PrintWriter;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+
+/**
+ * Keeps track of the contents of all WEMs that have been extracted, so every distinct WEM is only written once.
+ * WEMs are told apart by their SHA-256 hash and their length. The first file with a certain content is written as usual;
+ * every other WEM with the same content either becomes a hard link to that file, or isn't written at all and only shows up in the report.
+ * If writing the first file fails, the next WEM with the same content is written in its place.
+ * Only WEMs that were actually linked (or left out) count as duplicates; if the file system doesn't support hard links, they're plain copies.
+ * One <code>Deduplicator</code> can be shared by any number of extractions, from any number of SoundBanks and threads, so duplicates are found across SoundBanks too.
+ * @see ExtractionOptions#setDeduplicator(Deduplicator)
+ * @author marieismywaifu
+ */
+public class Deduplicator {
+	/**
+	 * What to do with a WEM whose content has already been written.
+	 */
+	public enum Mode {
+		/**
+		 * The WEM becomes a hard link to the file that was written first.
+		 * If the file system doesn't support hard links, the WEM is written in full instead.
+		 */
+		HARD_LINK,
+		/**
+		 * The WEM isn't written at all, it only appears in the report (see {@link Deduplicator#writeReport(File)}).
+		 */
+		MANIFEST
+	}
+	
+	/**
+	 * All WEMs with the same content, in the order they were found.
+	 */
+	static class Group {
+		private final String hash;
+		private final long length;
+		private final List<File> duplicates = new ArrayList<>();
+		private File original;
+		private boolean writing, written;
+		
+		private Group(String hash, long length) {
+			this.hash = hash;
+			this.length = length;
+		}
+		
+		/**
+		 * Finds out whether the specified file has to be written in full, because nobody has written the content yet.
+		 * If someone is writing it right now, this waits until they're done. If they failed, the specified file takes their place.
+		 * @param file where the WEM would be written
+		 * @return the file the content has been written to, or <code>null</code> if the caller has to write <code><b>file</b></code>, then call {@link #finish(boolean)}
+		 * @throws InterruptedIOException if interrupted while waiting
+		 */
+		synchronized File awaitOriginal(File file) throws InterruptedIOException {
+			try {
+				while (writing) wait();
+			} catch (InterruptedException ie) {
+				Thread.currentThread().interrupt();
+				throw new InterruptedIOException("Interrupted while waiting for " + original + " to be written!");
+			}
+			if (written) return original;
+			original = file;
+			writing = true;
+			return null;
+		}
+		
+		/**
+		 * Marks the original file as completely written (or not), waking up everyone waiting for it.
+		 * @param success whether the file was written completely
+		 */
+		synchronized void finish(boolean success) {
+			writing = false;
+			written = success;
+			notifyAll();
+		}
+	}
+	
+	private final Mode mode;
+	private final LinkedHashMap<String, Group> groups = new LinkedHashMap<>();
+	private long duplicates, savedBytes;
+	
+	/**
+	 * Constructs a new <code>Deduplicator</code> that hasn't seen any WEMs yet.
+	 * @param mode what to do with WEMs whose content has already been written
+	 * @throws NullPointerException if <code><b>mode</b></code> is <code>null</code>
+	 */
+	public Deduplicator(Mode mode) {
+		if (mode == null) throw new NullPointerException("The mode can't be null!");
+		this.mode = mode;
+	}
+	
+	/**
+	 * Returns what happens to WEMs whose content has already been written.
+	 * @return what happens to WEMs whose content has already been written
+	 */
+	public Mode getMode() {
+		return mode;
+	}
+	
+	/**
+	 * Finds the group of WEMs with the specified content, which is new if nobody has seen the content yet.
+	 * Use {@link Group#awaitOriginal(File)} to find out whether the WEM has to be written.
+	 * @param hash the SHA-256 hash of the WEM, in hexadecimal
+	 * @param length the length of the WEM
+	 * @return the group of WEMs with the same content
+	 */
+	synchronized Group claim(String hash, long length) {
+		String key = hash + ':' + length;
+		Group group = groups.get(key);
+		if (group == null) {
+			group = new Group(hash, length);
+			groups.put(key, group);
+		}
+		return group;
+	}
+	
+	/**
+	 * Counts a WEM that hasn't been written in full, because it's been linked to the original (or left out, in {@link Mode#MANIFEST} mode).
+	 * @param group the group of WEMs with the same content
+	 * @param file where the WEM would have been written
+	 */
+	synchronized void addDuplicate(Group group, File file) {
+		group.duplicates.add(file);
+		duplicates++;
+		savedBytes += group.length;
+	}
+	
+	/**
+	 * Returns how many distinct contents have been written.
+	 * @return how many distinct contents have been written
+	 */
+	public synchronized int getUniqueCount() {
+		int count = 0;
+		for (Group group : groups.values()) {
+			synchronized (group) {
+				if (group.written) count++;
+			}
+		}
+		return count;
+	}
+	
+	/**
+	 * Returns how many WEMs turned out to be duplicates, and weren't written in full.
+	 * @return how many WEMs turned out to be duplicates
+	 */
+	public synchronized long getDuplicateCount() {
+		return duplicates;
+	}
+	
+	/**
+	 * Returns how many bytes didn't have to be written because of duplicates.
+	 * @return how many bytes didn't have to be written
+	 */
+	public synchronized long getSavedBytes() {
+		return savedBytes;
+	}
+	
+	/**
+	 * Writes a report of all groups of WEMs with the same content, leaving out the contents that were only seen once.
+	 * Every group starts with a line containing the hash, the length and the file that was written,
+	 * followed by one line per duplicate in the form <code>duplicate = original</code>.
+	 * In {@link Mode#MANIFEST} mode, this is how to find out what the missing files should contain.
+	 * @param report the file to write the report to
+	 * @throws IOException if something goes wrong
+	 */
+	public synchronized void writeReport(File report) throws IOException {
+		PrintWriter writer = new PrintWriter(new OutputStreamWriter(Files.newOutputStream(report.toPath()), StandardCharsets.UTF_8));
+		try {
+			writer.println("# " + duplicates + " duplicates of " + getUniqueCount() + " distinct WEMs, " + savedBytes + " bytes saved");
+			for (Group group : groups.values()) {
+				if (group.duplicates.isEmpty()) continue;
+				writer.println();
+				writer.println("[" + group.hash + ", " + group.length + " bytes, " + (group.duplicates.size() + 1) + " copies] " + group.original);
+				for (File duplicate : group.duplicates) writer.println(duplicate + " = " + group.original);
+			}
+		} finally {
+			writer.close();
+		}
+		if (writer.checkError()) throw new IOException("Couldn't write the report to " + report + "!");
+	}
+}
\ No newline at end of file
@@ -1,14 +1,20 @@
 package bnkeditor;
 
 import java.awt.BorderLayout;
+import java.awt.Component;
 import java.awt.Dimension;
 import java.awt.EventQueue;
-import java.awt.GridLayout;
 import java.awt.Toolkit;
 import java.awt.event.ActionEvent;
 import java.awt.event.ActionListener;
+import java.beans.PropertyChangeEvent;
+import java.beans.PropertyChangeListener;
 import java.io.File;
 import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.atomic.AtomicLong;
+import javax.swing.AbstractCellEditor;
 import javax.swing.JButton;
 import javax.swing.JCheckBox;
 import javax.swing.JFileChooser;
@@ -16,15 +22,24 @@ import javax.swing.JFrame;
 import javax.swing.JLabel;
 import javax.swing.JOptionPane;
 import javax.swing.JPanel;
+import javax.swing.JProgressBar;
 import javax.swing.JScrollPane;
+import javax.swing.JTable;
+import javax.swing.ListSelectionModel;
+import javax.swing.SwingWorker;
 import javax.swing.filechooser.FileFilter;
+import javax.swing.table.TableCellEditor;
+import javax.swing.table.TableCellRenderer;
+import javax.swing.table.TableColumn;
+import javax.swing.table.TableRowSorter;
 
 /**
  * A nice little GUI for my {@link BNKEditor}.
  * @author marieismywaifu
  */
 public class EditorWindow extends JFrame {
-	private static final String STATUS_WORKING = "working ...", STATUS_DONE = "Done.", STATUS_FAILED = "Failed.";
+	private static final long serialVersionUID = 1L;
+	private static final String STATUS_WORKING = "working ...", STATUS_DONE = "Done.", STATUS_FAILED = "Failed.", STATUS_CANCELLED = "Cancelled.";
 	private static final FileFilter BNK_FILTER = new FileFilter() {
 		@Override public boolean accept(File f) {
 			String s = f.getAbsolutePath();
@@ -46,14 +61,140 @@ public class EditorWindow extends JFrame {
 	};
 	
 	private final JCheckBox littleEndian;
-	private final JButton saveAllWEMsButton, saveBNKButton;
+	private final JButton openBNKButton, saveAllWEMsButton, saveBNKButton, cancelButton;
 	private final JLabel bnkName, status;
-	private final JPanel list;
+	private final JProgressBar progress;
+	private final WEMTableModel model;
+	private final JTable list;
 	private final JFileChooser openBNK, saveWEM, openWEM, saveAllWEMs, saveBNK;
 	
 	private BNKEditor editor;
-	private int[] ids;
-	private JLabel[] replacementNames;
+	private Task task;
+	
+	/**
+	 * Makes every cell of a table column look and act like a button, without creating a button for every row.
+	 * One button draws all the cells, and another one takes the click whenever a cell is clicked.
+	 */
+	private static abstract class ButtonColumn extends AbstractCellEditor implements TableCellRenderer, TableCellEditor {
+		private static final long serialVersionUID = 1L;
+		
+		private final JButton renderer = new JButton(), editor = new JButton();
+		private int row;
+		
+		private ButtonColumn(final JTable table, int column) {
+			editor.addActionListener(new ActionListener() {
+				@Override public void actionPerformed(ActionEvent ae) {
+					fireEditingStopped();
+					pressed(table.convertRowIndexToModel(row));
+				}
+			});
+			TableColumn tableColumn = table.getColumnModel().getColumn(column);
+			tableColumn.setCellRenderer(this);
+			tableColumn.setCellEditor(this);
+			tableColumn.setPreferredWidth(renderer.getPreferredSize().width);
+		}
+		
+		/**
+		 * Called when the button of the WEM in the specified position has been pressed.
+		 * @param position the position of the WEM inside the SoundBank
+		 */
+		protected abstract void pressed(int position);
+		
+		@Override public Component getTableCellRendererComponent(JTable table, Object value, boolean isSelected, boolean hasFocus, int row, int column) {
+			renderer.setText((String) value);
+			renderer.setEnabled(table.isEnabled());
+			return renderer;
+		}
+
+		@Override public Component getTableCellEditorComponent(JTable table, Object value, boolean isSelected, int row, int column) {
+			this.row = row;
+			editor.setText((String) value);
+			return editor;
+		}
+
+		@Override public Object getCellEditorValue() {
+			return editor.getText();
+		}
+	}
+	
+	/**
+	 * Something that's done in the background, so the window keeps responding while it runs.
+	 * Only one task runs at a time, and everything that could get in its way is disabled until it's done.
+	 * Tasks are cancelled through their {@link ProgressListener}, never by interrupting them, since that would close the SoundBank.
+	 * So only tasks that pass their listener on to what they call can be cancelled, and the cancel button is only shown for those.
+	 */
+	private abstract class Task extends SwingWorker<Void, Void> {
+		private final boolean cancellable;
+		private final AtomicLong processed = new AtomicLong();
+		private volatile long total;
+		private volatile boolean cancelRequested;
+		
+		/**
+		 * Feeds the progress bar, and tells the task to stop once the cancel button has been pressed.
+		 */
+		protected final ProgressListener listener = new ProgressListener() {
+			@Override public void start(long totalBytes) {
+				processed.set(0);
+				total = totalBytes;
+			}
+			
+			@Override public void progress(long bytes) {
+				long t = total;
+				if (t > 0) setProgress((int) Math.min(processed.addAndGet(bytes) * 100 / t, 100));
+			}
+			
+			@Override public boolean isCancelled() {
+				return cancelRequested;
+			}
+		};
+		
+		/**
+		 * Prepares the task, which doesn't start until it's passed to {@link EditorWindow#run(Task)}.
+		 * @param cancellable whether the work passes {@link #listener} on, so it stops when the cancel button is pressed
+		 */
+		private Task(boolean cancellable) {
+			this.cancellable = cancellable;
+			addPropertyChangeListener(new PropertyChangeListener() {
+				@Override public void propertyChange(PropertyChangeEvent pce) {
+					if (!"progress".equals(pce.getPropertyName())) return;
+					progress.setIndeterminate(false);
+					progress.setValue((Integer) pce.getNewValue());
+				}
+			});
+		}
+		
+		/**
+		 * Does the actual work, in the background.
+		 * @throws IOException if something goes wrong
+		 */
+		protected abstract void work() throws IOException;
+		
+		/**
+		 * Shows the result once the work is done, on the event dispatch thread.
+		 */
+		protected void succeeded() {}
+		
+		@Override protected Void doInBackground() throws IOException {
+			work();
+			return null;
+		}
+
+		@Override protected void done() {
+			task = null;
+			setBusy(false);
+			try {
+				get();
+				succeeded();
+				status.setText(STATUS_DONE);
+			} catch (ExecutionException ee) {
+				if (cancelRequested && ee.getCause() instanceof InterruptedIOException) status.setText(STATUS_CANCELLED);
+				else showError(ee.getCause());
+			} catch (InterruptedException ie) {
+				// can't happen, the work is already done
+				Thread.currentThread().interrupt();
+			}
+		}
+	}
 	
 	public static void main(String[] args) {
 		EventQueue.invokeLater(new Runnable() {
@@ -64,10 +205,38 @@ public class EditorWindow extends JFrame {
 	}
 	
 	public EditorWindow () {
-		list = new JPanel(new GridLayout(0, 5));
+		model = new WEMTableModel();
+		list = new JTable(model);
+		list.setSelectionMode(ListSelectionModel.SINGLE_SELECTION);
+		list.setRowHeight(new JButton("cancel").getPreferredSize().height);
+		list.getTableHeader().setReorderingAllowed(false);
+		list.setAutoCreateRowSorter(true);
+		TableRowSorter<?> sorter = (TableRowSorter<?>) list.getRowSorter();
+		for (int column = 0; column < model.getColumnCount(); column++) if (WEMTableModel.isButtonColumn(column)) sorter.setSortable(column, false);
+		new ButtonColumn(list, WEMTableModel.COLUMN_SAVE) {
+			@Override protected void pressed(int position) {
+				saveWEMButtonPressed(position);
+			}
+		};
+		new ButtonColumn(list, WEMTableModel.COLUMN_REPLACE) {
+			@Override protected void pressed(int position) {
+				replaceWEMButtonPressed(position);
+			}
+		};
+		new ButtonColumn(list, WEMTableModel.COLUMN_CANCEL) {
+			@Override protected void pressed(int position) {
+				cancelReplacementButtonPressed(position);
+			}
+		};
 		littleEndian = new JCheckBox("Little Endian", true);
 		littleEndian.setToolTipText("I don't even know if Wwise uses Big Endian at all. If you keep running into errors, try un-checking this box and re-opening the BNK.");
 		bnkName = new JLabel();
+		openBNKButton = new JButton("open BNK ...");
+		openBNKButton.addActionListener(new ActionListener() {
+			@Override public void actionPerformed(ActionEvent ae) {
+				openBNKButtonPressed();
+			}
+		});
 		saveAllWEMsButton = new JButton("save all WEMs as ...");
 		saveAllWEMsButton.addActionListener(new ActionListener() {
 			@Override
@@ -83,7 +252,18 @@ public class EditorWindow extends JFrame {
 			}
 		});
 		saveBNKButton.setEnabled(false);
+		cancelButton = new JButton("cancel");
+		cancelButton.addActionListener(new ActionListener() {
+			@Override public void actionPerformed(ActionEvent ae) {
+				if (task != null) task.cancelRequested = true;
+				cancelButton.setEnabled(false);
+			}
+		});
+		cancelButton.setVisible(false);
 		status = new JLabel();
+		progress = new JProgressBar(0, 100);
+		progress.setStringPainted(true);
+		progress.setVisible(false);
 		openBNK = new JFileChooser();
 		openBNK.setFileFilter(BNK_FILTER);
 		openBNK.setDialogTitle("open the BNK you want to edit");
@@ -106,17 +286,13 @@ public class EditorWindow extends JFrame {
 		// complicated stuff first
 		JPanel jp = new JPanel();
 		jp.add(littleEndian);
-		JButton jb = new JButton("open BNK ...");
-		jb.addActionListener(new ActionListener() {
-			@Override public void actionPerformed(ActionEvent ae) {
-				openBNKButtonPressed();
-			}
-		});
-		jp.add(jb);
+		jp.add(openBNKButton);
 		jp.add(bnkName);
 		jp.add(saveAllWEMsButton);
 		jp.add(saveBNKButton);
 		jp.add(status);
+		jp.add(progress);
+		jp.add(cancelButton);
 		add(jp, BorderLayout.NORTH);
 		add(new JScrollPane(list), BorderLayout.CENTER);
 		
@@ -133,98 +309,56 @@ public class EditorWindow extends JFrame {
 	}
 	
 	private void openBNKButtonPressed() {
-		try {
-			if (openBNK.showOpenDialog(this) != JFileChooser.APPROVE_OPTION) return;
-			status.setText(STATUS_WORKING);
-			editor = new BNKEditor(openBNK.getSelectedFile(), littleEndian.isSelected());
-			bnkName.setText(openBNK.getSelectedFile().getName());
-			saveAllWEMsButton.setEnabled(true);
-			saveBNKButton.setEnabled(true);
-			ids = editor.getIDs();
-			replacementNames = new JLabel[ids.length];
-			list.removeAll();
-			for (int i = 0; i < ids.length; i++) {
-				final int id = i;
-				list.add(new JLabel(Integer.toUnsignedString(ids[id])));
-				JButton jb = new JButton("save WEM as ...");
-				jb.addActionListener(new ActionListener() {
-					@Override public void actionPerformed(ActionEvent ae) {
-						saveWEMButtonPressed(id);
-					}
-				});
-				list.add(jb);
-				jb = new JButton("replace WEM with ...");
-				jb.addActionListener(new ActionListener() {
-					@Override public void actionPerformed(ActionEvent ae) {
-						replaceWEMButtonPressed(id);
-					}
-				});
-				list.add(jb);
-				replacementNames[id] = new JLabel();
-				list.add(replacementNames[id]);
-				jb = new JButton("cancel");
-				jb.addActionListener(new ActionListener() {
-					@Override public void actionPerformed(ActionEvent ae) {
-						cancelReplacementButtonPressed(id);
-					}
-				});
-				list.add(jb);
+		if (task != null || openBNK.showOpenDialog(this) != JFileChooser.APPROVE_OPTION) return;
+		final File file = openBNK.getSelectedFile();
+		final boolean isLittleEndian = littleEndian.isSelected();
+		run(new Task(false) {
+			private BNKEditor opened;
+			private WEMInfo[] infos;
+			
+			@Override protected void work() throws IOException {
+				opened = new BNKEditor(file, isLittleEndian);
+				try {
+					infos = opened.getWEMInfo();
+				} catch (IOException ioe) {
+					opened.close();
+					throw ioe;
+				}
 			}
-			revalidate();
-			status.setText(STATUS_DONE);
-		} catch (IOException ioe) {
-			editor = null;
-			saveAllWEMsButton.setEnabled(false);
-			saveBNKButton.setEnabled(false);
-			ids = null;
-			replacementNames = null;
-			list.removeAll();
-			revalidate();
-			status.setText(STATUS_FAILED);
-			JOptionPane.showMessageDialog(this, "the following exception occured while reading from the file: " + ioe.getMessage(), "java.io.IOException", JOptionPane.ERROR_MESSAGE);
-		} catch (IllegalArgumentException iae) {
-			editor = null;
-			saveAllWEMsButton.setEnabled(false);
-			saveBNKButton.setEnabled(false);
-			ids = null;
-			replacementNames = null;
-			list.removeAll();
-			revalidate();
-			status.setText(STATUS_FAILED);
-			JOptionPane.showMessageDialog(this, "the following thing is wrong with the file you opened: " + iae.getMessage(), "java.lang.IllegalArgumentException", JOptionPane.ERROR_MESSAGE);
-		} catch (Exception e) {
-			editor = null;
-			saveAllWEMsButton.setEnabled(false);
-			saveBNKButton.setEnabled(false);
-			ids = null;
-			replacementNames = null;
-			list.removeAll();
-			revalidate();
-			status.setText(STATUS_FAILED);
-			JOptionPane.showMessageDialog(this, "this happened: " + e.getMessage() + "\nand I have no idea how", e.getClass().getName(), JOptionPane.ERROR_MESSAGE);
-			e.printStackTrace();
-		}
+			
+			@Override protected void succeeded() {
+				try {
+					if (editor != null) editor.close();
+				} catch (IOException ioe) {
+					// it's not needed anymore anyway
+				}
+				editor = opened;
+				bnkName.setText(file.getName());
+				saveAllWEMsButton.setEnabled(true);
+				saveBNKButton.setEnabled(true);
+				model.setEditor(editor, infos);
+			}
+		});
 	}
 	
-	private void saveWEMButtonPressed(int id) {
-		try {
-			if (saveWEM.showSaveDialog(this) != JFileChooser.APPROVE_OPTION) return;
-			status.setText(STATUS_WORKING);
-			editor.writeWEM(id, false, saveWEM.getSelectedFile());
-			status.setText(STATUS_DONE);
-		} catch (IOException ioe) {
-			status.setText(STATUS_FAILED);
-			JOptionPane.showMessageDialog(this, "the following exception occured while reading from or writing to the file: " + ioe.getMessage(), "java.io.IOException", JOptionPane.ERROR_MESSAGE);
-		}
+	private void saveWEMButtonPressed(final int id) {
+		if (task != null || saveWEM.showSaveDialog(this) != JFileChooser.APPROVE_OPTION) return;
+		final File file = saveWEM.getSelectedFile();
+		run(new Task(false) {
+			@Override protected void work() throws IOException {
+				editor.writeWEM(id, false, file);
+			}
+		});
 	}
 	
 	private void replaceWEMButtonPressed(int id) {
+		if (task != null) return;
 		try {
 			if (openWEM.showOpenDialog(this) != JFileChooser.APPROVE_OPTION) return;
 			status.setText(STATUS_WORKING);
 			File replacement = openWEM.getSelectedFile();
 			editor.replace(id, false, replacement);
-			replacementNames[id].setText(replacement.getName());
+			model.replacementChanged(id);
 			status.setText(STATUS_DONE);
 		} catch (IllegalArgumentException iae) {
 			status.setText(STATUS_FAILED);
@@ -233,37 +367,75 @@ public class EditorWindow extends JFrame {
 	}
 	
 	private void cancelReplacementButtonPressed(int id) {
+		if (task != null) return;
 		status.setText(STATUS_WORKING);
 		editor.cancelReplacement(id, false);
-		replacementNames[id].setText(null);
+		model.replacementChanged(id);
 		status.setText(STATUS_DONE);
 	}
 	
 	private void saveAllWEMsButtonPressed() {
-		try {
-			if (saveAllWEMs.showSaveDialog(this) != JFileChooser.APPROVE_OPTION) return;
-			status.setText(STATUS_WORKING);
-			File directory = saveAllWEMs.getSelectedFile();
-			for (int i = 0; i < ids.length; i++) {
-				File file = new File(directory, (i + 1) + "_" + ids[i] + ".wem");
-				editor.writeWEM(i, false, file);
+		if (task != null || saveAllWEMs.showSaveDialog(this) != JFileChooser.APPROVE_OPTION) return;
+		final File directory = saveAllWEMs.getSelectedFile();
+		run(new Task(true) {
+			@Override protected void work() throws IOException {
+				ExtractionOptions options = new ExtractionOptions();
+				options.setProgressListener(listener);
+				editor.extractAll(directory, options);
 			}
-			status.setText(STATUS_DONE);
-		} catch (IOException ioe) {
-			status.setText(STATUS_FAILED);
-			JOptionPane.showMessageDialog(this, "the following exception occured while reading from or writing to the file: " + ioe.getMessage(), "java.io.IOException", JOptionPane.ERROR_MESSAGE);
-		}
+		});
 	}
 	
 	private void saveBNKButtonPressed() {
-		try {
-			if (saveBNK.showSaveDialog(this) != JFileChooser.APPROVE_OPTION) return;
-			status.setText(STATUS_WORKING);
-			editor.writeBNK(saveBNK.getSelectedFile(), littleEndian.isSelected());
-			status.setText(STATUS_DONE);
-		} catch (IOException ioe) {
-			status.setText(STATUS_FAILED);
-			JOptionPane.showMessageDialog(this, "the following exception occured while reading from or writing to the file: " + ioe.getMessage(), "java.io.IOException", JOptionPane.ERROR_MESSAGE);
+		if (task != null || saveBNK.showSaveDialog(this) != JFileChooser.APPROVE_OPTION) return;
+		final File file = saveBNK.getSelectedFile();
+		final boolean isLittleEndian = littleEndian.isSelected();
+		run(new Task(true) {
+			@Override protected void work() throws IOException {
+				editor.writeBNK(file, isLittleEndian, listener);
+			}
+		});
+	}
+	
+	/**
+	 * Starts the specified task in the background, and disables everything that could get in its way until it's done.
+	 * @param newTask the task to start
+	 */
+	private void run(Task newTask) {
+		task = newTask;
+		setBusy(true);
+		status.setText(STATUS_WORKING);
+		newTask.execute();
+	}
+	
+	/**
+	 * Enables or disables everything that can't be used while a task is running, and shows or hides the progress bar and the cancel button (if the task can be cancelled).
+	 * @param busy whether a task is running
+	 */
+	private void setBusy(boolean busy) {
+		littleEndian.setEnabled(!busy);
+		openBNKButton.setEnabled(!busy);
+		saveAllWEMsButton.setEnabled(!busy && editor != null);
+		saveBNKButton.setEnabled(!busy && editor != null);
+		list.setEnabled(!busy);
+		progress.setIndeterminate(true);
+		progress.setValue(0);
+		progress.setVisible(busy);
+		cancelButton.setEnabled(busy && task.cancellable);
+		cancelButton.setVisible(busy && task.cancellable);
+	}
+	
+	/**
+	 * Tells the user that a task failed, and why.
+	 * @param t what went wrong
+	 */
+	private void showError(Throwable t) {
+		status.setText(STATUS_FAILED);
+		if (t instanceof IOException) JOptionPane.showMessageDialog(this, "the following exception occured while reading from or writing to the file: " + t.getMessage(), "java.io.IOException", JOptionPane.ERROR_MESSAGE);
+		else if (t instanceof IllegalArgumentException) JOptionPane.showMessageDialog(this, "the following thing is wrong with the file you opened: " + t.getMessage(), "java.lang.IllegalArgumentException", JOptionPane.ERROR_MESSAGE);
+		else {
+			JOptionPane.showMessageDialog(this, "this happened: " + t.getMessage() + "\nand I have no idea how", t.getClass().getName(), JOptionPane.ERROR_MESSAGE);
+			t.printStackTrace();
 		}
 	}
 }
\ No newline at end of file
@@ -0,0 +1,112 @@
+package bnkeditor;
+
+import java.io.File;
+
+/**
+ * Options for extracting all WEMs of a SoundBank at once, see {@link BNKEditor#extractAll(File, ExtractionOptions)}.
+ * A freshly constructed <code>ExtractionOptions</code> uses one thread per processor and names the files like the "save all WEMs" button does.
+ * @author marieismywaifu
+ */
+public class ExtractionOptions {
+	/**
+	 * The default file name pattern: the number of the WEM (starting at 1), an underscore, and its unsigned ID.
+	 */
+	public static final String DEFAULT_NAME_PATTERN = "%1$d_%2$s.wem";
+	
+	private int parallelism;
+	private String namePattern;
+	private Deduplicator deduplicator;
+	private ProgressListener progressListener;
+	
+	/**
+	 * Constructs new <code>ExtractionOptions</code> with the default settings.
+	 */
+	public ExtractionOptions() {
+		parallelism = Runtime.getRuntime().availableProcessors();
+		namePattern = DEFAULT_NAME_PATTERN;
+	}
+	
+	/**
+	 * Sets how many WEMs may be written at the same time.
+	 * @param parallelism how many threads to use
+	 * @throws IllegalArgumentException if <code><b>parallelism</b></code> is less than 1
+	 */
+	public void setParallelism(int parallelism) {
+		if (parallelism < 1) throw new IllegalArgumentException("At least one thread is needed!");
+		this.parallelism = parallelism;
+	}
+	
+	/**
+	 * Returns how many WEMs may be written at the same time.
+	 * @return how many threads to use
+	 */
+	public int getParallelism() {
+		return parallelism;
+	}
+	
+	/**
+	 * Sets how the extracted files are named.
+	 * The pattern is passed to {@link String#format(String, Object...)} with the following arguments:
+	 * <br><code>%1$d</code>: the number of the WEM inside the SoundBank, starting at 1
+	 * <br><code>%2$s</code>: the ID of the WEM, unsigned
+	 * <br><code>%3$08X</code>: the ID of the WEM, in hexadecimal
+	 * @param namePattern the file name pattern
+	 * @throws NullPointerException if <code><b>namePattern</b></code> is <code>null</code>
+	 */
+	public void setNamePattern(String namePattern) {
+		if (namePattern == null) throw new NullPointerException("The name pattern can't be null!");
+		this.namePattern = namePattern;
+	}
+	
+	/**
+	 * Returns how the extracted files are named.
+	 * @return the file name pattern
+	 */
+	public String getNamePattern() {
+		return namePattern;
+	}
+	
+	/**
+	 * Sets what keeps track of WEMs with the same content, so each distinct WEM is only written once.
+	 * Pass the same <code>Deduplicator</code> to the extractions of several SoundBanks to find duplicates across all of them.
+	 * Every WEM has to be read twice then, once to hash it and once to copy it, but duplicates don't have to be written at all.
+	 * @param deduplicator what keeps track of the extracted WEMs, or <code>null</code> to write every WEM in full (the default)
+	 */
+	public void setDeduplicator(Deduplicator deduplicator) {
+		this.deduplicator = deduplicator;
+	}
+	
+	/**
+	 * Returns what keeps track of WEMs with the same content.
+	 * @return what keeps track of the extracted WEMs, or <code>null</code> if every WEM is written in full
+	 */
+	public Deduplicator getDeduplicator() {
+		return deduplicator;
+	}
+	
+	/**
+	 * Sets what to tell about the progress of the extraction. It's also asked regularly whether to stop early.
+	 * @param progressListener what to tell about the progress, or <code>null</code> (the default)
+	 */
+	public void setProgressListener(ProgressListener progressListener) {
+		this.progressListener = progressListener;
+	}
+	
+	/**
+	 * Returns what to tell about the progress of the extraction.
+	 * @return what to tell about the progress, or <code>null</code>
+	 */
+	public ProgressListener getProgressListener() {
+		return progressListener;
+	}
+	
+	/**
+	 * Returns the name of the file the specified WEM is extracted to.
+	 * @param position the position of the WEM inside the SoundBank
+	 * @param id the ID of the WEM
+	 * @return the file name
+	 */
+	public String getFileName(int position, int id) {
+		return String.format(namePattern, position + 1, Integer.toUnsignedString(id), id);
+	}
+}
\ No newline at end of file
@@ -0,0 +1,142 @@
+package bnkeditor;
+
+import java.io.File;
+import java.nio.channels.WritableByteChannel;
+
+/**
+ * What happened during {@link BNKEditor#extractAll(File, ExtractionOptions)}: which files were written, how big they are, and how long each one took.
+ * Also what happened during {@link BNKEditor#extractAll(WritableByteChannel, WEMArchive.Format, ExtractionOptions)}, where the WEMs become entries of an archive instead of files.
+ * @author marieismywaifu
+ */
+public class ExtractionSummary {
+	private final File[] files, originals;
+	private final String[] names;
+	private final long[] lengths, nanos;
+	private final long elapsedNanos;
+	
+	/**
+	 * Constructs a new <code>ExtractionSummary</code>.
+	 * @param files the written files, in the order of the WEMs inside the SoundBank
+	 * @param originals for every WEM that was a duplicate, the file with the same content that was written instead (<code>null</code> for all others)
+	 * @param lengths how many bytes were written to each file
+	 * @param nanos how many nanoseconds it took to write each file
+	 * @param elapsedNanos how many nanoseconds the whole extraction took
+	 */
+	ExtractionSummary(File[] files, File[] originals, long[] lengths, long[] nanos, long elapsedNanos) {
+		this(files, new String[files.length], originals, lengths, nanos, elapsedNanos);
+		for (int i = 0; i < files.length; i++) names[i] = files[i] == null ? null : files[i].getName();
+	}
+	
+	/**
+	 * Constructs a new <code>ExtractionSummary</code> for WEMs that were written into an archive.
+	 * @param names the names of the entries, in the order of the WEMs inside the SoundBank
+	 * @param lengths how many bytes were written for each entry
+	 * @param nanos how many nanoseconds it took to write each entry
+	 * @param elapsedNanos how many nanoseconds the whole extraction took
+	 */
+	ExtractionSummary(String[] names, long[] lengths, long[] nanos, long elapsedNanos) {
+		this(new File[names.length], names, new File[names.length], lengths, nanos, elapsedNanos);
+	}
+	
+	private ExtractionSummary(File[] files, String[] names, File[] originals, long[] lengths, long[] nanos, long elapsedNanos) {
+		this.files = files;
+		this.names = names;
+		this.originals = originals;
+		this.lengths = lengths;
+		this.nanos = nanos;
+		this.elapsedNanos = elapsedNanos;
+	}
+	
+	/**
+	 * Returns how many files (or archive entries) were written.
+	 * @return how many files were written
+	 */
+	public int getFileCount() {
+		return files.length;
+	}
+	
+	/**
+	 * Returns the file the WEM in the specified position was written to.
+	 * @param position the position of the WEM inside the SoundBank
+	 * @return the file the WEM was written to, or <code>null</code> if it was written into an archive
+	 */
+	public File getFile(int position) {
+		return files[position];
+	}
+	
+	/**
+	 * Returns the name of the file or archive entry the WEM in the specified position was written to.
+	 * @param position the position of the WEM inside the SoundBank
+	 * @return the name of the file or entry
+	 */
+	public String getName(int position) {
+		return names[position];
+	}
+	
+	/**
+	 * Returns the file that has the same content as the WEM in the specified position, if that WEM was a duplicate.
+	 * Depending on {@link Deduplicator#getMode()}, the WEM's own file is then either a hard link to that file or doesn't exist at all.
+	 * @param position the position of the WEM inside the SoundBank
+	 * @return the file with the same content, or <code>null</code> if the WEM was written in full
+	 */
+	public File getOriginal(int position) {
+		return originals[position];
+	}
+	
+	/**
+	 * Returns how many WEMs were duplicates of WEMs that had already been written.
+	 * @return how many WEMs were duplicates
+	 */
+	public int getDuplicateCount() {
+		int count = 0;
+		for (File original : originals) {
+			if (original != null) count++;
+		}
+		return count;
+	}
+	
+	/**
+	 * Returns how many bytes were written for the WEM in the specified position.
+	 * @param position the position of the WEM inside the SoundBank
+	 * @return how many bytes were written (<code>0</code> for duplicates)
+	 */
+	public long getLength(int position) {
+		return lengths[position];
+	}
+	
+	/**
+	 * Returns how many nanoseconds it took to write the WEM in the specified position, from creating the file to closing it.
+	 * @param position the position of the WEM inside the SoundBank
+	 * @return how many nanoseconds it took to write the WEM
+	 */
+	public long getNanos(int position) {
+		return nanos[position];
+	}
+	
+	/**
+	 * Returns how many bytes were written in total.
+	 * @return how many bytes were written in total
+	 */
+	public long getTotalLength() {
+		long total = 0;
+		for (long length : lengths) total += length;
+		return total;
+	}
+	
+	/**
+	 * Returns how many nanoseconds the whole extraction took.
+	 * Since files are written at the same time, this is usually a lot less than the sum of {@link #getNanos(int)}.
+	 * @return how many nanoseconds the whole extraction took
+	 */
+	public long getElapsedNanos() {
+		return elapsedNanos;
+	}
+	
+	/**
+	 * Returns how many bytes were written per second, on average.
+	 * @return how many bytes were written per second
+	 */
+	public double getBytesPerSecond() {
+		return elapsedNanos == 0 ? 0 : getTotalLength() * 1e9 / elapsedNanos;
+	}
+}
\ No newline at end of file
@@ -0,0 +1,353 @@
+package bnkeditor;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * An index of the objects inside the HIRC section of a SoundBank, which describes how the sounds are played (and which WEMs they play).
+ * Only the header of every object is read: its type, its length and its ID. They're kept in plain arrays, so even SoundBanks with hundreds of thousands of objects don't need an object each.
+ * The rest of an object is only read when it's asked for, with {@link #readObject(int)} or {@link #getSources(int)}.
+ * <p>
+ * The exception are Sounds and Music Tracks, whose sources are read right away to find out which objects play which WEM (see {@link #findReferences(int)}).
+ * Of a Sound, that's only its first few bytes. They're read in big pieces with positional reads and decoded in place, so that doesn't need an object per Sound either.
+ * That's the same WEM ID the DIDX section uses, or the name of the WEM file if it's streamed from outside the SoundBank.
+ * Only sources that are WEMs are counted, not the ones made up by plugins (like the tone generator).
+ * The layout of the objects changed a lot between versions of Wwise. I've only seen SoundBanks newer than version 88 myself, the older layouts are taken from descriptions of the format.
+ * <p>
+ * The index is only valid as long as the SoundBank doesn't change. Get it with {@link BNKEditor#getHIRCIndex()}.
+ * @author marieismywaifu
+ */
+public class HIRCIndex {
+	public static final int TYPE_SOUND = 2, TYPE_MUSIC_TRACK = 11;
+	private static final int HIRC = 0x48495243, PLUGIN_TYPE_CODEC = 1, PLUGIN_TYPE_SOURCE = 2;
+	
+	/**
+	 * How much of the HIRC section is read at once to find the sources of Sounds and Music Tracks.
+	 */
+	private static final int WINDOW_SIZE = 0x10000;
+	
+	/**
+	 * How much of a Sound is needed to find its source, which comes right at the start (the rest are its properties).
+	 */
+	private static final int SOUND_SOURCE_LENGTH = 32;
+	
+	/**
+	 * The WEMs found so far, each packed together with the object playing it (see {@link HIRCIndex#pack(int, int)}).
+	 * A plain growing array, so finding sources doesn't need an object per source.
+	 */
+	private static final class Sources {
+		private long[] packed = new long[16];
+		private int count;
+		
+		private void add(int id, int object) {
+			if (count == packed.length) packed = Arrays.copyOf(packed, count * 2);
+			packed[count++] = pack(id, object);
+		}
+	}
+	
+	private final CustomInputStream input;
+	private final boolean littleEndian;
+	private final int version, count;
+	private final byte[] types;
+	private final int[] ids, lengths;
+	private final long[] offsets;
+	private final long[] byID, bySource;
+	
+	/**
+	 * Builds the index by walking over all object headers inside the HIRC section.
+	 * Leaves the specified stream positioned somewhere inside the HIRC section, but it's only read with positional reads afterwards.
+	 * @param input the SoundBank
+	 * @param chunks the sections of the SoundBank
+	 * @param littleEndian the endianness of the SoundBank
+	 * @throws IllegalArgumentException if the BKHD or HIRC section is corrupted
+	 * @throws IOException if something else goes wrong
+	 */
+	HIRCIndex(CustomInputStream input, ChunkTable chunks, boolean littleEndian) throws IOException {
+		this.input = input;
+		this.littleEndian = littleEndian;
+		if (chunks.getLength(0) < 4) throw new IllegalArgumentException("The file has a corrupted BKHD section! (it's too short to contain the version)");
+		input.seek(chunks.getDataOffset(0));
+		version = input.readInt();
+		
+		// the number of objects comes first, so the arrays never have to grow (unless the number is a lie)
+		int hircChunk = chunks.find(HIRC);
+		long position = hircChunk < 0 ? 0 : chunks.getDataOffset(hircChunk), end = hircChunk < 0 ? 0 : position + chunks.getLength(hircChunk);
+		int headerLength = version <= 48 ? 12 : 9;
+		long declared = 0;
+		if (end - position >= 4) {
+			input.seek(position);
+			declared = input.readInt() & BNKEditor.MAX_UNSIGNED_INT;
+			position += 4;
+		}
+		int capacity = (int) Math.min(declared, (end - position) / headerLength);
+		byte[] types = new byte[capacity];
+		int[] ids = new int[capacity], lengths = new int[capacity];
+		long[] offsets = new long[capacity];
+		Sources sources = new Sources();
+		int count = 0;
+		
+		// the sources are read from a window into the HIRC section that's moved along with positional reads, so there's no copy of every object
+		ByteBuffer window = ByteBuffer.allocate(WINDOW_SIZE).order(littleEndian ? ByteOrder.LITTLE_ENDIAN : ByteOrder.BIG_ENDIAN);
+		long windowStart = 0, windowEnd = 0;
+		while (count < capacity && end - position >= headerLength) {
+			int type = version <= 48 ? input.readInt() : input.read();
+			long length = input.readInt() & BNKEditor.MAX_UNSIGNED_INT;
+			if (length < 4 || length > end - position - headerLength + 4) throw new IllegalArgumentException("The file has a corrupted HIRC section! (object number " + (count + 1) + " claims to be " + length + " bytes long, but there are only " + (end - position - headerLength + 4) + " bytes left)");
+			types[count] = (byte) type;
+			ids[count] = input.readInt();
+			offsets[count] = position;
+			lengths[count] = (int) length;
+			position += headerLength - 4 + length;
+			
+			// find out which WEMs Sounds and Music Tracks play
+			if (type == TYPE_SOUND || type == TYPE_MUSIC_TRACK) {
+				long bodyStart = offsets[count] + headerLength, bodyEnd = type == TYPE_SOUND ? Math.min(position, bodyStart + SOUND_SOURCE_LENGTH) : position;
+				if (bodyStart < windowStart || bodyEnd > windowEnd) {
+					if (bodyEnd - bodyStart > window.capacity()) window = ByteBuffer.allocate((int) (bodyEnd - bodyStart)).order(window.order());
+					window.clear();
+					window.limit((int) Math.min(window.capacity(), end - bodyStart));
+					input.read(bodyStart, window);
+					windowStart = bodyStart;
+					windowEnd = bodyStart + window.limit();
+				}
+				window.limit((int) (bodyEnd - windowStart));
+				window.position((int) (bodyStart - windowStart));
+				decodeSources(type, window, count, sources);
+			}
+			input.seek(position);
+			count++;
+		}
+		
+		this.count = count;
+		this.types = Arrays.copyOf(types, count);
+		this.ids = Arrays.copyOf(ids, count);
+		this.lengths = Arrays.copyOf(lengths, count);
+		this.offsets = Arrays.copyOf(offsets, count);
+		byID = new long[count];
+		for (int i = 0; i < count; i++) byID[i] = pack(ids[i], i);
+		Arrays.sort(byID);
+		bySource = Arrays.copyOf(sources.packed, sources.count);
+		Arrays.sort(bySource);
+	}
+	
+	/**
+	 * Returns the version of the SoundBank, as stored at the start of its BKHD section.
+	 * @return the version of the SoundBank
+	 */
+	public int getVersion() {
+		return version;
+	}
+	
+	/**
+	 * Returns how many objects are inside the HIRC section.
+	 * @return how many objects are inside the HIRC section (<code>0</code> if there is no HIRC section)
+	 */
+	public int getObjectCount() {
+		return count;
+	}
+	
+	/**
+	 * Returns the type of the specified object, like {@link #TYPE_SOUND} or {@link #TYPE_MUSIC_TRACK}.
+	 * @param object the number of the object inside the HIRC section
+	 * @return the type of the object
+	 */
+	public int getType(int object) {
+		return types[object] & 0xFF;
+	}
+	
+	/**
+	 * Returns the ID of the specified object.
+	 * @param object the number of the object inside the HIRC section
+	 * @return the ID of the object
+	 */
+	public int getID(int object) {
+		return ids[object];
+	}
+	
+	/**
+	 * Returns where the specified object is stored inside the SoundBank file.
+	 * @param object the number of the object inside the HIRC section
+	 * @return the position of the first byte of the object's header inside the SoundBank file
+	 */
+	public long getOffset(int object) {
+		return offsets[object];
+	}
+	
+	/**
+	 * Returns the length of the specified object, as stored in its header.
+	 * @param object the number of the object inside the HIRC section
+	 * @return the length of the object in bytes, counting its ID but not its type and length
+	 */
+	public long getLength(int object) {
+		return lengths[object] & BNKEditor.MAX_UNSIGNED_INT;
+	}
+	
+	/**
+	 * Finds the object with the specified ID.
+	 * @param id the ID of the object
+	 * @return the number of the object inside the HIRC section, or <code>-1</code> if there is no such object
+	 */
+	public int find(int id) {
+		int[] found = find(byID, id);
+		return found.length == 0 ? -1 : found[0];
+	}
+	
+	/**
+	 * Finds all objects that play the WEM with the specified ID.
+	 * Replacing that WEM changes all of them.
+	 * @param wemID the ID of the WEM
+	 * @return the numbers of all Sounds and Music Tracks playing the WEM, in the order they're stored in
+	 */
+	public int[] findReferences(int wemID) {
+		return find(bySource, wemID);
+	}
+	
+	/**
+	 * Reads the rest of the specified object from the SoundBank, everything after its ID.
+	 * @param object the number of the object inside the HIRC section
+	 * @return the rest of the object
+	 * @throws UnsupportedOperationException if the object is longer than <code>Integer.MAX_VALUE</code> bytes
+	 * @throws IOException if something goes wrong
+	 */
+	public byte[] readObject(int object) throws IOException {
+		int headerLength = version <= 48 ? 12 : 9;
+		long length = getLength(object) - 4;
+		if (length > Integer.MAX_VALUE) throw new UnsupportedOperationException("Can't store that many bytes at once!");
+		return input.read(offsets[object] + headerLength, (int) length);
+	}
+	
+	/**
+	 * Reads the specified object from the SoundBank and finds out which WEMs it plays.
+	 * @param object the number of the object inside the HIRC section
+	 * @return the IDs of all WEMs the object plays, in the order they're stored in; empty if the object isn't a Sound or Music Track
+	 * @throws UnsupportedOperationException if the object is longer than <code>Integer.MAX_VALUE</code> bytes
+	 * @throws IOException if something goes wrong
+	 */
+	public int[] getSources(int object) throws IOException {
+		int type = getType(object);
+		if (type != TYPE_SOUND && type != TYPE_MUSIC_TRACK) return new int[0];
+		Sources sources = new Sources();
+		decodeSources(type, ByteBuffer.wrap(readObject(object)).order(littleEndian ? ByteOrder.LITTLE_ENDIAN : ByteOrder.BIG_ENDIAN), object, sources);
+		int[] result = new int[sources.count];
+		for (int i = 0; i < result.length; i++) result[i] = (int) (sources.packed[i] >> 32);
+		return result;
+	}
+	
+	/**
+	 * Finds the IDs of the WEMs a Sound or Music Track plays.
+	 * A Sound has exactly one source, a Music Track has a list of them.
+	 * If the object is shorter than it should be, the sources found so far are returned.
+	 * @param type the type of the object
+	 * @param body the object, from its position (right after its ID) up to its limit
+	 * @param object the number of the object inside the HIRC section
+	 * @param sources where to add the IDs of the WEMs
+	 */
+	private void decodeSources(int type, ByteBuffer body, int object, Sources sources) {
+		try {
+			if (type == TYPE_SOUND) {
+				decodeSource(body, object, sources);
+				return;
+			}
+			if (version > 89) body.get(); // flags
+			long count = body.getInt() & BNKEditor.MAX_UNSIGNED_INT;
+			for (long i = 0; i < count; i++) decodeSource(body, object, sources);
+		} catch (BufferUnderflowException | IllegalArgumentException e) {
+			// a layout this doesn't know about, keep what's there
+		}
+	}
+	
+	/**
+	 * Reads one source from an object, adding its ID if it's a WEM.
+	 * @param body the object, positioned at the start of the source
+	 * @param object the number of the object inside the HIRC section
+	 * @param sources where to add the ID of the WEM
+	 */
+	private void decodeSource(ByteBuffer body, int object, Sources sources) {
+		int plugin = body.getInt();
+		int stream = version <= 46 ? body.getInt() : body.get();
+		int source = body.getInt();
+		if (version <= 88) {
+			body.getInt(); // file ID
+			if (stream != 1) body.position(body.position() + 8); // offset and size inside the file
+		} else body.getInt(); // size in memory
+		body.get(); // bits
+		if ((plugin & 0xF) == PLUGIN_TYPE_SOURCE) {
+			int parameters = body.getInt();
+			body.position(body.position() + parameters);
+		}
+		if ((plugin & 0xF) == PLUGIN_TYPE_CODEC) sources.add(source, object);
+	}
+	
+	/**
+	 * Packs an ID and an object number into a <code>long</code>, so sorting a <code>long[]</code> sorts by ID and keeps the object order for equal IDs.
+	 */
+	private static long pack(int id, int object) {
+		return (long) id << 32 | object;
+	}
+	
+	/**
+	 * Finds all object numbers that were packed together with the specified ID.
+	 */
+	private static int[] find(long[] packed, int id) {
+		long key = (long) id << 32;
+		int low = 0, high = packed.length;
+		while (low < high) {
+			int middle = (low + high) >>> 1;
+			if (packed[middle] < key) low = middle + 1;
+			else high = middle;
+		}
+		int end = low;
+		while (end < packed.length && packed[end] >> 32 == id) end++;
+		int[] found = new int[end - low];
+		for (int i = 0; i < found.length; i++) found[i] = (int) packed[low + i];
+		return found;
+	}
+	
+	public static void main(String[] args) {
+		File bnk = null;
+		boolean littleEndian = true;
+		List<Integer> lookups = new ArrayList<>();
+		try {
+			for (String arg : args) {
+				if ("-bigendian".equals(arg)) littleEndian = false;
+				else if (bnk == null) bnk = new File(arg);
+				else lookups.add(Integer.parseUnsignedInt(arg));
+			}
+			if (bnk == null) throw new IllegalArgumentException("No SoundBank!");
+		} catch (IllegalArgumentException iae) {
+			System.err.println(iae.getMessage());
+			System.err.println("usage: java bnkeditor.HIRCIndex <soundbank> [-bigendian] [<wem id> ...]");
+			System.exit(2);
+			return;
+		}
+		try {
+			BNKEditor editor = new BNKEditor(bnk, littleEndian, 0);
+			try {
+				long start = System.nanoTime();
+				HIRCIndex index = editor.getHIRCIndex();
+				System.out.println(String.format("version %d, %d objects indexed in %.1f ms", index.getVersion(), index.getObjectCount(), (System.nanoTime() - start) / 1e6));
+				if (lookups.isEmpty()) {
+					for (int id : editor.getIDs()) lookups.add(id);
+				}
+				for (int id : lookups) {
+					StringBuilder line = new StringBuilder(Integer.toUnsignedString(id)).append(':');
+					int[] found = index.findReferences(id);
+					if (found.length == 0) line.append(" not used");
+					for (int object : found) line.append(' ').append(index.getType(object) == TYPE_SOUND ? "Sound " : "Music Track ").append(Integer.toUnsignedString(index.getID(object)));
+					System.out.println(line);
+				}
+			} finally {
+				editor.close();
+			}
+		} catch (IOException | IllegalArgumentException e) {
+			System.err.println(e.getMessage());
+			System.exit(1);
+		}
+	}
+}
\ No newline at end of file
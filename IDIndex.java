@@ -0,0 +1,65 @@
+package bnkeditor;
+
+/**
+ * A hash table that finds the position of a WEM inside a SoundBank from its ID, without having to look at every single ID.
+ * Uses open addressing with linear probing on plain <code>int</code> arrays, so no boxing happens and no objects are created per entry.
+ * Once built, the index can't be changed anymore, which also makes it safe to use from multiple threads at once.
+ * @author marieismywaifu
+ */
+public class IDIndex {
+	private final int[] keys, values;
+	private final int mask;
+	
+	/**
+	 * Builds an index of the specified IDs.
+	 * If an ID appears more than once, its first position wins.
+	 * @param ids the IDs of all WEMs, in the order they appear inside the SoundBank
+	 */
+	public IDIndex(int[] ids) {
+		int capacity = Integer.highestOneBit(Math.max(ids.length * 2, 2) - 1) << 1;
+		keys = new int[capacity];
+		values = new int[capacity];
+		mask = capacity - 1;
+		for (int i = 0; i < ids.length; i++) {
+			int slot = slot(ids[i]);
+			while (values[slot] != 0 && keys[slot] != ids[i]) slot = (slot + 1) & mask;
+			if (values[slot] != 0) continue;
+			keys[slot] = ids[i];
+			values[slot] = i + 1; // 0 marks an empty slot
+		}
+	}
+	
+	/**
+	 * Returns the position of the WEM with the specified ID.
+	 * @param id the ID to look for
+	 * @return the position of the WEM inside the SoundBank, or <code>-1</code> if there is no WEM with that ID
+	 */
+	public int find(int id) {
+		int slot = slot(id);
+		while (values[slot] != 0) {
+			if (keys[slot] == id) return values[slot] - 1;
+			slot = (slot + 1) & mask;
+		}
+		return -1;
+	}
+	
+	/**
+	 * Returns whether there is a WEM with the specified ID.
+	 * @param id the ID to look for
+	 * @return whether there is a WEM with the specified ID
+	 */
+	public boolean contains(int id) {
+		return find(id) >= 0;
+	}
+	
+	/**
+	 * Returns the slot where the search for the specified ID starts.
+	 * IDs are hashes already, but they're mixed again so IDs that only differ in their upper bits don't all end up in the same place.
+	 * @param id the ID
+	 * @return the slot where the search starts
+	 */
+	private int slot(int id) {
+		int hash = id * 0x9E3779B9;
+		return (hash ^ (hash >>> 16)) & mask;
+	}
+}
\ No newline at end of file
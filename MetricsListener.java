@@ -0,0 +1,17 @@
+package bnkeditor;
+
+/**
+ * Gets told about every phase of the work a {@link BNKEditor} does: how long it took, how much was read and written, and how the cache behaved.
+ * That's enough to find out where the time goes when saving a SoundBank is slow, without attaching a profiler.
+ * Operations that use several threads may finish phases on any of them, so implementations have to be thread-safe.
+ * {@link MetricsRecorder} is a ready-made implementation that adds everything up.
+ * @see BNKEditor#setMetricsListener(MetricsListener)
+ * @author marieismywaifu
+ */
+public interface MetricsListener {
+	/**
+	 * Called whenever a phase has been finished, even if it failed.
+	 * @param metrics what happened during the phase
+	 */
+	void phaseFinished(PhaseMetrics metrics);
+}
\ No newline at end of file
@@ -0,0 +1,49 @@
+package bnkeditor;
+
+import java.io.PrintStream;
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * A {@link MetricsListener} that adds up all phases with the same name, no matter which SoundBank they worked on.
+ * One <code>MetricsRecorder</code> can be shared by any number of editors and threads.
+ * @author marieismywaifu
+ */
+public class MetricsRecorder implements MetricsListener {
+	private final TreeMap<String, long[]> totals = new TreeMap<>();
+	
+	@Override public synchronized void phaseFinished(PhaseMetrics metrics) {
+		long[] total = totals.get(metrics.getPhase());
+		if (total == null) {
+			total = new long[8];
+			totals.put(metrics.getPhase(), total);
+		}
+		total[0]++;
+		total[1] += metrics.getNanos();
+		total[2] += metrics.getBytesRead();
+		total[3] += metrics.getReadCount();
+		total[4] += metrics.getBytesWritten();
+		total[5] += metrics.getWriteCount();
+		total[6] += metrics.getCacheHits();
+		total[7] += metrics.getCacheMisses();
+	}
+	
+	/**
+	 * Forgets everything recorded so far.
+	 */
+	public synchronized void clear() {
+		totals.clear();
+	}
+	
+	/**
+	 * Prints one line per phase, sorted by name, with everything that has been recorded for it added up.
+	 * @param out where to print the lines
+	 */
+	public synchronized void print(PrintStream out) {
+		out.println(String.format("%-28s %6s %12s %14s %10s %14s %10s %8s %8s", "phase", "count", "ms", "bytes read", "reads", "bytes written", "writes", "hits", "misses"));
+		for (Map.Entry<String, long[]> entry : totals.entrySet()) {
+			long[] t = entry.getValue();
+			out.println(String.format("%-28s %6d %12.3f %14d %10d %14d %10d %8d %8d", entry.getKey(), t[0], t[1] / 1e6, t[2], t[3], t[4], t[5], t[6], t[7]));
+		}
+	}
+}
\ No newline at end of file
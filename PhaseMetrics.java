@@ -0,0 +1,138 @@
+package bnkeditor;
+
+import java.io.File;
+
+/**
+ * What happened during one phase of the work a {@link BNKEditor} does, see {@link MetricsListener}.
+ * The phases are:
+ * <br><code>open.chunks</code>: walking over the section headers when opening a SoundBank
+ * <br><code>open.didx</code>: reading the DIDX section and building the ID index
+ * <br><code>open.hirc</code>: reading the object headers of the HIRC section, see {@link BNKEditor#getHIRCIndex()}
+ * <br><code>probe</code>: reading the header of every WEM, see {@link BNKEditor#getWEMInfo()}
+ * <br><code>readWEM</code>: {@link BNKEditor#readWEM(int, boolean)}
+ * <br><code>writeWEM</code>: {@link BNKEditor#writeWEM(int, boolean, File)}
+ * <br><code>extractAll</code>: {@link BNKEditor#extractAll(File, ExtractionOptions)}
+ * <br><code>extractAll.archive</code>: {@link BNKEditor#extractAll(java.nio.channels.WritableByteChannel, WEMArchive.Format, ExtractionOptions)} and the other ways of writing an archive
+ * <br><code>writeBNK.sections</code>: copying every section except DATA into a modified SoundBank, and writing its DIDX section
+ * <br><code>writeBNK.wems</code>: copying the WEMs that weren't replaced into the DATA section
+ * <br><code>writeBNK.replacements</code>: copying the replacements into the DATA section
+ * <br><code>writeBNK.flush</code>: writing out what's left in the buffer and closing the modified SoundBank
+ * <br><code>writeBNKPipelined</code>: all of {@link BNKEditor#writeBNKPipelined(File, boolean, ProgressListener)}, counting the bytes read from the SoundBank by the reading thread
+ * <br><code>writeBNKPipelined.replacements</code>: reading the replacements, on the reading thread
+ * <br><code>writeBNKPipelined.waitingForReads</code>, <code>writeBNKPipelined.waitingForWrites</code>: how long the writing thread waited for a full buffer, and how long the reading thread waited for a free one
+ * <br><code>writeBNKInPlace</code>: {@link BNKEditor#writeBNKInPlace()}, when every replacement fits into its space; otherwise the SoundBank is written again with <code>writeBNK</code>, which reports its own phases
+ * <br><code>verify</code>: {@link BNKEditor#verify(File, boolean)}, which only counts the time, since the files are read by the threads of {@link BankVerifier}
+ * <br><code>writeDelta</code>: {@link BNKEditor#writeDelta(File, boolean)}, where only the bytes written to the delta are counted, not how often it was written to
+ * <br><code>writeVariants</code>: all of {@link BNKEditor#writeVariants(java.util.List, boolean, ProgressListener)}, counting the bytes written to every variant
+ * <br><code>writeVariants.replacements</code>: reading the replacements of all variants
+ * <p>
+ * Phases like <code>writeBNK.wems</code> and <code>writeBNK.replacements</code> take turns, so each of them is reported once, with everything that happened during all of its turns added up.
+ * Reads and writes are counted in calls to the underlying <code>FileChannel</code>s, which is roughly the number of system calls.
+ * Copies straight from one file to another count as reads only, but their bytes count as read and as written.
+ * @author marieismywaifu
+ */
+public class PhaseMetrics {
+	private final String phase;
+	private final File bank;
+	private final long nanos, bytesRead, readCount, bytesWritten, writeCount, cacheHits, cacheMisses;
+	
+	/**
+	 * Constructs new <code>PhaseMetrics</code>.
+	 * @param phase the name of the phase
+	 * @param bank the SoundBank the phase worked on
+	 * @param nanos how many nanoseconds the phase took
+	 * @param bytesRead how many bytes were read
+	 * @param readCount how many times a file was read from
+	 * @param bytesWritten how many bytes were written
+	 * @param writeCount how many times a file was written to
+	 * @param cacheHits how many times a WEM was found in the cache
+	 * @param cacheMisses how many times a WEM wasn't found in the cache
+	 */
+	PhaseMetrics(String phase, File bank, long nanos, long bytesRead, long readCount, long bytesWritten, long writeCount, long cacheHits, long cacheMisses) {
+		this.phase = phase;
+		this.bank = bank;
+		this.nanos = nanos;
+		this.bytesRead = bytesRead;
+		this.readCount = readCount;
+		this.bytesWritten = bytesWritten;
+		this.writeCount = writeCount;
+		this.cacheHits = cacheHits;
+		this.cacheMisses = cacheMisses;
+	}
+	
+	/**
+	 * Returns the name of the phase, like <code>open.didx</code> or <code>writeBNK.replacements</code>.
+	 * @return the name of the phase
+	 */
+	public String getPhase() {
+		return phase;
+	}
+	
+	/**
+	 * Returns the SoundBank the phase worked on.
+	 * @return the SoundBank the phase worked on
+	 */
+	public File getBank() {
+		return bank;
+	}
+	
+	/**
+	 * Returns how many nanoseconds the phase took.
+	 * @return how many nanoseconds the phase took
+	 */
+	public long getNanos() {
+		return nanos;
+	}
+	
+	/**
+	 * Returns how many bytes were read during the phase, from the SoundBank and from replacements.
+	 * @return how many bytes were read
+	 */
+	public long getBytesRead() {
+		return bytesRead;
+	}
+	
+	/**
+	 * Returns how many times a file was read from during the phase.
+	 * @return how many times a file was read from
+	 */
+	public long getReadCount() {
+		return readCount;
+	}
+	
+	/**
+	 * Returns how many bytes were written during the phase.
+	 * @return how many bytes were written
+	 */
+	public long getBytesWritten() {
+		return bytesWritten;
+	}
+	
+	/**
+	 * Returns how many times a file was written to during the phase.
+	 * @return how many times a file was written to
+	 */
+	public long getWriteCount() {
+		return writeCount;
+	}
+	
+	/**
+	 * Returns how many times a WEM was found in the cache during the phase.
+	 * @return how many times a WEM was found in the cache
+	 */
+	public long getCacheHits() {
+		return cacheHits;
+	}
+	
+	/**
+	 * Returns how many times a WEM wasn't found in the cache during the phase, and had to be read from the SoundBank.
+	 * @return how many times a WEM wasn't found in the cache
+	 */
+	public long getCacheMisses() {
+		return cacheMisses;
+	}
+	
+	@Override public String toString() {
+		return String.format("%s %s: %.3f ms, %d bytes read in %d calls, %d bytes written in %d calls, %d cache hits, %d cache misses", phase, bank, nanos / 1e6, bytesRead, readCount, bytesWritten, writeCount, cacheHits, cacheMisses);
+	}
+}
\ No newline at end of file
@@ -0,0 +1,31 @@
+package bnkeditor;
+
+/**
+ * Gets told how far a long-running operation of a {@link BNKEditor} has come, and can make it stop early.
+ * Progress is counted in bytes, since copying them is what takes the time.
+ * Operations that use several threads call these methods from all of them, so implementations have to be thread-safe.
+ * <p>
+ * Cancelling works by returning <code>true</code> from {@link #isCancelled()}, not by interrupting the thread:
+ * an interrupted thread closes every <code>FileChannel</code> it's using, which would close the SoundBank as well.
+ * @author marieismywaifu
+ */
+public interface ProgressListener {
+	/**
+	 * Called once when the operation starts.
+	 * @param totalBytes how many bytes the operation is going to process
+	 */
+	void start(long totalBytes);
+	
+	/**
+	 * Called whenever some more bytes have been processed.
+	 * @param bytes how many bytes have been processed since the last call (not in total)
+	 */
+	void progress(long bytes);
+	
+	/**
+	 * Called regularly while the operation runs. Once this returns <code>true</code>, the operation stops as soon as possible
+	 * and throws an <code>InterruptedIOException</code>.
+	 * @return whether the operation should stop
+	 */
+	boolean isCancelled();
+}
\ No newline at end of file
@@ -0,0 +1,366 @@
+package bnkeditor;
+
+import java.io.File;
+import java.io.FileDescriptor;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.WritableByteChannel;
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * An uncompressed archive that the WEMs of a SoundBank are streamed into, see {@link BNKEditor#extractAll(WritableByteChannel, Format, ExtractionOptions)}.
+ * The archive is written from start to finish without ever going back, so it can go anywhere bytes can go (a file, a pipe, a socket), and no WEM ever becomes a file of its own.
+ * Entries are never compressed: WEMs are compressed already, and storing them means they're copied straight from the SoundBank.
+ * @author marieismywaifu
+ */
+public class WEMArchive {
+	/**
+	 * The kinds of archives that can be written.
+	 */
+	public enum Format {
+		/**
+		 * A zip archive with stored (not deflated) entries. Zip64 is used where the archive gets too big for plain zip, so there's no limit on its size or number of entries.
+		 * The CRC-32 of every entry has to be in front of it, so WEMs that don't fit into the buffer are read twice.
+		 */
+		ZIP,
+		/**
+		 * A POSIX (ustar) tar archive. Entry names longer than 100 bytes have to contain a <code>/</code> to be split at.
+		 */
+		TAR
+	}
+	
+	/**
+	 * The size of the buffer that headers and small WEMs are collected in, so they don't each cost a write of their own.
+	 */
+	static final int BUFFER_SIZE = 0x10000;
+	
+	private static final int TAR_BLOCK = 512;
+	
+	/**
+	 * An entry of a zip archive, remembered for the central directory at the end.
+	 */
+	private static class Entry {
+		private final byte[] name;
+		private final long length, crc, offset;
+		
+		private Entry(byte[] name, long length, long crc, long offset) {
+			this.name = name;
+			this.length = length;
+			this.crc = crc;
+			this.offset = offset;
+		}
+	}
+	
+	private final WritableByteChannel channel;
+	private final Format format;
+	private final ByteBuffer buffer = ByteBuffer.allocate(BUFFER_SIZE).order(ByteOrder.LITTLE_ENDIAN);
+	private final List<Entry> entries = new ArrayList<>();
+	private final int dosTime, dosDate;
+	private final long mtime;
+	private long position, entryRemaining, entryLength, writeCount;
+	
+	/**
+	 * Starts writing an archive.
+	 * @param channel where to write the archive; it's never closed by this
+	 * @param format the kind of archive
+	 */
+	WEMArchive(WritableByteChannel channel, Format format) {
+		this.channel = channel;
+		this.format = format;
+		LocalDateTime now = LocalDateTime.now();
+		dosTime = now.getSecond() / 2 | now.getMinute() << 5 | now.getHour() << 11;
+		dosDate = now.getDayOfMonth() | now.getMonthValue() << 5 | Math.max(now.getYear() - 1980, 0) << 9;
+		mtime = System.currentTimeMillis() / 1000;
+	}
+	
+	/**
+	 * Starts the next entry. Exactly <code><b>length</b></code> bytes have to follow, through {@link #write(byte[], int, int)} and {@link #transferFrom(CustomInputStream, long, long)}.
+	 * @param name the name of the entry
+	 * @param length the length of the entry
+	 * @param crc the CRC-32 of the entry (only needed for zip archives)
+	 * @throws IllegalArgumentException if the name can't be stored in a tar archive
+	 * @throws IOException if something goes wrong while writing
+	 */
+	void startEntry(String name, long length, long crc) throws IOException {
+		if (entryRemaining != 0) throw new IllegalStateException("The last entry isn't finished yet!");
+		byte[] bytes = name.getBytes(StandardCharsets.UTF_8);
+		if (format == Format.ZIP) {
+			entries.add(new Entry(bytes, length, crc, position + buffer.position()));
+			boolean zip64 = length >= BNKEditor.MAX_UNSIGNED_INT;
+			reserve(30 + bytes.length + 20);
+			buffer.putInt(0x04034B50);
+			buffer.putShort((short) (zip64 ? 45 : 20)); // version needed
+			buffer.putShort((short) 0x0800); // names are UTF-8
+			buffer.putShort((short) 0); // stored
+			buffer.putShort((short) dosTime);
+			buffer.putShort((short) dosDate);
+			buffer.putInt((int) crc);
+			buffer.putInt((int) (zip64 ? BNKEditor.MAX_UNSIGNED_INT : length));
+			buffer.putInt((int) (zip64 ? BNKEditor.MAX_UNSIGNED_INT : length));
+			buffer.putShort((short) bytes.length);
+			buffer.putShort((short) (zip64 ? 20 : 0));
+			buffer.put(bytes);
+			if (zip64) {
+				buffer.putShort((short) 1);
+				buffer.putShort((short) 16);
+				buffer.putLong(length);
+				buffer.putLong(length);
+			}
+		} else {
+			byte[] header = new byte[TAR_BLOCK];
+			int split = -1;
+			if (bytes.length > 100) {
+				// everything in front of the first slash that leaves at most 100 bytes for the name goes into the prefix
+				for (int i = bytes.length - 101; i < bytes.length && i <= 155; i++) {
+					if (i >= 0 && bytes[i] == '/') {
+						split = i;
+						break;
+					}
+				}
+				if (split <= 0) throw new IllegalArgumentException("The name " + name + " is too long for a tar archive!");
+				System.arraycopy(bytes, 0, header, 345, split);
+			}
+			System.arraycopy(bytes, split + 1, header, 0, bytes.length - split - 1);
+			putOctal(header, 100, 8, 0644);
+			putOctal(header, 108, 8, 0);
+			putOctal(header, 116, 8, 0);
+			putOctal(header, 124, 12, length);
+			putOctal(header, 136, 12, mtime);
+			header[156] = '0';
+			System.arraycopy("ustar\u000000".getBytes(StandardCharsets.US_ASCII), 0, header, 257, 8);
+			for (int i = 148; i < 156; i++) header[i] = ' ';
+			long checksum = 0;
+			for (byte b : header) checksum += b & 0xFF;
+			putOctal(header, 148, 7, checksum);
+			reserve(TAR_BLOCK);
+			buffer.put(header);
+		}
+		entryRemaining = entryLength = length;
+	}
+	
+	/**
+	 * Writes part of the current entry.
+	 * @param bytes the bytes to write
+	 * @param offset where they start inside the array
+	 * @param length how many to write
+	 * @throws IOException if something goes wrong
+	 */
+	void write(byte[] bytes, int offset, int length) throws IOException {
+		take(length);
+		if (length > buffer.remaining()) {
+			flush();
+			if (length > buffer.capacity()) {
+				writeFully(ByteBuffer.wrap(bytes, offset, length));
+				return;
+			}
+		}
+		buffer.put(bytes, offset, length);
+	}
+	
+	/**
+	 * Copies part of the current entry straight from the specified file into the archive, without passing it through memory when the target allows that.
+	 * @param source the file to copy from
+	 * @param sourcePosition where to start copying
+	 * @param length how many bytes to copy
+	 * @throws IOException if something goes wrong
+	 */
+	void transferFrom(CustomInputStream source, long sourcePosition, long length) throws IOException {
+		take(length);
+		flush();
+		source.transferTo(sourcePosition, length, channel);
+		position += length;
+	}
+	
+	/**
+	 * Ends the current entry.
+	 * @throws IllegalStateException if less was written than announced
+	 * @throws IOException if something goes wrong
+	 */
+	void finishEntry() throws IOException {
+		if (entryRemaining != 0) throw new IllegalStateException("The entry is " + entryRemaining + " bytes short!");
+		if (format == Format.TAR) {
+			int padding = (int) ((TAR_BLOCK - entryLength % TAR_BLOCK) % TAR_BLOCK);
+			reserve(padding);
+			buffer.put(new byte[padding]);
+		}
+	}
+	
+	/**
+	 * Writes the end of the archive (the central directory of a zip archive), and makes sure everything has been passed to the channel.
+	 * @throws IOException if something goes wrong
+	 */
+	void finish() throws IOException {
+		if (entryRemaining != 0) throw new IllegalStateException("The last entry isn't finished yet!");
+		if (format == Format.TAR) {
+			reserve(2 * TAR_BLOCK);
+			buffer.put(new byte[2 * TAR_BLOCK]);
+			flush();
+			return;
+		}
+		long directoryStart = position + buffer.position();
+		for (Entry entry : entries) {
+			boolean zip64Length = entry.length >= BNKEditor.MAX_UNSIGNED_INT, zip64Offset = entry.offset >= BNKEditor.MAX_UNSIGNED_INT;
+			int extra = (zip64Length ? 16 : 0) + (zip64Offset ? 8 : 0);
+			reserve(46 + entry.name.length + 4 + extra);
+			buffer.putInt(0x02014B50);
+			buffer.putShort((short) (extra > 0 ? 45 : 20)); // version made by
+			buffer.putShort((short) (extra > 0 ? 45 : 20)); // version needed
+			buffer.putShort((short) 0x0800);
+			buffer.putShort((short) 0);
+			buffer.putShort((short) dosTime);
+			buffer.putShort((short) dosDate);
+			buffer.putInt((int) entry.crc);
+			buffer.putInt((int) (zip64Length ? BNKEditor.MAX_UNSIGNED_INT : entry.length));
+			buffer.putInt((int) (zip64Length ? BNKEditor.MAX_UNSIGNED_INT : entry.length));
+			buffer.putShort((short) entry.name.length);
+			buffer.putShort((short) (extra > 0 ? 4 + extra : 0));
+			buffer.putShort((short) 0); // comment
+			buffer.putShort((short) 0); // disk
+			buffer.putShort((short) 0); // internal attributes
+			buffer.putInt(0); // external attributes
+			buffer.putInt((int) (zip64Offset ? BNKEditor.MAX_UNSIGNED_INT : entry.offset));
+			buffer.put(entry.name);
+			if (extra > 0) {
+				buffer.putShort((short) 1);
+				buffer.putShort((short) extra);
+				if (zip64Length) {
+					buffer.putLong(entry.length);
+					buffer.putLong(entry.length);
+				}
+				if (zip64Offset) buffer.putLong(entry.offset);
+			}
+		}
+		long directoryEnd = position + buffer.position(), directoryLength = directoryEnd - directoryStart;
+		boolean zip64 = entries.size() >= 0xFFFF || directoryStart >= BNKEditor.MAX_UNSIGNED_INT || directoryLength >= BNKEditor.MAX_UNSIGNED_INT;
+		if (zip64) {
+			reserve(56 + 20);
+			buffer.putInt(0x06064B50);
+			buffer.putLong(44); // size of the rest of the record
+			buffer.putShort((short) 45);
+			buffer.putShort((short) 45);
+			buffer.putInt(0);
+			buffer.putInt(0);
+			buffer.putLong(entries.size());
+			buffer.putLong(entries.size());
+			buffer.putLong(directoryLength);
+			buffer.putLong(directoryStart);
+			buffer.putInt(0x07064B50);
+			buffer.putInt(0);
+			buffer.putLong(directoryEnd);
+			buffer.putInt(1);
+		}
+		reserve(22);
+		buffer.putInt(0x06054B50);
+		buffer.putShort((short) 0);
+		buffer.putShort((short) 0);
+		buffer.putShort((short) (zip64 ? 0xFFFF : entries.size()));
+		buffer.putShort((short) (zip64 ? 0xFFFF : entries.size()));
+		buffer.putInt((int) (zip64 ? BNKEditor.MAX_UNSIGNED_INT : directoryLength));
+		buffer.putInt((int) (zip64 ? BNKEditor.MAX_UNSIGNED_INT : directoryStart));
+		buffer.putShort((short) 0);
+		flush();
+	}
+	
+	/**
+	 * Returns how many bytes have been passed to the channel so far.
+	 * @return how many bytes have been written
+	 */
+	long getBytesWritten() {
+		return position;
+	}
+	
+	/**
+	 * Returns how many times the channel has been written to so far, not counting copies straight from a file (see {@link PhaseMetrics}).
+	 * @return how many times the channel has been written to
+	 */
+	long getWriteCount() {
+		return writeCount;
+	}
+	
+	/**
+	 * Counts the specified amount of bytes towards the current entry.
+	 */
+	private void take(long length) {
+		if (length > entryRemaining) throw new IllegalStateException("The entry is only " + entryLength + " bytes long!");
+		entryRemaining -= length;
+	}
+	
+	/**
+	 * Makes sure the specified amount of bytes fits into the buffer.
+	 */
+	private void reserve(int length) throws IOException {
+		if (length > buffer.remaining()) flush();
+	}
+	
+	/**
+	 * Passes everything in the buffer to the channel.
+	 */
+	private void flush() throws IOException {
+		if (buffer.position() == 0) return;
+		buffer.flip();
+		writeFully(buffer);
+		buffer.clear();
+	}
+	
+	private void writeFully(ByteBuffer bytes) throws IOException {
+		while (bytes.hasRemaining()) {
+			position += channel.write(bytes);
+			writeCount++;
+		}
+	}
+	
+	/**
+	 * Puts a number into a tar header as octal digits, followed by a 0 byte.
+	 */
+	private static void putOctal(byte[] header, int offset, int length, long value) {
+		String digits = Long.toOctalString(value);
+		if (digits.length() > length - 1) throw new IllegalArgumentException("The number " + value + " doesn't fit into a tar header!");
+		for (int i = 0; i < length - 1; i++) header[offset + i] = (byte) (i < length - 1 - digits.length() ? '0' : digits.charAt(i - (length - 1 - digits.length())));
+		header[offset + length - 1] = 0;
+	}
+	
+	public static void main(String[] args) {
+		File bnk = null;
+		String target = null;
+		boolean littleEndian = true;
+		Format format = null;
+		try {
+			for (String arg : args) {
+				if ("-bigendian".equals(arg)) littleEndian = false;
+				else if ("-zip".equals(arg)) format = Format.ZIP;
+				else if ("-tar".equals(arg)) format = Format.TAR;
+				else if (bnk == null) bnk = new File(arg);
+				else if (target == null) target = arg;
+				else throw new IllegalArgumentException("Too many arguments!");
+			}
+			if (target == null) throw new IllegalArgumentException("Not enough arguments!");
+			if (format == null) format = target.toLowerCase().endsWith(".tar") ? Format.TAR : Format.ZIP;
+		} catch (IllegalArgumentException iae) {
+			System.err.println(iae.getMessage());
+			System.err.println("usage: java bnkeditor.WEMArchive <soundbank> <archive, or - for stdout> [-zip | -tar] [-bigendian]");
+			System.exit(2);
+			return;
+		}
+		try {
+			long start = System.nanoTime();
+			BNKEditor editor = new BNKEditor(bnk, littleEndian, 0);
+			ExtractionSummary summary;
+			try {
+				// not System.out, since a PrintStream swallows errors, which would leave a cut-off archive behind a successful exit
+				if ("-".equals(target)) summary = editor.extractAll(new FileOutputStream(FileDescriptor.out).getChannel(), format, new ExtractionOptions());
+				else summary = editor.extractAll(new File(target), format, new ExtractionOptions());
+			} finally {
+				editor.close();
+			}
+			System.err.println(String.format("%d WEMs (%.1f MiB) written in %.2f s", summary.getFileCount(), summary.getTotalLength() / 1048576.0, (System.nanoTime() - start) / 1e9));
+		} catch (IOException | IllegalArgumentException e) {
+			System.err.println(e.getMessage());
+			System.exit(1);
+		}
+	}
+}
\ No newline at end of file
@@ -0,0 +1,140 @@
+package bnkeditor;
+
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * A cache for WEMs that have been read from a SoundBank, so they don't have to be read again right away.
+ * The cache never holds more bytes than its budget allows. Once it's full, the WEMs that haven't been used for the longest time are thrown out first.
+ * WEMs that are bigger than the entire budget are never cached at all.
+ * Keeps count of hits, misses and evictions, so you can find out whether the budget is too small (or too big).
+ * All methods are synchronized, so one cache can be shared between threads.
+ * @author marieismywaifu
+ */
+public class WEMCache {
+	private final LinkedHashMap<Integer, byte[]> wems;
+	
+	private long budget, size, hits, misses, evictions;
+	
+	/**
+	 * Constructs a new, empty <code>WEMCache</code>.
+	 * @param budget how many bytes of WEMs may be held at once (<code>0</code> disables caching)
+	 * @throws IllegalArgumentException if the budget is negative
+	 */
+	public WEMCache(long budget) {
+		if (budget < 0) throw new IllegalArgumentException("The budget can't be negative!");
+		wems = new LinkedHashMap<>(16, 0.75f, true);
+		this.budget = budget;
+	}
+	
+	/**
+	 * Returns the cached WEM in the specified position, and marks it as the most recently used one.
+	 * Counts as a hit if it's in the cache, and as a miss if it isn't.
+	 * @param position the position of the WEM inside the SoundBank
+	 * @return the cached WEM, or <code>null</code> if it isn't in the cache
+	 */
+	public synchronized byte[] get(int position) {
+		byte[] wem = wems.get(position);
+		if (wem == null) misses++;
+		else hits++;
+		return wem;
+	}
+	
+	/**
+	 * Puts the specified WEM into the cache, throwing out the least recently used WEMs until it fits into the budget.
+	 * If the WEM is bigger than the entire budget, nothing happens.
+	 * @param position the position of the WEM inside the SoundBank
+	 * @param wem the WEM
+	 */
+	public synchronized void put(int position, byte[] wem) {
+		if (wem.length > budget) return;
+		byte[] old = wems.put(position, wem);
+		if (old != null) size -= old.length;
+		size += wem.length;
+		evict();
+	}
+	
+	/**
+	 * Throws the WEM in the specified position out of the cache, if it's in there.
+	 * This doesn't count as an eviction.
+	 * @param position the position of the WEM inside the SoundBank
+	 */
+	public synchronized void remove(int position) {
+		byte[] old = wems.remove(position);
+		if (old != null) size -= old.length;
+	}
+	
+	/**
+	 * Throws all WEMs out of the cache.
+	 * This doesn't count as evictions.
+	 */
+	public synchronized void clear() {
+		wems.clear();
+		size = 0;
+	}
+	
+	/**
+	 * Changes how many bytes of WEMs may be held at once.
+	 * If the cache currently holds more than that, the least recently used WEMs are thrown out right away.
+	 * @param budget how many bytes of WEMs may be held at once (<code>0</code> disables caching)
+	 * @throws IllegalArgumentException if the budget is negative
+	 */
+	public synchronized void setBudget(long budget) {
+		if (budget < 0) throw new IllegalArgumentException("The budget can't be negative!");
+		this.budget = budget;
+		evict();
+	}
+	
+	/**
+	 * Returns how many bytes of WEMs may be held at once.
+	 * @return how many bytes of WEMs may be held at once
+	 */
+	public synchronized long getBudget() {
+		return budget;
+	}
+	
+	/**
+	 * Returns how many bytes of WEMs are held right now.
+	 * @return how many bytes of WEMs are held right now
+	 */
+	public synchronized long getSize() {
+		return size;
+	}
+	
+	/**
+	 * Returns how many times a WEM was found in the cache.
+	 * @return how many times a WEM was found in the cache
+	 */
+	public synchronized long getHits() {
+		return hits;
+	}
+	
+	/**
+	 * Returns how many times a WEM was not found in the cache, and had to be read from the SoundBank instead.
+	 * @return how many times a WEM was not found in the cache
+	 */
+	public synchronized long getMisses() {
+		return misses;
+	}
+	
+	/**
+	 * Returns how many WEMs have been thrown out of the cache to make room for others.
+	 * @return how many WEMs have been thrown out of the cache to make room for others
+	 */
+	public synchronized long getEvictions() {
+		return evictions;
+	}
+	
+	/**
+	 * Throws out the least recently used WEMs until the cache fits into its budget.
+	 */
+	private void evict() {
+		Iterator<Map.Entry<Integer, byte[]>> iterator = wems.entrySet().iterator();
+		while (size > budget && iterator.hasNext()) {
+			size -= iterator.next().getValue().length;
+			iterator.remove();
+			evictions++;
+		}
+	}
+}
\ No newline at end of file
@@ -0,0 +1,327 @@
+package bnkeditor;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * What the header of a WEM says about the sound inside it: the codec, the number of channels, the sample rate and so on, see {@link BNKEditor#getWEMInfo()}.
+ * A WEM is a RIFF file (or RIFX, the Big Endian version), so all of that is in its <code>fmt </code> chunk, right at the start.
+ * Only the first {@value #PROBE_SIZE} bytes of every WEM are read for it, plus the headers of chunks that come after those.
+ * <p>
+ * The results are stored in the cache directory of the current user (see {@link CacheDirectory}), in a file ending in {@value #CACHE_SUFFIX},
+ * along with the path, size and modification time the SoundBank had. Nothing is ever written next to the SoundBank itself.
+ * The results of the last {@value #CACHED_BANKS} SoundBanks are also kept in memory.
+ * So opening the same SoundBank again, even after a restart, doesn't read any of its WEMs as long as it hasn't changed.
+ * If the cache directory can't be written, the results are only kept in memory.
+ * @author marieismywaifu
+ */
+public class WEMInfo {
+	/**
+	 * How many bytes are read from the start of every WEM.
+	 */
+	static final int PROBE_SIZE = 512;
+	
+	private static final int RIFF = 0x52494646, RIFX = 0x52494658, WAVE = 0x57415645, FMT = 0x666D7420, DATA = 0x64617461;
+	private static final int MAGIC = 0x57454D49, VERSION = 1; // WEMI
+	static final String CACHE_SUFFIX = ".weminfo";
+	
+	/**
+	 * How many chunks are looked at at most, before giving up on finding the <code>fmt </code> and <code>data</code> chunks.
+	 */
+	private static final int MAX_CHUNKS = 16;
+	
+	private static final int CACHED_BANKS = 16;
+	
+	/**
+	 * The results of the last few SoundBanks, by their absolute path, with the most recently used last.
+	 */
+	private static final Map<File, Cached> CACHE = new LinkedHashMap<File, Cached>(CACHED_BANKS, 0.75f, true) {
+		@Override protected boolean removeEldestEntry(Map.Entry<File, Cached> eldest) {
+			return size() > CACHED_BANKS;
+		}
+	};
+	
+	private final int format, channels, sampleRate, byteRate, blockAlign, bitsPerSample;
+	private final long dataLength;
+	
+	private WEMInfo(int format, int channels, int sampleRate, int byteRate, int blockAlign, int bitsPerSample, long dataLength) {
+		this.format = format;
+		this.channels = channels;
+		this.sampleRate = sampleRate;
+		this.byteRate = byteRate;
+		this.blockAlign = blockAlign;
+		this.bitsPerSample = bitsPerSample;
+		this.dataLength = dataLength;
+	}
+	
+	/**
+	 * Reads the header of a WEM.
+	 * @param input the SoundBank
+	 * @param position where the WEM starts inside the SoundBank
+	 * @param length the length of the WEM
+	 * @param buffer a buffer of at least {@value #PROBE_SIZE} bytes to read into
+	 * @return what the header says, or <code>null</code> if the WEM doesn't start with a RIFF header containing a <code>fmt </code> chunk
+	 * @throws IOException if something goes wrong while reading
+	 */
+	static WEMInfo probe(CustomInputStream input, long position, long length, ByteBuffer buffer) throws IOException {
+		buffer.clear();
+		buffer.limit((int) Math.min(length, PROBE_SIZE));
+		input.read(position, buffer);
+		buffer.flip();
+		if (buffer.remaining() < 12) return null;
+		int magic = buffer.order(ByteOrder.BIG_ENDIAN).getInt(0);
+		if (magic != RIFF && magic != RIFX || buffer.getInt(8) != WAVE) return null;
+		buffer.order(magic == RIFF ? ByteOrder.LITTLE_ENDIAN : ByteOrder.BIG_ENDIAN);
+		
+		// walk over the chunks; the ones that start after the probed part only need their header read
+		WEMInfo fmt = null;
+		long chunk = 12, data = -1;
+		ByteOrder order = buffer.order();
+		ByteBuffer header = ByteBuffer.allocate(8);
+		for (int count = 0; count < MAX_CHUNKS && chunk + 8 <= length && (fmt == null || data < 0); count++) {
+			int name, size;
+			if (chunk + 8 <= buffer.limit()) {
+				name = buffer.order(ByteOrder.BIG_ENDIAN).getInt((int) chunk);
+				size = buffer.order(order).getInt((int) chunk + 4);
+			} else {
+				header.clear();
+				input.read(position + chunk, header);
+				name = header.order(ByteOrder.BIG_ENDIAN).getInt(0);
+				size = header.order(order).getInt(4);
+			}
+			long chunkLength = size & BNKEditor.MAX_UNSIGNED_INT;
+			if (name == FMT && fmt == null) {
+				if (chunkLength < 16 || chunk + 8 + 16 > buffer.limit()) return null; // a fmt chunk that doesn't fit into the probed part would be very strange
+				int at = (int) chunk + 8;
+				fmt = new WEMInfo(buffer.getShort(at) & 0xFFFF, buffer.getShort(at + 2) & 0xFFFF, buffer.getInt(at + 4), buffer.getInt(at + 8), buffer.getShort(at + 12) & 0xFFFF, buffer.getShort(at + 14) & 0xFFFF, -1);
+			} else if (name == DATA) data = Math.min(chunkLength, length - chunk - 8);
+			chunk += 8 + chunkLength + (chunkLength & 1);
+		}
+		if (fmt == null) return null;
+		return new WEMInfo(fmt.format, fmt.channels, fmt.sampleRate, fmt.byteRate, fmt.blockAlign, fmt.bitsPerSample, data);
+	}
+	
+	/**
+	 * Returns the results for the specified SoundBank, if it has been probed before and hasn't changed since.
+	 * They're taken from memory if possible, or else from the cache directory.
+	 * @param bank the SoundBank
+	 * @return the results, or <code>null</code>
+	 */
+	static synchronized WEMInfo[] getCached(File bank) {
+		File absolute = bank.getAbsoluteFile();
+		long length = absolute.length(), modified = absolute.lastModified();
+		Cached cached = CACHE.get(absolute);
+		if (cached != null && cached.length == length && cached.modified == modified) return cached.infos.clone();
+		WEMInfo[] infos = readCacheFile(absolute, length, modified);
+		if (infos == null) return null;
+		CACHE.put(absolute, new Cached(length, modified, infos));
+		return infos.clone();
+	}
+	
+	/**
+	 * Remembers the results for the specified SoundBank, along with the size and modification time it had when it was probed.
+	 * They're written to the cache directory too, unless that fails.
+	 * @param bank the SoundBank
+	 * @param length its size when it was probed
+	 * @param modified its modification time when it was probed
+	 * @param infos the results
+	 */
+	static synchronized void putCached(File bank, long length, long modified, WEMInfo[] infos) {
+		File absolute = bank.getAbsoluteFile();
+		CACHE.put(absolute, new Cached(length, modified, infos.clone()));
+		writeCacheFile(absolute, length, modified, infos);
+	}
+	
+	/**
+	 * Forgets the results for the specified SoundBank, for when it's changed in a way that may not change its size or modification time.
+	 * Only the file inside the cache directory is deleted, nothing next to the SoundBank.
+	 * @param bank the SoundBank
+	 */
+	static synchronized void forget(File bank) {
+		File absolute = bank.getAbsoluteFile();
+		CACHE.remove(absolute);
+		CacheDirectory.getFile(absolute, CACHE_SUFFIX).delete();
+	}
+	
+	/**
+	 * Reads the stored results for the specified SoundBank.
+	 * @return the results, or <code>null</code> if there are none, if they're for a different SoundBank (or one that's changed since), or if they can't be read
+	 */
+	private static WEMInfo[] readCacheFile(File bank, long length, long modified) {
+		File cacheFile = CacheDirectory.getFile(bank, CACHE_SUFFIX);
+		if (!cacheFile.isFile()) return null;
+		try {
+			CustomInputStream input = new CustomInputStream(cacheFile, true);
+			try {
+				if (input.readInt() != MAGIC || input.readInt() != VERSION || !BankIndex.readString(input).equals(bank.getPath()) || input.readLong() != length || input.readLong() != modified) return null;
+				int count = input.readInt();
+				if (count < 0 || count > cacheFile.length()) return null;
+				WEMInfo[] infos = new WEMInfo[count];
+				for (int i = 0; i < count; i++) {
+					if (input.read() != 0) infos[i] = new WEMInfo(input.readInt(), input.readInt(), input.readInt(), input.readInt(), input.readInt(), input.readInt(), input.readLong());
+				}
+				return infos;
+			} finally {
+				input.close();
+			}
+		} catch (IOException | RuntimeException e) {
+			return null; // just probe again
+		}
+	}
+	
+	/**
+	 * Stores the results for the specified SoundBank, replacing the old file only once the new one has been written completely.
+	 * Nothing happens if that fails, the results just aren't stored then.
+	 */
+	private static void writeCacheFile(File bank, long length, long modified, WEMInfo[] infos) {
+		File cacheFile = CacheDirectory.getFile(bank, CACHE_SUFFIX), temp = null;
+		try {
+			File directory = cacheFile.getParentFile();
+			if (!directory.isDirectory() && !directory.mkdirs()) return;
+			temp = File.createTempFile("bnkeditor", ".tmp", directory);
+			CustomOutputStream output = new CustomOutputStream(temp, true);
+			try {
+				output.writeInt(MAGIC);
+				output.writeInt(VERSION);
+				BankIndex.writeString(output, bank.getPath());
+				output.writeLong(length);
+				output.writeLong(modified);
+				output.writeInt(infos.length);
+				for (WEMInfo info : infos) {
+					output.write(info == null ? 0 : 1);
+					if (info == null) continue;
+					output.writeInt(info.format);
+					output.writeInt(info.channels);
+					output.writeInt(info.sampleRate);
+					output.writeInt(info.byteRate);
+					output.writeInt(info.blockAlign);
+					output.writeInt(info.bitsPerSample);
+					output.writeLong(info.dataLength);
+				}
+			} finally {
+				output.flushAndClose();
+			}
+			Files.move(temp.toPath(), cacheFile.toPath(), StandardCopyOption.REPLACE_EXISTING);
+		} catch (IOException | RuntimeException e) {
+			if (temp != null) temp.delete();
+		}
+	}
+	
+	/**
+	 * Returns the format tag of the <code>fmt </code> chunk, which says what codec the WEM uses.
+	 * @return the format tag
+	 */
+	public int getFormat() {
+		return format;
+	}
+	
+	/**
+	 * Returns the name of the codec the WEM uses, as far as it's known.
+	 * @return the name of the codec, or the format tag in hexadecimal if it's unknown
+	 */
+	public String getCodec() {
+		switch (format) {
+			case 0x0001:
+			case 0xFFFE:
+				return "PCM";
+			case 0x0002:
+				return "ADPCM";
+			case 0x0166:
+				return "XMA2";
+			case 0x3040:
+			case 0x3041:
+				return "Opus";
+			case 0x8311:
+				return "PTADPCM";
+			case 0xFFF0:
+				return "DSP ADPCM";
+			case 0xFFFC:
+				return "ATRAC9";
+			case 0xFFFF:
+				return "Vorbis";
+			default:
+				return String.format("0x%04X", format);
+		}
+	}
+	
+	/**
+	 * Returns the number of channels.
+	 * @return the number of channels
+	 */
+	public int getChannels() {
+		return channels;
+	}
+	
+	/**
+	 * Returns the sample rate.
+	 * @return how many samples per second and channel
+	 */
+	public int getSampleRate() {
+		return sampleRate;
+	}
+	
+	/**
+	 * Returns the byte rate. For compressed codecs, that's only an average.
+	 * @return how many bytes of data make up one second
+	 */
+	public int getByteRate() {
+		return byteRate;
+	}
+	
+	/**
+	 * Returns the block alignment of the <code>fmt </code> chunk.
+	 * @return the block alignment
+	 */
+	public int getBlockAlign() {
+		return blockAlign;
+	}
+	
+	/**
+	 * Returns the bits per sample of the <code>fmt </code> chunk, which is 0 for most compressed codecs.
+	 * @return the bits per sample
+	 */
+	public int getBitsPerSample() {
+		return bitsPerSample;
+	}
+	
+	/**
+	 * Returns the length of the <code>data</code> chunk.
+	 * @return the length of the audio data, or <code>-1</code> if there is no <code>data</code> chunk
+	 */
+	public long getDataLength() {
+		return dataLength;
+	}
+	
+	/**
+	 * Returns how long the sound is, calculated from the length of the audio data and the byte rate.
+	 * That's exact for PCM, and an estimate for compressed codecs, whose byte rate is only an average.
+	 * @return the duration in seconds, or <code>NaN</code> if there is no <code>data</code> chunk or no byte rate
+	 */
+	public double getDuration() {
+		return dataLength < 0 || byteRate <= 0 ? Double.NaN : (double) dataLength / byteRate;
+	}
+	
+	@Override public String toString() {
+		return String.format("%s, %d channels, %d Hz, %d bytes/s, %.2f s", getCodec(), channels, sampleRate, byteRate, getDuration());
+	}
+	
+	/**
+	 * The results of one SoundBank in memory, along with the size and modification time it had when it was probed.
+	 */
+	private static class Cached {
+		private final long length, modified;
+		private final WEMInfo[] infos;
+		
+		private Cached(long length, long modified, WEMInfo[] infos) {
+			this.length = length;
+			this.modified = modified;
+			this.infos = infos;
+		}
+	}
+}
\ No newline at end of file
@@ -0,0 +1,106 @@
+package bnkeditor;
+
+import java.io.File;
+import javax.swing.table.AbstractTableModel;
+
+/**
+ * A <code>TableModel</code> showing every WEM of a {@link BNKEditor} in its own row.
+ * Nothing is copied: every cell is read straight from the editor when the table asks for it, which it only does for the rows that are visible.
+ * That keeps opening a SoundBank with tens of thousands of WEMs just as fast as opening one with ten.
+ * Only the codec, channels, sample rate, bit rate and duration come from the {@link WEMInfo} of every WEM, which is read once when the SoundBank is opened.
+ * The columns with buttons only contain the text of their button, see {@link #isButtonColumn(int)}.
+ * @author marieismywaifu
+ */
+public class WEMTableModel extends AbstractTableModel {
+	private static final long serialVersionUID = 1L;
+	
+	public static final int COLUMN_NUMBER = 0, COLUMN_ID = 1, COLUMN_LENGTH = 2, COLUMN_CODEC = 3, COLUMN_CHANNELS = 4, COLUMN_SAMPLE_RATE = 5, COLUMN_BIT_RATE = 6, COLUMN_DURATION = 7;
+	public static final int COLUMN_SAVE = 8, COLUMN_REPLACE = 9, COLUMN_REPLACEMENT = 10, COLUMN_CANCEL = 11;
+	private static final String[] COLUMN_NAMES = {"#", "ID", "size", "codec", "channels", "Hz", "kbit/s", "seconds", "", "", "replacement", ""};
+	private static final Class<?>[] COLUMN_CLASSES = {Integer.class, Long.class, Long.class, String.class, Integer.class, Integer.class, Integer.class, Double.class, String.class, String.class, String.class, String.class};
+	
+	private BNKEditor editor;
+	private WEMInfo[] infos;
+	
+	/**
+	 * Shows the WEMs of the specified editor instead of the ones shown so far.
+	 * @param editor the editor whose WEMs to show, or <code>null</code> to show none
+	 * @param infos what the headers of the WEMs say (see {@link BNKEditor#getWEMInfo()}), or <code>null</code> to leave those columns empty
+	 */
+	public void setEditor(BNKEditor editor, WEMInfo[] infos) {
+		this.editor = editor;
+		this.infos = infos;
+		fireTableDataChanged();
+	}
+	
+	/**
+	 * Tells the table that the replacement of the WEM in the specified position has been chosen or cancelled.
+	 * @param position the position of the WEM inside the SoundBank
+	 */
+	public void replacementChanged(int position) {
+		fireTableCellUpdated(position, COLUMN_REPLACEMENT);
+	}
+	
+	/**
+	 * Returns whether the specified column is made up of buttons.
+	 * @param column the index of the column
+	 * @return whether the specified column is made up of buttons
+	 */
+	public static boolean isButtonColumn(int column) {
+		return column == COLUMN_SAVE || column == COLUMN_REPLACE || column == COLUMN_CANCEL;
+	}
+	
+	@Override public int getRowCount() {
+		return editor == null ? 0 : editor.getIDs().length;
+	}
+	
+	@Override public int getColumnCount() {
+		return COLUMN_NAMES.length;
+	}
+	
+	@Override public String getColumnName(int column) {
+		return COLUMN_NAMES[column];
+	}
+	
+	@Override public Class<?> getColumnClass(int column) {
+		return COLUMN_CLASSES[column];
+	}
+	
+	@Override public boolean isCellEditable(int row, int column) {
+		return isButtonColumn(column);
+	}
+	
+	@Override public Object getValueAt(int row, int column) {
+		WEMInfo info = infos == null ? null : infos[row];
+		switch (column) {
+			case COLUMN_NUMBER:
+				return row + 1;
+			case COLUMN_ID:
+				return editor.getIDs()[row] & BNKEditor.MAX_UNSIGNED_INT;
+			case COLUMN_LENGTH:
+				return editor.getLength(row);
+			case COLUMN_CODEC:
+				return info == null ? null : info.getCodec();
+			case COLUMN_CHANNELS:
+				return info == null ? null : info.getChannels();
+			case COLUMN_SAMPLE_RATE:
+				return info == null ? null : info.getSampleRate();
+			case COLUMN_BIT_RATE:
+				return info == null ? null : (int) Math.round(info.getByteRate() * 8 / 1000.0);
+			case COLUMN_DURATION:
+				if (info == null || Double.isNaN(info.getDuration())) return null;
+				return Math.round(info.getDuration() * 100) / 100.0;
+			case COLUMN_SAVE:
+				return "save WEM as ...";
+			case COLUMN_REPLACE:
+				return "replace WEM with ...";
+			case COLUMN_REPLACEMENT:
+				File replacement = editor.getReplacements()[row];
+				return replacement == null ? null : replacement.getName();
+			case COLUMN_CANCEL:
+				return "cancel";
+			default:
+				throw new IndexOutOfBoundsException("There is no column " + column + "!");
+		}
+	}
+}
\ No newline at end of file
@@ -0,0 +1,33 @@
+package bnkeditor.benchmarks;
+
+import java.io.File;
+import java.io.IOException;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+/**
+ * A synthetic SoundBank of every size the benchmarks are run with, see {@link SyntheticBank}.
+ * Run with <code>-p bankMegabytes=...</code> to choose other sizes.
+ * @author marieismywaifu
+ */
+@State(Scope.Benchmark)
+public class BankState {
+	/**
+	 * Roughly how big the DATA section of the SoundBank is, in MiB.
+	 */
+	@Param({"1", "64", "1024", "3072"})
+	public long bankMegabytes;
+	
+	/**
+	 * The SoundBank.
+	 */
+	public File bank;
+	
+	@Setup(Level.Trial)
+	public void setUp() throws IOException {
+		bank = SyntheticBank.get(bankMegabytes, 1);
+	}
+}
\ No newline at end of file
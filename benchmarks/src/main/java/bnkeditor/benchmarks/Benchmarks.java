@@ -0,0 +1,19 @@
+package bnkeditor.benchmarks;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import org.openjdk.jmh.Main;
+
+/**
+ * Runs the benchmarks like JMH would, except that the results are written to <code>jmh-result.json</code> unless another result format is asked for.
+ * That file can be fed to any JMH result viewer, or compared between two versions of BNKEditor.
+ * @author marieismywaifu
+ */
+public class Benchmarks {
+	public static void main(String[] args) throws Exception {
+		List<String> arguments = new ArrayList<>(Arrays.asList(args));
+		if (!arguments.contains("-rf") && !arguments.contains("-h") && !arguments.contains("-l")) arguments.addAll(0, Arrays.asList("-rf", "json", "-rff", "jmh-result.json"));
+		Main.main(arguments.toArray(new String[arguments.size()]));
+	}
+}
\ No newline at end of file
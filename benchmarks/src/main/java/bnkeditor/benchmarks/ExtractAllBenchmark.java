@@ -0,0 +1,51 @@
+package bnkeditor.benchmarks;
+
+import bnkeditor.BNKEditor;
+import bnkeditor.ExtractionOptions;
+import java.io.File;
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * How long it takes to extract every WEM of a SoundBank with the default options.
+ * @author marieismywaifu
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 2, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class ExtractAllBenchmark {
+	private BNKEditor editor;
+	private File directory;
+	
+	@Setup(Level.Trial)
+	public void setUp(BankState state) throws IOException {
+		editor = new BNKEditor(state.bank, true, 0);
+		directory = new File(SyntheticBank.getDirectory(), "extracted_" + state.bankMegabytes + "MiB");
+	}
+	
+	@TearDown(Level.Trial)
+	public void tearDown() throws IOException {
+		editor.close();
+		SyntheticBank.delete(directory);
+	}
+	
+	@Benchmark
+	public long extractAll() throws IOException {
+		return editor.extractAll(directory, new ExtractionOptions()).getTotalLength();
+	}
+}
\ No newline at end of file
@@ -0,0 +1,33 @@
+package bnkeditor.benchmarks;
+
+import bnkeditor.BNKEditor;
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * How long it takes to open a SoundBank, which means walking its section headers and parsing the DIDX section.
+ * @author marieismywaifu
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class OpenBenchmark {
+	@Benchmark
+	public int open(BankState state) throws IOException {
+		BNKEditor editor = new BNKEditor(state.bank, true, 0);
+		try {
+			return editor.getIDs().length;
+		} finally {
+			editor.close();
+		}
+	}
+}
\ No newline at end of file
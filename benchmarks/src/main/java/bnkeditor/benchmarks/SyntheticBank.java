@@ -0,0 +1,142 @@
+package bnkeditor.benchmarks;
+
+import java.io.BufferedOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.Arrays;
+import java.util.Random;
+
+/**
+ * Writes SoundBanks full of made-up WEMs, so the benchmarks don't depend on the files of any game.
+ * The WEMs are between 1 and 127 KiB long (64 KiB on average) and padded to 16 bytes inside the DATA section, like Wwise does it.
+ * The same size and seed always give the same SoundBank, so a SoundBank that already exists is used again instead of being written anew.
+ * @author marieismywaifu
+ */
+final class SyntheticBank {
+	private static final int MIN_WEM_LENGTH = 1024, MAX_WEM_LENGTH = 127 * 1024, ALIGNMENT = 16;
+	private static final long MAX_DATA_LENGTH = 0xFFFFFFFFL;
+	
+	private SyntheticBank() {}
+	
+	/**
+	 * Returns the directory the benchmarks put their files into.
+	 * It's set with the system property <code>bnkeditor.benchmarks.dir</code>, and is a directory inside the temporary directory by default.
+	 * @return the directory the benchmarks put their files into
+	 * @throws IOException if it can't be created
+	 */
+	static File getDirectory() throws IOException {
+		File directory = new File(System.getProperty("bnkeditor.benchmarks.dir", new File(System.getProperty("java.io.tmpdir"), "bnkeditor-benchmarks").getPath()));
+		if (!directory.isDirectory() && !directory.mkdirs()) throw new IOException("Couldn't create the directory " + directory + "!");
+		return directory;
+	}
+	
+	/**
+	 * Returns a SoundBank of the specified size, writing it first if it doesn't exist yet.
+	 * @param megabytes roughly how big the DATA section should be, in MiB
+	 * @param seed decides the lengths, IDs and contents of the WEMs
+	 * @return the SoundBank
+	 * @throws IllegalArgumentException if the DATA section would be bigger than 4 GiB
+	 * @throws IOException if something goes wrong
+	 */
+	static File get(long megabytes, long seed) throws IOException {
+		Random random = new Random(seed);
+		int[] lengths = new int[16];
+		int count = 0;
+		long dataLength = 0;
+		while (dataLength < megabytes * 1024 * 1024) {
+			if (count == lengths.length) lengths = Arrays.copyOf(lengths, count * 2);
+			lengths[count] = MIN_WEM_LENGTH + random.nextInt(MAX_WEM_LENGTH - MIN_WEM_LENGTH + 1);
+			dataLength = align(dataLength) + lengths[count++];
+		}
+		if (dataLength > MAX_DATA_LENGTH) throw new IllegalArgumentException("A SoundBank can't hold " + megabytes + " MiB of WEMs!");
+		long fileLength = 8 + 8 + 8 + 12L * count + 8 + dataLength;
+		
+		File bank = new File(getDirectory(), "synthetic_" + megabytes + "MiB_" + seed + ".bnk");
+		if (bank.length() == fileLength) return bank;
+		
+		// every WEM is a RIFF header followed by a piece of a random block
+		byte[] block = new byte[1024 * 1024];
+		random.nextBytes(block);
+		OutputStream output = new BufferedOutputStream(new FileOutputStream(bank), 1024 * 1024);
+		try {
+			output.write(new byte[] {'B', 'K', 'H', 'D'});
+			writeInt(output, 8);
+			writeInt(output, 0x86); // bank version
+			writeInt(output, (int) seed); // bank ID
+			output.write(new byte[] {'D', 'I', 'D', 'X'});
+			writeInt(output, 12 * count);
+			long offset = 0;
+			for (int i = 0; i < count; i++) {
+				offset = align(offset);
+				writeInt(output, random.nextInt());
+				writeInt(output, (int) offset);
+				writeInt(output, lengths[i]);
+				offset += lengths[i];
+			}
+			output.write(new byte[] {'D', 'A', 'T', 'A'});
+			writeInt(output, (int) dataLength);
+			offset = 0;
+			for (int i = 0; i < count; i++) {
+				while (offset != align(offset)) {
+					output.write(0);
+					offset++;
+				}
+				output.write(new byte[] {'R', 'I', 'F', 'F'});
+				writeInt(output, lengths[i] - 8);
+				output.write(new byte[] {'W', 'A', 'V', 'E'});
+				int start = random.nextInt(block.length - MAX_WEM_LENGTH);
+				output.write(block, start, lengths[i] - 12);
+				offset += lengths[i];
+			}
+		} finally {
+			output.close();
+		}
+		return bank;
+	}
+	
+	/**
+	 * Writes a made-up WEM that can be used as a replacement.
+	 * @param file where to write the WEM
+	 * @param length how long the WEM should be
+	 * @param seed decides the contents of the WEM
+	 * @throws IOException if something goes wrong
+	 */
+	static void writeWEM(File file, int length, long seed) throws IOException {
+		byte[] body = new byte[length - 12];
+		new Random(seed).nextBytes(body);
+		OutputStream output = new BufferedOutputStream(new FileOutputStream(file));
+		try {
+			output.write(new byte[] {'R', 'I', 'F', 'F'});
+			writeInt(output, length - 8);
+			output.write(new byte[] {'W', 'A', 'V', 'E'});
+			output.write(body);
+		} finally {
+			output.close();
+		}
+	}
+	
+	/**
+	 * Deletes the specified file, or the specified directory and everything inside it.
+	 * @param file what to delete
+	 */
+	static void delete(File file) {
+		File[] children = file.listFiles();
+		if (children != null) {
+			for (File child : children) delete(child);
+		}
+		file.delete();
+	}
+	
+	private static long align(long offset) {
+		return (offset + ALIGNMENT - 1) / ALIGNMENT * ALIGNMENT;
+	}
+	
+	private static void writeInt(OutputStream output, int value) throws IOException {
+		output.write(value);
+		output.write(value >>> 8);
+		output.write(value >>> 16);
+		output.write(value >>> 24);
+	}
+}
\ No newline at end of file
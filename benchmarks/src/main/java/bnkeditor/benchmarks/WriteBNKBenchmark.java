@@ -0,0 +1,78 @@
+package bnkeditor.benchmarks;
+
+import bnkeditor.BNKEditor;
+import java.io.File;
+import java.io.IOException;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * How long it takes to write a modified copy of a SoundBank, with none, a few or half of its WEMs replaced.
+ * The replaced WEMs are spread evenly over the SoundBank, and are replaced with a handful of made-up WEMs of random lengths.
+ * Both ways of writing are measured: copying by turns, and reading ahead on a second thread.
+ * @author marieismywaifu
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 2, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class WriteBNKBenchmark {
+	private static final int REPLACEMENT_COUNT = 8;
+	
+	@Param({"0", "1", "50"})
+	public int replacedPercent;
+	
+	private BNKEditor editor;
+	private File[] replacements;
+	private File output;
+	
+	@Setup(Level.Trial)
+	public void setUp(BankState state) throws IOException {
+		editor = new BNKEditor(state.bank, true, 0);
+		File directory = SyntheticBank.getDirectory();
+		Random random = new Random(replacedPercent);
+		replacements = new File[REPLACEMENT_COUNT];
+		for (int i = 0; i < replacements.length; i++) {
+			replacements[i] = File.createTempFile("replacement", ".wem", directory);
+			SyntheticBank.writeWEM(replacements[i], 1024 + random.nextInt(126 * 1024), random.nextLong());
+		}
+		int count = editor.getIDs().length, replaced = (int) ((long) count * replacedPercent / 100);
+		if (replacedPercent > 0 && replaced == 0) replaced = 1;
+		for (int i = 0; i < replaced; i++) editor.replace((int) ((long) i * count / replaced), false, replacements[i % replacements.length]);
+		output = File.createTempFile("bank", ".bnk", directory);
+	}
+	
+	@TearDown(Level.Trial)
+	public void tearDown() throws IOException {
+		editor.close();
+		for (File replacement : replacements) replacement.delete();
+		output.delete();
+	}
+	
+	@Benchmark
+	public long writeBNK() throws IOException {
+		editor.writeBNK(output, true);
+		return output.length();
+	}
+	
+	@Benchmark
+	public long writeBNKPipelined() throws IOException {
+		editor.writeBNKPipelined(output, true, null);
+		return output.length();
+	}
+}
\ No newline at end of file
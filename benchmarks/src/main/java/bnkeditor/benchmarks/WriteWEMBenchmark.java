@@ -0,0 +1,62 @@
+package bnkeditor.benchmarks;
+
+import bnkeditor.BNKEditor;
+import java.io.File;
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * How long it takes to write a single WEM at the start, in the middle or at the end of a SoundBank.
+ * The cache is disabled, so every WEM is really read from the SoundBank.
+ * @author marieismywaifu
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class WriteWEMBenchmark {
+	@Param({"start", "middle", "end"})
+	public String where;
+	
+	private BNKEditor editor;
+	private int position;
+	private File output;
+	
+	@Setup(Level.Trial)
+	public void setUp(BankState state) throws IOException {
+		editor = new BNKEditor(state.bank, true, 0);
+		int count = editor.getIDs().length;
+		if ("start".equals(where)) position = 0;
+		else if ("middle".equals(where)) position = count / 2;
+		else if ("end".equals(where)) position = count - 1;
+		else throw new IllegalArgumentException("where has to be start, middle or end, not " + where + "!");
+		output = File.createTempFile("wem", ".wem", SyntheticBank.getDirectory());
+	}
+	
+	@TearDown(Level.Trial)
+	public void tearDown() throws IOException {
+		editor.close();
+		output.delete();
+	}
+	
+	@Benchmark
+	public long writeWEM() throws IOException {
+		editor.writeWEM(position, false, output);
+		return output.length();
+	}
+}
\ No newline at end of file
@@ -0,0 +1,140 @@
+package bnkeditor;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+class BNKEditorTest {
+	@TempDir File directory;
+	
+	@Test void writeBNKInPlaceOverwritesWEMsThatFit() throws IOException {
+		File bank = new File(directory, "bank.bnk");
+		byte[][] wems = TestBank.write(bank, 5, 16);
+		long length = bank.length();
+		byte[] replacement = TestBank.wem(110, 42); // WEM 1000 is 100 bytes long, with 12 bytes of padding after it
+		
+		BNKEditor editor = new BNKEditor(bank, true);
+		try {
+			long offset = editor.getOffset(0);
+			editor.replace(1000, true, TestBank.wemFile(new File(directory, "new.wem"), replacement.length, 42));
+			assertTrue(editor.writeBNKInPlace());
+			assertEquals(offset, editor.getOffset(0));
+			assertEquals(replacement.length, editor.getLength(0));
+			assertArrayEquals(replacement, editor.readWEM(1000, true));
+		} finally {
+			editor.close();
+		}
+		
+		assertEquals(length, bank.length());
+		BNKEditor reopened = new BNKEditor(bank, true);
+		try {
+			assertEquals(replacement.length, reopened.getLength(0));
+			assertArrayEquals(replacement, reopened.readWEM(1000, true));
+			for (int i = 1; i < wems.length; i++) assertArrayEquals(wems[i], reopened.readWEM(i, false));
+		} finally {
+			reopened.close();
+		}
+	}
+	
+	@Test void writeBNKInPlaceClearsTheRestOfTheSpace() throws IOException {
+		File bank = new File(directory, "bank.bnk");
+		TestBank.write(bank, 3, 16);
+		BNKEditor editor = new BNKEditor(bank, true);
+		long start;
+		try {
+			start = editor.getOffset(1);
+			editor.replace(1, false, TestBank.wemFile(new File(directory, "new.wem"), 20, 1));
+			assertTrue(editor.writeBNKInPlace());
+		} finally {
+			editor.close();
+		}
+		byte[] written = Files.readAllBytes(bank.toPath());
+		for (int i = 20; i < 137; i++) assertEquals(0, written[(int) start + i], "byte " + i + " of the old WEM");
+	}
+	
+	@Test void writeBNKInPlaceRewritesTheWholeSoundBankIfAWEMDoesntFit() throws IOException {
+		File bank = new File(directory, "bank.bnk"), copy = new File(directory, "copy.bnk"), expected = new File(directory, "expected.bnk");
+		byte[][] wems = TestBank.write(bank, 5, 16);
+		Files.copy(bank.toPath(), copy.toPath());
+		File replacement = TestBank.wemFile(new File(directory, "new.wem"), 500, 7);
+		
+		BNKEditor reference = new BNKEditor(copy, true);
+		try {
+			reference.replace(1002, true, replacement);
+			reference.writeBNK(expected, true);
+		} finally {
+			reference.close();
+		}
+		
+		BNKEditor editor = new BNKEditor(bank, true);
+		try {
+			editor.replace(1002, true, replacement);
+			assertFalse(editor.writeBNKInPlace());
+			assertArrayEquals(Files.readAllBytes(replacement.toPath()), editor.readWEM(1002, true));
+			assertArrayEquals(wems[4], editor.readWEM(1004, true));
+			assertEquals(0, countReplacements(editor.getReplacements()));
+		} finally {
+			editor.close();
+		}
+		assertArrayEquals(Files.readAllBytes(expected.toPath()), Files.readAllBytes(bank.toPath()));
+		assertEquals(4, directory.list().length, "no temporary files are left behind");
+	}
+	
+	@Test void writeBNKInPlaceDoesntTouchTheSoundBankIfAReplacementIsGone() throws IOException {
+		File bank = new File(directory, "bank.bnk");
+		TestBank.write(bank, 5, 16);
+		byte[] before = Files.readAllBytes(bank.toPath());
+		File small = TestBank.wemFile(new File(directory, "small.wem"), 50, 1), big = TestBank.wemFile(new File(directory, "big.wem"), 500, 2);
+		
+		for (File gone : new File[] {small, big}) {
+			BNKEditor editor = new BNKEditor(bank, true);
+			try {
+				editor.replace(1001, true, gone);
+				File copy = new File(directory, "gone.wem");
+				Files.move(gone.toPath(), copy.toPath(), StandardCopyOption.REPLACE_EXISTING);
+				try {
+					assertThrows(IOException.class, editor::writeBNKInPlace);
+				} finally {
+					Files.move(copy.toPath(), gone.toPath());
+				}
+			} finally {
+				editor.close();
+			}
+			assertArrayEquals(before, Files.readAllBytes(bank.toPath()));
+		}
+	}
+	
+	@Test void writeBNKPipelinedWritesTheSameAsWriteBNK() throws IOException {
+		File bank = new File(directory, "bank.bnk"), plain = new File(directory, "plain.bnk"), pipelined = new File(directory, "pipelined.bnk");
+		TestBank.write(bank, 20, 16);
+		BNKEditor editor = new BNKEditor(bank, true);
+		try {
+			editor.replace(3, false, TestBank.wemFile(new File(directory, "a.wem"), 5000, 3));
+			editor.replace(17, false, TestBank.wemFile(new File(directory, "b.wem"), 20, 17));
+			editor.writeBNK(plain, true);
+			editor.writeBNKPipelined(pipelined, true, null);
+			assertTrue(editor.verify(plain, true).isEmpty());
+		} finally {
+			editor.close();
+		}
+		assertArrayEquals(Files.readAllBytes(plain.toPath()), Files.readAllBytes(pipelined.toPath()));
+	}
+	
+	private static int countReplacements(File[] replacements) {
+		int count = 0;
+		for (File replacement : replacements) {
+			if (replacement != null) count++;
+		}
+		return count;
+	}
+}
\ No newline at end of file
@@ -0,0 +1,123 @@
+package bnkeditor;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.file.Files;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+class BankDeltaTest {
+	@TempDir File directory;
+	
+	@Test void applyingADeltaWritesTheSameAsWriteBNK() throws IOException {
+		File bank = new File(directory, "bank.bnk"), expected = new File(directory, "expected.bnk"), delta = new File(directory, "bank.delta"), applied = new File(directory, "applied.bnk");
+		TestBank.write(bank, 10, 16);
+		writeDelta(bank, delta, expected);
+		assertTrue(delta.length() < bank.length());
+		BankDelta.apply(bank, delta, applied);
+		assertArrayEquals(Files.readAllBytes(expected.toPath()), Files.readAllBytes(applied.toPath()));
+	}
+	
+	@Test void applyingADeltaOverTheOriginalSoundBankWorks() throws IOException {
+		File bank = new File(directory, "bank.bnk"), expected = new File(directory, "expected.bnk"), delta = new File(directory, "bank.delta");
+		TestBank.write(bank, 10, 16);
+		writeDelta(bank, delta, expected);
+		BankDelta.apply(bank, delta, bank);
+		assertArrayEquals(Files.readAllBytes(expected.toPath()), Files.readAllBytes(bank.toPath()));
+		assertEquals(5, directory.list().length, "no temporary files are left");
+	}
+	
+	@Test void applyingAFailingDeltaOverTheOriginalSoundBankKeepsIt() throws IOException {
+		File bank = new File(directory, "bank.bnk"), delta = new File(directory, "bank.delta");
+		TestBank.write(bank, 10, 16);
+		writeDelta(bank, delta, new File(directory, "expected.bnk"));
+		RandomAccessFile file = new RandomAccessFile(delta, "rw");
+		try {
+			file.setLength(file.length() - 1); // without the end
+		} finally {
+			file.close();
+		}
+		byte[] before = Files.readAllBytes(bank.toPath());
+		assertThrows(IllegalArgumentException.class, () -> BankDelta.apply(bank, delta, bank));
+		assertArrayEquals(before, Files.readAllBytes(bank.toPath()));
+		assertEquals(5, directory.list().length, "no temporary files are left");
+	}
+	
+	@Test void applyingADeltaWithoutReplacementsCopiesTheSoundBank() throws IOException {
+		File bank = new File(directory, "bank.bnk"), delta = new File(directory, "bank.delta"), applied = new File(directory, "applied.bnk");
+		TestBank.write(bank, 4, 1);
+		BNKEditor editor = new BNKEditor(bank, true);
+		try {
+			editor.writeDelta(delta, true);
+		} finally {
+			editor.close();
+		}
+		BankDelta.apply(bank, delta, applied);
+		assertArrayEquals(Files.readAllBytes(bank.toPath()), Files.readAllBytes(applied.toPath()));
+	}
+	
+	@Test void applyingADeltaToADifferentSoundBankFails() throws IOException {
+		File bank = new File(directory, "bank.bnk"), delta = new File(directory, "bank.delta"), applied = new File(directory, "applied.bnk");
+		TestBank.write(bank, 10, 16);
+		writeDelta(bank, delta, new File(directory, "expected.bnk"));
+		
+		// change one byte of a WEM that isn't replaced, without changing the length of the SoundBank
+		BNKEditor editor = new BNKEditor(bank, true);
+		long position;
+		try {
+			position = editor.getOffset(8) + 50;
+		} finally {
+			editor.close();
+		}
+		RandomAccessFile file = new RandomAccessFile(bank, "rw");
+		try {
+			file.seek(position);
+			int b = file.read();
+			file.seek(position);
+			file.write(b ^ 1);
+		} finally {
+			file.close();
+		}
+		
+		assertThrows(IOException.class, () -> BankDelta.apply(bank, delta, applied));
+		assertFalse(applied.exists());
+	}
+	
+	@Test void applyingADeltaOfAnotherVersionFails() throws IOException {
+		File bank = new File(directory, "bank.bnk"), delta = new File(directory, "bank.delta"), applied = new File(directory, "applied.bnk");
+		TestBank.write(bank, 6, 16);
+		writeDelta(bank, delta, new File(directory, "expected.bnk"));
+		RandomAccessFile file = new RandomAccessFile(delta, "rw");
+		try {
+			file.seek(5);
+			file.write(TestBank.buffer(4).putInt(1).array());
+		} finally {
+			file.close();
+		}
+		assertThrows(IllegalArgumentException.class, () -> BankDelta.apply(bank, delta, applied));
+		assertFalse(applied.exists());
+	}
+	
+	/**
+	 * Replaces two WEMs of the specified SoundBank, one with a shorter and one with a longer WEM, and writes both the delta and the modified SoundBank.
+	 */
+	private void writeDelta(File bank, File delta, File expected) throws IOException {
+		BNKEditor editor = new BNKEditor(bank, true);
+		try {
+			editor.replace(1001, true, TestBank.wemFile(new File(directory, "short.wem"), 30, 1));
+			editor.replace(1005, true, TestBank.wemFile(new File(directory, "long.wem"), 2000, 5));
+			editor.writeDelta(delta, true);
+			editor.writeBNK(expected, true);
+		} finally {
+			editor.close();
+		}
+	}
+}
\ No newline at end of file
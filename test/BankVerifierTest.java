@@ -0,0 +1,118 @@
+package bnkeditor;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.util.Arrays;
+import java.util.List;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+class BankVerifierTest {
+	@TempDir File directory;
+	private File bank, written;
+	private BNKEditor editor;
+	
+	@BeforeEach void writeModifiedSoundBank() throws IOException {
+		bank = new File(directory, "bank.bnk");
+		written = new File(directory, "written.bnk");
+		TestBank.write(bank, 50, 16);
+		editor = new BNKEditor(bank, true);
+		editor.replace(1010, true, TestBank.wemFile(new File(directory, "a.wem"), 3000, 10));
+		editor.replace(1040, true, TestBank.wemFile(new File(directory, "b.wem"), 40, 40));
+		editor.writeBNK(written, true);
+	}
+	
+	@AfterEach void close() throws IOException {
+		editor.close();
+	}
+	
+	@Test void aSoundBankWrittenByWriteBNKPasses() throws IOException {
+		assertEquals(Arrays.asList(), editor.verify(written, true));
+	}
+	
+	@Test void everyVariantPasses() throws IOException {
+		BankVariant first = new BankVariant(new File(directory, "first.bnk")), second = new BankVariant(new File(directory, "second.bnk"));
+		first.replace(1001, true, TestBank.wemFile(new File(directory, "c.wem"), 500, 1));
+		second.replace(1049, true, TestBank.wemFile(new File(directory, "d.wem"), 20, 49));
+		editor.writeVariants(Arrays.asList(first, second), true);
+		assertEquals(Arrays.asList(), editor.verify(first, true));
+		assertEquals(Arrays.asList(), editor.verify(second, true));
+		assertFalse(editor.verify(new BankVariant(second.getOutput()), true).isEmpty(), "the second variant isn't the unmodified SoundBank");
+	}
+	
+	@Test void aChangedWEMIsFound() throws IOException {
+		flip(written, getOffset(written, 1040) + 20);
+		flip(written, getOffset(written, 1020) + 5);
+		List<String> problems = editor.verify(written, true);
+		assertEquals(2, problems.size(), problems.toString());
+		assertTrue(problems.get(0).startsWith("WEM number 21 (ID 1020)"), problems.get(0));
+		assertTrue(problems.get(1).startsWith("WEM number 41 (ID 1040)"), problems.get(1));
+	}
+	
+	@Test void aChangedSectionIsFound() throws IOException {
+		flip(written, written.length() - 2); // inside the STID section
+		List<String> problems = editor.verify(written, true);
+		assertEquals(1, problems.size(), problems.toString());
+		assertTrue(problems.get(0).contains("STID"), problems.get(0));
+	}
+	
+	@Test void problemsAreInTheOrderTheyAppearInTheSoundBank() throws IOException {
+		flip(written, written.length() - 2); // inside the STID section
+		flip(written, getOffset(written, 1030) + 5);
+		flip(written, 12); // inside the BKHD section
+		List<String> problems = editor.verify(written, true);
+		assertEquals(3, problems.size(), problems.toString());
+		assertTrue(problems.get(0).contains("BKHD"), problems.get(0));
+		assertTrue(problems.get(1).startsWith("WEM number 31 (ID 1030)"), problems.get(1));
+		assertTrue(problems.get(2).contains("STID"), problems.get(2));
+	}
+	
+	@Test void aWrongDIDXEntryIsFound() throws IOException {
+		BNKEditor reader = new BNKEditor(written, true, 0);
+		long didx;
+		try {
+			didx = reader.getChunks().getDataOffset(reader.getChunks().find(0x44494458));
+		} finally {
+			reader.close();
+		}
+		RandomAccessFile file = new RandomAccessFile(written, "rw");
+		try {
+			file.seek(didx + 12 * 5 + 8); // the length of WEM number 6
+			file.write(TestBank.buffer(4).putInt(1).array());
+		} finally {
+			file.close();
+		}
+		List<String> problems = editor.verify(written, true);
+		assertFalse(problems.isEmpty());
+		assertTrue(problems.get(0).startsWith("WEM number 6 (ID 1005) is 1 bytes long"), problems.get(0));
+	}
+	
+	private static long getOffset(File bank, int id) throws IOException {
+		BNKEditor editor = new BNKEditor(bank, true, 0);
+		try {
+			return editor.getOffset(editor.findID(id));
+		} finally {
+			editor.close();
+		}
+	}
+	
+	private static void flip(File file, long position) throws IOException {
+		RandomAccessFile access = new RandomAccessFile(file, "rw");
+		try {
+			access.seek(position);
+			int b = access.read();
+			access.seek(position);
+			access.write(b ^ 0x80);
+		} finally {
+			access.close();
+		}
+	}
+}
\ No newline at end of file
@@ -0,0 +1,143 @@
+package bnkeditor;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+class HIRCIndexTest {
+	private static final int VORBIS = 0x00040001, TONE_GENERATOR = 0x00660002, EVENT = 4;
+	
+	@TempDir File directory;
+	private BNKEditor editor;
+	
+	@AfterEach void close() throws IOException {
+		if (editor != null) editor.close();
+	}
+	
+	@Test void findsTheSourcesOfSoundsAndMusicTracks() throws IOException {
+		check(TestBank.VERSION);
+	}
+	
+	@Test void findsTheSourcesInTheOlderLayout() throws IOException {
+		check(88);
+	}
+	
+	@Test void keepsTheSourcesFoundSoFarIfAnObjectIsCutShort() throws IOException {
+		Objects objects = new Objects(TestBank.VERSION);
+		ByteBuffer track = TestBank.buffer(64).put((byte) 0).putInt(3); // three sources, but only room for one
+		objects.source(track, VORBIS, 0, 1001);
+		objects.add(HIRCIndex.TYPE_MUSIC_TRACK, 7, track);
+		HIRCIndex index = open(TestBank.VERSION, objects);
+		assertArrayEquals(new int[] {1001}, index.getSources(0));
+		assertArrayEquals(new int[] {0}, index.findReferences(1001));
+	}
+	
+	/**
+	 * Writes a SoundBank with a Sound, an Event, a Music Track with a plugin source in between its WEMs, and a streamed Sound, then checks what's found.
+	 */
+	private void check(int version) throws IOException {
+		Objects objects = new Objects(version);
+		ByteBuffer sound = TestBank.buffer(64);
+		objects.source(sound, VORBIS, 0, 1000);
+		sound.put(new byte[] {1, 2, 3, 4, 5}); // properties
+		objects.add(HIRCIndex.TYPE_SOUND, 1, sound);
+		
+		ByteBuffer event = TestBank.buffer(64).put((byte) 1).putInt(12345);
+		objects.add(EVENT, 2, event);
+		
+		ByteBuffer track = TestBank.buffer(128);
+		if (version > 89) track.put((byte) 0); // flags
+		track.putInt(4);
+		objects.source(track, VORBIS, 0, 1001);
+		objects.source(track, VORBIS, 0, 1000);
+		objects.source(track, TONE_GENERATOR, 0, 555);
+		objects.source(track, VORBIS, 2, 1002);
+		track.putInt(0); // playlist
+		objects.add(HIRCIndex.TYPE_MUSIC_TRACK, 3, track);
+		
+		ByteBuffer streamed = TestBank.buffer(64);
+		objects.source(streamed, VORBIS, 1, 1002);
+		objects.add(HIRCIndex.TYPE_SOUND, 4, streamed);
+		
+		HIRCIndex index = open(version, objects);
+		assertEquals(version, index.getVersion());
+		assertEquals(4, index.getObjectCount());
+		assertEquals(EVENT, index.getType(1));
+		assertEquals(3, index.getID(2));
+		assertEquals(2, index.find(3));
+		assertEquals(4 + event.position(), index.getLength(1));
+		assertArrayEquals(objects.bodies[1], index.readObject(1));
+		
+		assertArrayEquals(new int[] {0, 2}, index.findReferences(1000));
+		assertArrayEquals(new int[] {2}, index.findReferences(1001));
+		assertArrayEquals(new int[] {2, 3}, index.findReferences(1002));
+		assertArrayEquals(new int[0], index.findReferences(555));
+		assertArrayEquals(new int[] {1000}, index.getSources(0));
+		assertArrayEquals(new int[0], index.getSources(1));
+		assertArrayEquals(new int[] {1001, 1000, 1002}, index.getSources(2));
+		assertArrayEquals(new int[] {1002}, index.getSources(3));
+	}
+	
+	private HIRCIndex open(int version, Objects objects) throws IOException {
+		File bank = new File(directory, "bank.bnk");
+		int[] ids = {1000, 1001, 1002};
+		byte[][] wems = {TestBank.wem(100, 0), TestBank.wem(100, 1), TestBank.wem(100, 2)};
+		TestBank.write(bank, version, ids, wems, 16, objects.toByteArray());
+		editor = new BNKEditor(bank, true, 0);
+		return editor.getHIRCIndex();
+	}
+	
+	/**
+	 * Collects the objects of a HIRC section.
+	 */
+	private static class Objects {
+		private final int version;
+		private final ByteArrayOutputStream section = new ByteArrayOutputStream();
+		private final byte[][] bodies = new byte[8][];
+		private int count;
+		
+		private Objects(int version) {
+			this.version = version;
+		}
+		
+		/**
+		 * Adds a source, in the layout of the version.
+		 */
+		private void source(ByteBuffer body, int plugin, int stream, int id) {
+			body.putInt(plugin);
+			body.put((byte) stream);
+			body.putInt(id);
+			if (version <= 88) {
+				body.putInt(id); // file ID
+				if (stream != 1) body.putInt(0).putInt(100); // offset and size inside the file
+			} else body.putInt(100); // size in memory
+			body.put((byte) 0); // bits
+			if ((plugin & 0xF) == 2) body.putInt(3).put(new byte[] {7, 8, 9});
+		}
+		
+		private void add(int type, int id, ByteBuffer body) {
+			byte[] bytes = new byte[body.position()];
+			System.arraycopy(body.array(), 0, bytes, 0, bytes.length);
+			bodies[count++] = bytes;
+			section.write(type);
+			section.write(TestBank.buffer(8).putInt(4 + bytes.length).putInt(id).array(), 0, 8);
+			section.write(bytes, 0, bytes.length);
+		}
+		
+		private byte[] toByteArray() {
+			ByteArrayOutputStream all = new ByteArrayOutputStream();
+			all.write(TestBank.buffer(4).putInt(count).array(), 0, 4);
+			byte[] objects = section.toByteArray();
+			all.write(objects, 0, objects.length);
+			return all.toByteArray();
+		}
+	}
+}
\ No newline at end of file
@@ -0,0 +1,106 @@
+package bnkeditor;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.file.Files;
+import java.util.Random;
+
+/**
+ * Writes small made-up SoundBanks for the tests: a BKHD section, a DIDX and a DATA section with the specified WEMs, and optionally a HIRC section, followed by an STID section,
+ * so there's always something after the DATA section that has to be copied as it is.
+ * Everything is Little Endian.
+ * @author marieismywaifu
+ */
+final class TestBank {
+	static final int VERSION = 0x86;
+	
+	private TestBank() {}
+	
+	/**
+	 * Writes a SoundBank with the specified number of made-up WEMs, with the IDs 1000, 1001 and so on.
+	 * @param file where to write the SoundBank
+	 * @param count how many WEMs
+	 * @param alignment what the WEMs are padded to inside the DATA section
+	 * @return the WEMs, in the order they're in the SoundBank
+	 * @throws IOException if something goes wrong
+	 */
+	static byte[][] write(File file, int count, int alignment) throws IOException {
+		int[] ids = new int[count];
+		byte[][] wems = new byte[count][];
+		for (int i = 0; i < count; i++) {
+			ids[i] = 1000 + i;
+			wems[i] = wem(100 + 37 * i, i);
+		}
+		write(file, VERSION, ids, wems, alignment, null);
+		return wems;
+	}
+	
+	/**
+	 * Writes a SoundBank.
+	 * @param file where to write the SoundBank
+	 * @param version the version in the BKHD section
+	 * @param ids the IDs of the WEMs
+	 * @param wems the WEMs
+	 * @param alignment what the WEMs are padded to inside the DATA section
+	 * @param hirc the data of the HIRC section (after its header), or <code>null</code> for none
+	 * @throws IOException if something goes wrong
+	 */
+	static void write(File file, int version, int[] ids, byte[][] wems, int alignment, byte[] hirc) throws IOException {
+		ByteArrayOutputStream data = new ByteArrayOutputStream();
+		ByteBuffer didx = buffer(12 * ids.length);
+		for (int i = 0; i < ids.length; i++) {
+			while (data.size() % alignment != 0) data.write(0);
+			didx.putInt(ids[i]).putInt(data.size()).putInt(wems[i].length);
+			data.write(wems[i]);
+		}
+		ByteArrayOutputStream bank = new ByteArrayOutputStream();
+		section(bank, "BKHD", buffer(8).putInt(version).putInt(0x12345678).array());
+		section(bank, "DIDX", didx.array());
+		section(bank, "DATA", data.toByteArray());
+		if (hirc != null) section(bank, "HIRC", hirc);
+		section(bank, "STID", buffer(12).putInt(1).putInt(1).putInt(0x12345678).array());
+		Files.write(file.toPath(), bank.toByteArray());
+	}
+	
+	/**
+	 * Makes up a WEM: a RIFF header followed by random bytes.
+	 * @param length how long the WEM should be
+	 * @param seed decides the random bytes
+	 * @return the WEM
+	 */
+	static byte[] wem(int length, long seed) {
+		byte[] wem = new byte[length];
+		new Random(seed).nextBytes(wem);
+		System.arraycopy(buffer(12).putInt(0x46464952).putInt(length - 8).putInt(0x45564157).array(), 0, wem, 0, 12); // "RIFF" and "WAVE", read as Little Endian
+		return wem;
+	}
+	
+	/**
+	 * Writes a made-up WEM into a file.
+	 * @param file where to write the WEM
+	 * @param length how long the WEM should be
+	 * @param seed decides the random bytes
+	 * @return the file
+	 * @throws IOException if something goes wrong
+	 */
+	static File wemFile(File file, int length, long seed) throws IOException {
+		Files.write(file.toPath(), wem(length, seed));
+		return file;
+	}
+	
+	/**
+	 * Returns a Little Endian buffer of the specified size.
+	 */
+	static ByteBuffer buffer(int size) {
+		return ByteBuffer.allocate(size).order(ByteOrder.LITTLE_ENDIAN);
+	}
+	
+	private static void section(ByteArrayOutputStream bank, String magic, byte[] data) throws IOException {
+		bank.write(magic.getBytes("US-ASCII"));
+		bank.write(buffer(4).putInt(data.length).array());
+		bank.write(data);
+	}
+}
\ No newline at end of file
@@ -0,0 +1,251 @@
+package bnkeditor;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.nio.channels.WritableByteChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+import java.util.Enumeration;
+import java.util.zip.CRC32;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipFile;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+class WEMArchiveTest {
+	/**
+	 * A name of more than 100 bytes, which has to be split into the prefix and the name of a tar header.
+	 */
+	private static final String LONG_NAME = "a/directory/with/a/name/that/is/long/enough/to/not/fit/into/the/name/field/of/a/tar/header/%1$d_%2$s.wem";
+	
+	@TempDir File directory;
+	
+	@Test void zipArchivesContainEveryWEM() throws IOException {
+		File bank = new File(directory, "bank.bnk"), archive = new File(directory, "bank.zip");
+		byte[][] wems = writeBank(bank);
+		extract(bank, archive, WEMArchive.Format.ZIP);
+		
+		ZipFile zip = new ZipFile(archive);
+		try {
+			Enumeration<? extends ZipEntry> entries = zip.entries();
+			for (int i = 0; i < wems.length; i++) {
+				ZipEntry entry = entries.nextElement();
+				assertEquals(String.format(LONG_NAME, i + 1, Integer.toUnsignedString(2000 + i)), entry.getName());
+				assertEquals(ZipEntry.STORED, entry.getMethod());
+				CRC32 crc = new CRC32();
+				crc.update(wems[i]);
+				assertEquals(crc.getValue(), entry.getCrc());
+				InputStream input = zip.getInputStream(entry);
+				try {
+					assertArrayEquals(wems[i], readAll(input));
+				} finally {
+					input.close();
+				}
+			}
+			assertFalse(entries.hasMoreElements());
+		} finally {
+			zip.close();
+		}
+	}
+	
+	@Test void tarArchivesContainEveryWEM() throws IOException {
+		File bank = new File(directory, "bank.bnk"), archive = new File(directory, "bank.tar");
+		byte[][] wems = writeBank(bank);
+		extract(bank, archive, WEMArchive.Format.TAR);
+		
+		byte[] tar = Files.readAllBytes(archive.toPath());
+		assertEquals(0, tar.length % 512);
+		int position = 0;
+		for (int i = 0; i < wems.length; i++) {
+			byte[] header = Arrays.copyOfRange(tar, position, position + 512);
+			assertEquals("ustar", string(header, 257, 6));
+			assertEquals("00", new String(header, 263, 2, StandardCharsets.US_ASCII));
+			assertEquals('0', header[156]);
+			long checksum = 0;
+			for (int j = 0; j < 512; j++) checksum += j >= 148 && j < 156 ? ' ' : header[j] & 0xFF;
+			assertEquals(checksum, Long.parseLong(string(header, 148, 8).trim(), 8));
+			String prefix = string(header, 345, 155), name = string(header, 0, 100);
+			assertEquals(String.format(LONG_NAME, i + 1, Integer.toUnsignedString(2000 + i)), prefix.isEmpty() ? name : prefix + "/" + name);
+			long size = Long.parseLong(string(header, 124, 12), 8);
+			assertEquals(wems[i].length, size);
+			assertArrayEquals(wems[i], Arrays.copyOfRange(tar, position + 512, position + 512 + (int) size));
+			position += 512 + (int) ((size + 511) / 512 * 512);
+		}
+		assertArrayEquals(new byte[1024], Arrays.copyOfRange(tar, position, tar.length));
+	}
+	
+	@Test void tarArchivesRefuseNamesThatCantBeSplit() throws IOException {
+		WEMArchive archive = new WEMArchive(new Capture(), WEMArchive.Format.TAR);
+		char[] name = new char[101];
+		Arrays.fill(name, 'a');
+		assertThrows(IllegalArgumentException.class, () -> archive.startEntry(new String(name), 1, 0));
+	}
+	
+	@Test void zipArchivesWithManyEntriesUseZip64() throws IOException {
+		File file = new File(directory, "many.zip");
+		int count = 0x10000 + 10;
+		FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.CREATE, StandardOpenOption.WRITE);
+		try {
+			WEMArchive archive = new WEMArchive(channel, WEMArchive.Format.ZIP);
+			for (int i = 0; i < count; i++) {
+				archive.startEntry(i + ".wem", 1, crc(new byte[] {(byte) i}));
+				archive.write(new byte[] {(byte) i}, 0, 1);
+				archive.finishEntry();
+			}
+			archive.finish();
+		} finally {
+			channel.close();
+		}
+		
+		ZipFile zip = new ZipFile(file);
+		try {
+			assertEquals(count, zip.size());
+			ZipEntry last = zip.getEntry((count - 1) + ".wem");
+			InputStream input = zip.getInputStream(last);
+			try {
+				assertArrayEquals(new byte[] {(byte) (count - 1)}, readAll(input));
+			} finally {
+				input.close();
+			}
+		} finally {
+			zip.close();
+		}
+	}
+	
+	@Test void zipEntriesOf4GiBOrMoreUseZip64() throws IOException {
+		long length = 0x100000000L + 5;
+		Capture capture = new Capture();
+		WEMArchive archive = new WEMArchive(capture, WEMArchive.Format.ZIP);
+		archive.startEntry("big.wem", length, 0x12345678L);
+		byte[] zeros = new byte[16 * 1024 * 1024];
+		for (long done = 0; done < length;) {
+			int step = (int) Math.min(length - done, zeros.length);
+			archive.write(zeros, 0, step);
+			done += step;
+		}
+		archive.finishEntry();
+		archive.finish();
+		
+		// the local header, with both lengths in the zip64 extra field
+		ByteBuffer head = ByteBuffer.wrap(capture.head).order(ByteOrder.LITTLE_ENDIAN);
+		assertEquals(0x04034B50, head.getInt(0));
+		assertEquals(45, head.getShort(4));
+		assertEquals(0xFFFFFFFF, head.getInt(18));
+		assertEquals(0xFFFFFFFF, head.getInt(22));
+		assertEquals(20, head.getShort(28));
+		assertEquals(1, head.getShort(30 + 7));
+		assertEquals(16, head.getShort(30 + 7 + 2));
+		assertEquals(length, head.getLong(30 + 7 + 4));
+		assertEquals(length, head.getLong(30 + 7 + 12));
+		
+		// the central directory entry and the end of the central directory
+		ByteBuffer tail = ByteBuffer.wrap(capture.tail()).order(ByteOrder.LITTLE_ENDIAN);
+		long directoryStart = 30 + 7 + 20 + length, tailStart = capture.position - tail.capacity();
+		int entry = (int) (directoryStart - tailStart);
+		assertEquals(0x02014B50, tail.getInt(entry));
+		assertEquals(0x12345678, tail.getInt(entry + 16));
+		assertEquals(0xFFFFFFFF, tail.getInt(entry + 20));
+		assertEquals(0xFFFFFFFF, tail.getInt(entry + 24));
+		assertEquals(0, tail.getInt(entry + 42), "the entry itself starts at 0, so its offset doesn't need zip64");
+		assertEquals(20, tail.getShort(entry + 30));
+		assertEquals(length, tail.getLong(entry + 46 + 7 + 4));
+		int end = tail.capacity() - 22, locator = end - 20, record = locator - 56;
+		assertEquals(0x06064B50, tail.getInt(record));
+		assertEquals(directoryStart, tail.getLong(record + 48));
+		assertEquals(0x07064B50, tail.getInt(locator));
+		assertEquals(directoryStart + 46 + 7 + 20, tail.getLong(locator + 8));
+		assertEquals(0x06054B50, tail.getInt(end));
+		assertEquals(0xFFFF, tail.getShort(end + 8) & 0xFFFF, "the entry count is in the zip64 record");
+		assertEquals(1, tail.getLong(record + 32));
+		assertEquals(0xFFFFFFFF, tail.getInt(end + 16));
+	}
+	
+	private static byte[][] writeBank(File bank) throws IOException {
+		// one of them is bigger than the buffer of the archive, so it's copied straight from the SoundBank
+		int[] ids = {2000, 2001, 2002, 2003};
+		byte[][] wems = {TestBank.wem(100, 0), TestBank.wem(WEMArchive.BUFFER_SIZE + 1000, 1), TestBank.wem(512, 2), TestBank.wem(13, 3)};
+		TestBank.write(bank, TestBank.VERSION, ids, wems, 16, null);
+		return wems;
+	}
+	
+	private static void extract(File bank, File archive, WEMArchive.Format format) throws IOException {
+		BNKEditor editor = new BNKEditor(bank, true);
+		try {
+			ExtractionOptions options = new ExtractionOptions();
+			options.setNamePattern(LONG_NAME);
+			editor.extractAll(archive, format, options);
+		} finally {
+			editor.close();
+		}
+	}
+	
+	private static long crc(byte[] bytes) {
+		CRC32 crc = new CRC32();
+		crc.update(bytes);
+		return crc.getValue();
+	}
+	
+	private static byte[] readAll(InputStream input) throws IOException {
+		byte[] bytes = new byte[0];
+		byte[] buffer = new byte[8192];
+		for (int read; (read = input.read(buffer)) > 0;) {
+			bytes = Arrays.copyOf(bytes, bytes.length + read);
+			System.arraycopy(buffer, 0, bytes, bytes.length - read, read);
+		}
+		return bytes;
+	}
+	
+	/**
+	 * Reads a 0-terminated ASCII string from a tar header.
+	 */
+	private static String string(byte[] header, int offset, int length) {
+		int end = offset;
+		while (end < offset + length && header[end] != 0) end++;
+		return new String(header, offset, end - offset, StandardCharsets.US_ASCII);
+	}
+	
+	/**
+	 * A channel that only keeps the first and the last few KiB of what's written into it.
+	 */
+	private static class Capture implements WritableByteChannel {
+		private static final int KEEP = 4096;
+		private final byte[] head = new byte[KEEP], tail = new byte[KEEP];
+		private long position;
+		
+		@Override public int write(ByteBuffer source) {
+			int length = source.remaining();
+			for (int i = 0; i < Math.min(length, KEEP - position); i++) head[(int) (position + i)] = source.get(source.position() + i);
+			for (int i = Math.max(0, length - KEEP); i < length; i++) tail[(int) ((position + i) % KEEP)] = source.get(source.position() + i);
+			source.position(source.limit());
+			position += length;
+			return length;
+		}
+		
+		/**
+		 * Returns the last bytes, in order.
+		 */
+		private byte[] tail() {
+			byte[] ordered = new byte[KEEP];
+			for (int i = 0; i < KEEP; i++) ordered[i] = tail[(int) ((position - KEEP + i) % KEEP)];
+			return ordered;
+		}
+		
+		@Override public boolean isOpen() {
+			return true;
+		}
+		
+		@Override public void close() {}
+	}
+}
\ No newline at end of file